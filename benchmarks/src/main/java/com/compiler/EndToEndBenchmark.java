@@ -0,0 +1,31 @@
+package com.compiler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Compilación y ejecución completas, como Compilador.run pero sin escribir reportes.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndToEndBenchmark {
+    @Param({"factorial", "fahrenheit", "primo", "prueba", "sumaPares"})
+    public String program;
+
+    private String source;
+    private String input;
+
+    @Setup
+    public void setup() {
+        source = Programas.load(program);
+        input = Programas.input(program);
+    }
+
+    @Benchmark
+    public Execution compileAndRun() {
+        return Programas.execute(Programas.compile(source), input);
+    }
+}
@@ -0,0 +1,46 @@
+package com.compiler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Ejecución de los programas de ejemplo y de dos programas generados (10000
+// líneas de Programas.generate y 10000 sentencias de Programas.statements) con
+// la pila de Execution y con RegisterMachine.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+    @Param({"factorial", "fahrenheit", "primo", "prueba", "sumaPares", "generado", "sentencias"})
+    public String program;
+
+    @Param({"pila", "registros"})
+    public String engine;
+
+    private Bytecode bytecode;
+    private String input;
+
+    @Setup
+    public void setup() {
+        String source = switch (program) {
+            case "generado" -> Programas.generate(10_000);
+            case "sentencias" -> Programas.statements(10_000);
+            default -> Programas.load(program);
+        };
+        bytecode = Programas.compile(source);
+        input = Programas.input(program);
+    }
+
+    @Benchmark
+    public Execution execute() {
+        Execution execution = new Execution(new SymbolTable(), InputSource.of(input), OutputSink.discard());
+        execution.useRegisters(engine.equals("registros"));
+        // Se comparan los intérpretes; los ciclos compilados se miden en HotLoopBenchmark.
+        execution.compileLoops(false);
+        execution.execute(bytecode);
+        return execution;
+    }
+}
@@ -0,0 +1,52 @@
+package com.compiler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Ejecución con y sin compilar los ciclos calientes (ver HotLoops). factorial,
+// primo, sumaPares y alterna dan ciclos largos con los inputs de Programas;
+// prueba y fahrenheit no llegan al umbral y miden que los programas cortos no
+// paguen nada. El setup revisa que los dos modos impriman lo mismo.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotLoopBenchmark {
+    @Param({"factorial", "primo", "sumaPares", "alterna", "prueba", "fahrenheit"})
+    public String program;
+
+    @Param({"true", "false"})
+    public boolean compiled;
+
+    private Bytecode bytecode;
+    private String input;
+
+    @Setup
+    public void setup() {
+        bytecode = Programas.compile(Programas.load(program));
+        input = Programas.input(program);
+        OutputSink.Capture interpreted = OutputSink.capture();
+        OutputSink.Capture compiled = OutputSink.capture();
+        run(false, interpreted);
+        run(true, compiled);
+        if (!interpreted.toString().equals(compiled.toString())) {
+            throw new IllegalStateException("El ciclo compilado de " + program + " imprime " + compiled
+                    + " en lugar de " + interpreted);
+        }
+    }
+
+    private Execution run(boolean compileLoops, OutputSink out) {
+        Execution execution = new Execution(new SymbolTable(), InputSource.of(input), out);
+        execution.compileLoops(compileLoops);
+        execution.execute(bytecode);
+        return execution;
+    }
+
+    @Benchmark
+    public Execution execute() {
+        return run(compiled, OutputSink.discard());
+    }
+}
@@ -0,0 +1,58 @@
+package com.compiler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Un cambio de un carácter a la mitad de un programa sintético: compilar todo
+// otra vez contra IncrementalCompilation. edit solo cubre el léxico, el análisis
+// y el VCI de la sentencia editada; editAndProgram además arma el bytecode de
+// todo el programa, que sigue siendo lineal.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class IncrementalBenchmark {
+    @Param({"10000", "100000"})
+    public int lines;
+
+    private final ErrorReporter errors = new ErrorReporter();
+    private StringBuilder source;
+    private IncrementalCompilation incremental;
+    // Posición del 1 de un "c = c + 1;", que se cambia por 2 y de vuelta.
+    private int position;
+
+    @Setup
+    public void setup() {
+        String program = Programas.generate(lines);
+        source = new StringBuilder(program);
+        incremental = new Compilador().incremental(program);
+        position = program.indexOf("c = c + 1;", program.length() / 2) + "c = c + ".length();
+    }
+
+    private String digit() {
+        char digit = source.charAt(position) == '1' ? '2' : '1';
+        source.setCharAt(position, digit);
+        return String.valueOf(digit);
+    }
+
+    @Benchmark
+    public CompiledProgram full() {
+        digit();
+        return new Compilador().sequential(true).compile(source.toString(), errors);
+    }
+
+    @Benchmark
+    public IncrementalCompilation edit() {
+        incremental.edit(position, 1, digit());
+        return incremental;
+    }
+
+    @Benchmark
+    public CompiledProgram editAndProgram() {
+        incremental.edit(position, 1, digit());
+        return incremental.program(errors);
+    }
+}
@@ -0,0 +1,55 @@
+package com.compiler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Ejecución con y sin LoopOptimizer. factorial da 100000 vueltas y sumaPares
+// 1000000 (con los inputs de Programas); invariante da 1000000 vueltas a un
+// cuerpo con expresiones que no cambian dentro del ciclo.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoopBenchmark {
+    private static final String INVARIANTE = """
+            program invariante;
+            var n = 1000000;
+            var a = 7;
+            var b = 3;
+            var s = 0;
+            var i = 0;
+            while (i < n) {
+                s = s + i * (a - b) + (a * b) % 5;
+                i = i + 1;
+            }
+            print(s);
+            """;
+
+    @Param({"factorial", "sumaPares", "invariante"})
+    public String program;
+
+    @Param({"true", "false"})
+    public boolean loops;
+
+    private Bytecode bytecode;
+    private String input;
+
+    @Setup
+    public void setup() {
+        bytecode = Programas.compile(program.equals("invariante") ? INVARIANTE : Programas.load(program));
+        input = Programas.input(program);
+    }
+
+    @Benchmark
+    public Execution execute() {
+        Execution execution = new Execution(new SymbolTable(), InputSource.of(input), OutputSink.discard());
+        execution.optimizeLoops(loops);
+        // Sin compilar los ciclos, para medir solo el efecto de LoopOptimizer.
+        execution.compileLoops(false);
+        execution.execute(bytecode);
+        return execution;
+    }
+}
@@ -0,0 +1,61 @@
+package com.compiler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Cada fase del compilador por separado sobre los programas de src/main/resources/programas.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseBenchmark {
+    @Param({"factorial", "fahrenheit", "primo", "prueba", "sumaPares"})
+    public String program;
+
+    private String source;
+    private List<Token> tokens;
+    private List<Token> vci;
+    private List<String> variables;
+    private Bytecode bytecode;
+    private String input;
+
+    @Setup
+    public void setup() {
+        source = Programas.load(program);
+        input = Programas.input(program);
+        tokens = Programas.lex(source);
+        variables = Programas.analyze(tokens).getVariables();
+        vci = new VCI(tokens).getVCI();
+        bytecode = new BytecodeGenerator(vci, variables).generate();
+    }
+
+    @Benchmark
+    public List<Token> lexer() {
+        return new AnalizadorLexico(source).scanTokens();
+    }
+
+    @Benchmark
+    public AnalizadorSemantico semantic() {
+        return Programas.analyze(tokens);
+    }
+
+    @Benchmark
+    public List<Token> vci() {
+        return new VCI(tokens).getVCI();
+    }
+
+    @Benchmark
+    public Bytecode bytecode() {
+        return new BytecodeGenerator(vci, variables).generate();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Execution execution() {
+        return Programas.execute(bytecode, input);
+    }
+}
@@ -0,0 +1,138 @@
+package com.compiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+// Fuentes, entradas y atajos de compilación compartidos por los benchmarks.
+final class Programas {
+    static final String[] SHIPPED = {"factorial", "fahrenheit", "primo", "prueba", "sumaPares"};
+
+    // Valores de input elegidos para forzar ciclos largos.
+    private static final Map<String, String> INPUTS = Map.of(
+            "factorial", "100000\n",
+            "fahrenheit", "36.6\n",
+            "primo", "1000003\n",
+            "prueba", "3\nhola\n",
+            "sumaPares", "1\n1000000\n"
+    );
+
+    // Programas que no vienen con el compilador. alterna compara un booleano
+    // con == dentro de un ciclo caliente.
+    private static final Map<String, String> EXTRA = Map.of(
+            "alterna", """
+                    var c = 0;
+                    var b = true;
+                    var t = 0;
+                    while (c < 5000) {
+                      b = b == false;
+                      if (b) {
+                        t = t + 1;
+                      }
+                      c = c + 1;
+                    }
+                    print t;
+                    """
+    );
+
+    private Programas() {}
+
+    static String load(String name) {
+        if (EXTRA.containsKey(name)) return EXTRA.get(name);
+        try (InputStream in = Programas.class.getResourceAsStream("/programas/" + name + ".txt")) {
+            if (in == null) throw new IllegalArgumentException("Programa desconocido: " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String input(String name) {
+        return INPUTS.getOrDefault(name, "");
+    }
+
+    // Genera un programa sintético de aproximadamente el número de líneas pedido,
+    // con asignaciones, if y while acotados y concatenaciones.
+    static String generate(int lines) {
+        StringBuilder source = new StringBuilder(lines * 24);
+        source.append("program sintetico;\n")
+                .append("var a = 1;\n")
+                .append("var b = 2;\n")
+                .append("var c = 3;\n")
+                .append("var k = 0;\n")
+                .append("var s = \"\";\n");
+        int written = 6;
+        while (written < lines) {
+            source.append("a = a + b * 2;\n")
+                    .append("b = (a - c) % 7 + 1;\n")
+                    .append("if (a > 1000) {\n")
+                    .append("    a = a - 1000;\n")
+                    .append("}\n")
+                    .append("k = 0;\n")
+                    .append("while (k < 3) {\n")
+                    .append("    k = k + 1;\n")
+                    .append("}\n")
+                    .append("s = \"v\" + c;\n")
+                    .append("c = c + 1;\n");
+            written += 11;
+        }
+        source.append("print(a);\n");
+        return source.toString();
+    }
+
+    // Genera un programa con el número de sentencias pedido (cada if, else,
+    // while y asignación cuenta como una), con if/else y while anidados para
+    // que el VCI tenga que completar muchas direcciones de salto.
+    static String statements(int statements) {
+        StringBuilder source = new StringBuilder(statements * 20);
+        source.append("program sintetico;\n")
+                .append("var a = 1;\n")
+                .append("var b = 2;\n")
+                .append("var k = 0;\n");
+        int written = 3;
+        while (written < statements) {
+            source.append("a = a + b * 2;\n")
+                    .append("if (a > 1000) {\n")
+                    .append("    a = a - 1000;\n")
+                    .append("    if (b > 50) {\n")
+                    .append("        b = 2;\n")
+                    .append("    }\n")
+                    .append("} else {\n")
+                    .append("    b = b + 1;\n")
+                    .append("}\n")
+                    .append("k = 0;\n")
+                    .append("while (k < 3 and a > 0) {\n")
+                    .append("    k = k + 1;\n")
+                    .append("}\n");
+            written += 10;
+        }
+        source.append("print(a);\n");
+        return source.toString();
+    }
+
+    static List<Token> lex(String source) {
+        return new AnalizadorLexico(source).scanTokens();
+    }
+
+    static AnalizadorSemantico analyze(List<Token> tokens) {
+        AnalizadorSemantico analizador = new AnalizadorSemantico(tokens, new SymbolTable(), new FunctionTable());
+        analizador.analyze();
+        return analizador;
+    }
+
+    static Bytecode compile(String source) {
+        List<Token> tokens = lex(source);
+        AnalizadorSemantico analizador = analyze(tokens);
+        Bytecode bytecode = new BytecodeGenerator(new VCI(tokens).getVCI(), analizador.getVariables()).generate();
+        return new BytecodeOptimizer(bytecode).optimize();
+    }
+
+    static Execution execute(Bytecode bytecode, String input) {
+        Execution execution = new Execution(new SymbolTable(), InputSource.of(input), OutputSink.discard());
+        execution.execute(bytecode);
+        return execution;
+    }
+}
@@ -0,0 +1,65 @@
+package com.compiler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Fases del compilador sobre programas sintéticos de tamaño creciente. El
+// tiempo dividido entre el número de líneas debe mantenerse constante si la
+// fase escala linealmente (ver ScalingReport).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class ScalingBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int lines;
+
+    private String source;
+    private List<Token> tokens;
+    private List<Token> vci;
+    private List<String> variables;
+    private Bytecode bytecode;
+
+    @Setup
+    public void setup() {
+        source = Programas.generate(lines);
+        tokens = Programas.lex(source);
+        variables = Programas.analyze(tokens).getVariables();
+        vci = new VCI(tokens).getVCI();
+        bytecode = new BytecodeGenerator(vci, variables).generate();
+    }
+
+    @Benchmark
+    public List<Token> lexer() {
+        return new AnalizadorLexico(source).scanTokens();
+    }
+
+    @Benchmark
+    public AnalizadorSemantico semantic() {
+        return Programas.analyze(tokens);
+    }
+
+    @Benchmark
+    public List<Token> vci() {
+        return new VCI(tokens).getVCI();
+    }
+
+    @Benchmark
+    public Bytecode bytecode() {
+        return new BytecodeGenerator(vci, variables).generate();
+    }
+
+    @Benchmark
+    public Execution execution() {
+        return Programas.execute(bytecode, "");
+    }
+
+    @Benchmark
+    public Execution endToEnd() {
+        return Programas.execute(Programas.compile(source), "");
+    }
+}
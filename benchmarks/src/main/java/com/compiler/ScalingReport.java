@@ -0,0 +1,48 @@
+package com.compiler;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Ejecuta ScalingBenchmark (o VciScalingBenchmark) con los tamaños indicados e
+// imprime la curva de escalamiento de cada fase como tiempo total y
+// nanosegundos por línea (o por sentencia).
+// Uso: java -cp target/benchmarks.jar com.compiler.ScalingReport [VciScalingBenchmark] [tamaños...]
+public class ScalingReport {
+    public static void main(String[] args) throws RunnerException {
+        boolean vci = args.length > 0 && args[0].equals(VciScalingBenchmark.class.getSimpleName());
+        if (vci) args = Arrays.copyOfRange(args, 1, args.length);
+        String benchmark = vci ? VciScalingBenchmark.class.getSimpleName() : ScalingBenchmark.class.getSimpleName();
+        String parameter = vci ? "statements" : "lines";
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.include("\\." + benchmark + "\\.");
+        if (args.length > 0) builder.param(parameter, args);
+        else if (!vci) builder.param(parameter, "10000", "100000", "1000000");
+        Options options = builder.build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        Map<String, Map<Integer, Double>> curves = new TreeMap<>();
+        for (RunResult result : results) {
+            String label = result.getParams().getBenchmark();
+            String phase = label.substring(label.lastIndexOf('.') + 1);
+            int lines = Integer.parseInt(result.getParams().getParam(parameter));
+            curves.computeIfAbsent(phase, k -> new TreeMap<>()).put(lines, result.getPrimaryResult().getScore());
+        }
+
+        System.out.printf("%n%-12s %12s %14s %12s%n", "Fase", vci ? "Sentencias" : "Líneas", "ms", vci ? "ns/sentencia" : "ns/línea");
+        for (Map.Entry<String, Map<Integer, Double>> curve : curves.entrySet()) {
+            for (Map.Entry<Integer, Double> point : curve.getValue().entrySet()) {
+                double millis = point.getValue();
+                System.out.printf("%-12s %12d %14.3f %12.1f%n", curve.getKey(), point.getKey(), millis,
+                        millis * 1_000_000 / point.getKey());
+            }
+        }
+    }
+}
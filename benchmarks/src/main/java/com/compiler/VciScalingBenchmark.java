@@ -0,0 +1,35 @@
+package com.compiler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Generación del VCI sobre programas de 1K a 1M sentencias con if/else y while
+// anidados. El VCI se genera en O(n), así que el tiempo por sentencia debe
+// mantenerse constante; para ver la curva:
+// java -cp target/benchmarks.jar com.compiler.ScalingReport VciScalingBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class VciScalingBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int statements;
+
+    private TokenBuffer tokens;
+
+    @Setup
+    public void setup() {
+        tokens = TokenBuffer.of(Programas.lex(Programas.statements(statements)));
+    }
+
+    @Benchmark
+    public TokenBuffer vci() {
+        VCI vci = new VCI(tokens.names);
+        vci.generate(tokens, 0, tokens.size(), true);
+        vci.finish();
+        return vci.getBuffer();
+    }
+}
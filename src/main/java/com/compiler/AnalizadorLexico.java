@@ -1,18 +1,43 @@
 package com.compiler;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.compiler.TokenType.*;
 
-public class AnalizadorLexico {
-    String sourceCode;
+public class AnalizadorLexico implements AutoCloseable {
+    // Ventana de caracteres del código fuente. Con un Reader solo se guarda
+    // desde el inicio del token actual; start, current y limit son índices de buffer.
+    private char[] buffer;
+    private int limit;
+    private final Reader reader;
+    private boolean endOfInput;
+    // Caracteres descartados de la ventana, para saber la posición en el código fuente.
+    private int discarded;
+    private Token next;
+    // Si no es null, los tokens se agregan aquí en lugar de crear objetos Token.
+    private TokenBuffer sink;
+    private boolean finished;
     List<Token> tokens = new ArrayList<>();
     int start = 0;
     int current = 0;
     int line = 1;
+    private final ErrorReporter reporter;
+    // Errores reportados, para las métricas.
+    private int errors = 0;
     private final static Map<String, TokenType> keywords;
     static {
         keywords = new HashMap<>();
@@ -33,23 +58,157 @@ public class AnalizadorLexico {
     }
 
     public AnalizadorLexico(String sourceCode) {
-        this.sourceCode = sourceCode;
+        this(sourceCode, new ErrorReporter());
+    }
+
+    public AnalizadorLexico(String sourceCode, ErrorReporter reporter) {
+        this.buffer = sourceCode.toCharArray();
+        this.limit = buffer.length;
+        this.reader = null;
+        this.endOfInput = true;
+        this.reporter = reporter;
+    }
+
+    // Lee el código fuente por partes, sin cargarlo completo en memoria.
+    public AnalizadorLexico(Reader reader) {
+        this(reader, new ErrorReporter());
+    }
+
+    public AnalizadorLexico(Reader reader, ErrorReporter reporter) {
+        this.buffer = new char[8192];
+        this.reader = reader;
+        this.reporter = reporter;
+    }
+
+    // Lee un archivo UTF-8 mapeado en memoria.
+    public AnalizadorLexico(Path path) throws IOException {
+        this(path, new ErrorReporter());
+    }
+
+    public AnalizadorLexico(Path path, ErrorReporter reporter) throws IOException {
+        this(new MappedFileReader(path), reporter);
     }
 
     // Escanea los tokens de un código fuente.
     List<Token> scanTokens() {
-        while (!isAtEnd()) {
+        Token token;
+        while ((token = nextToken()) != null) {
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    // Devuelve el siguiente token, EOF al final y null después de EOF.
+    public Token nextToken() {
+        while (next == null) {
+            if (isAtEnd()) {
+                if (finished) return null;
+                finished = true;
+                return new Token(TokenType.EOF, "", null, line);
+            }
             start = current;
             scanToken();
         }
+        Token token = next;
+        next = null;
+        return token;
+    }
 
-        tokens.add(new Token(TokenType.EOF, "", null, line));
-        return tokens;
+    // Agrega tokens al buffer hasta que tenga rows filas o se llegue al final.
+    // Devuelve false cuando ya se agregó EOF.
+    public boolean fill(TokenBuffer buffer, int rows) {
+        sink = buffer;
+        try {
+            while (buffer.size() < rows) {
+                if (isAtEnd()) {
+                    if (!finished) buffer.add(TokenType.EOF, line, -1, 0);
+                    finished = true;
+                    return false;
+                }
+                start = current;
+                scanToken();
+            }
+            return true;
+        } finally {
+            sink = null;
+        }
+    }
+
+    public int errors() {
+        return errors;
+    }
+
+    // Caracteres leídos del Reader hasta el final del último token escaneado.
+    public int offset() {
+        return discarded + current;
+    }
+
+    public Iterator<Token> iterator() {
+        return new Iterator<>() {
+            private Token token = nextToken();
+
+            @Override
+            public boolean hasNext() {
+                return token != null;
+            }
+
+            @Override
+            public Token next() {
+                if (token == null) throw new NoSuchElementException();
+                Token result = token;
+                token = nextToken();
+                return result;
+            }
+        };
+    }
+
+    public Stream<Token> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) reader.close();
     }
 
     // Verifica si se ha llegado al final del código fuente.
     private boolean isAtEnd() {
-        return current >= sourceCode.length();
+        return !available(0);
+    }
+
+    // Asegura que el caracter current + offset esté en la ventana si existe.
+    private boolean available(int offset) {
+        while (current + offset >= limit) {
+            if (endOfInput) return false;
+            fill();
+        }
+        return true;
+    }
+
+    // Descarta lo anterior al token actual y lee más caracteres del Reader.
+    private void fill() {
+        if (start > 0) {
+            discarded += start;
+            System.arraycopy(buffer, start, buffer, 0, limit - start);
+            limit -= start;
+            current -= start;
+            start = 0;
+        }
+        // Con menos de dos lugares un par sustituto no cabe en una lectura.
+        if (buffer.length - limit < 2) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        try {
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0) endOfInput = true;
+            else limit += read;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String text(int from, int to) {
+        return new String(buffer, from, to - from);
     }
 
     // Escanea un token especifico
@@ -90,7 +249,8 @@ public class AnalizadorLexico {
                 } else if (Character.isLetter(c) || c == '_') {
                     identifier();
                 } else {
-                    Compilador.error(line, "Caracter inesperado: " + c);
+                    errors++;
+                    reporter.error(line, "Caracter inesperado: " + c);
                 }
             }
         }
@@ -98,7 +258,8 @@ public class AnalizadorLexico {
 
     // Avanza al siguiente caracter.
     private char advance() {
-        return sourceCode.charAt(current++);
+        available(0);
+        return buffer[current++];
     }
 
     // Agrega un token a la lista de tokens.
@@ -107,14 +268,17 @@ public class AnalizadorLexico {
     }
 
     private void addToken(TokenType type, Object literal) {
-        String text = sourceCode.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+        if (sink != null) {
+            sink.add(type, line, -1, 0);
+            return;
+        }
+        next = new Token(type, text(start, current), literal, line);
     }
 
     // Verifica si el caracter actual coincide con el esperado.
     private boolean match(char expected) {
         if (isAtEnd()) return false;
-        if (sourceCode.charAt(current) != expected) return false;
+        if (buffer[current] != expected) return false;
         current++;
         return true;
     }
@@ -122,13 +286,13 @@ public class AnalizadorLexico {
     // Devuelve el caracter actual sin avanzar.
     private char peek() {
         if (isAtEnd()) return '\0';
-        return sourceCode.charAt(current);
+        return buffer[current];
     }
 
     // Devuelve el siguiente caracter sin avanzar.
     private char peekNext() {
-        if (current + 1 >= sourceCode.length()) return '\0';
-        return sourceCode.charAt(current + 1);
+        if (!available(1)) return '\0';
+        return buffer[current + 1];
     }
 
     private void string() {
@@ -138,13 +302,18 @@ public class AnalizadorLexico {
         }
 
         if (isAtEnd()) {
-            Compilador.error(line, "Cadena sin cerrar. Se esperaba '\"'.");
+            errors++;
+            reporter.error(line, "Cadena sin cerrar. Se esperaba '\"'.");
             return;
         }
 
         advance();
 
-        String value = sourceCode.substring(start + 1, current - 1);
+        if (sink != null) {
+            sink.add(TokenType.STRING, line, sink.names.intern(buffer, start, current - start), 0);
+            return;
+        }
+        String value = text(start + 1, current - 1);
         addToken(TokenType.STRING, value);
     }
 
@@ -161,12 +330,23 @@ public class AnalizadorLexico {
             while (isDigit(peek())) advance();
         }
 
-        addToken(NUMBER, Double.parseDouble(sourceCode.substring(start, current)));
+        if (sink != null) {
+            int name = sink.names.intern(buffer, start, current - start);
+            sink.add(NUMBER, line, name, sink.names.number(name));
+            return;
+        }
+        addToken(NUMBER, Double.parseDouble(text(start, current)));
     }
 
     private void identifier() {
         while (isAlphaNumeric(peek())) advance();
-        String text = sourceCode.substring(start, current);
+        if (sink != null) {
+            int name = sink.names.intern(buffer, start, current - start);
+            TokenType type = sink.names.keyword(name);
+            sink.add(type, line, type == IDENTIFIER ? name : -1, 0);
+            return;
+        }
+        String text = text(start, current);
         TokenType type = keywords.get(text);
         if (type == null) type = IDENTIFIER;
         addToken(type);
@@ -1,57 +1,138 @@
 package com.compiler;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import static com.compiler.TokenType.*;
 
 public class AnalizadorSemantico {
+    // Tokens que necesita ver después del actual (var x = valor).
+    private static final int LOOKAHEAD = 3;
     private final List<Token> tokens;
     private final SymbolTable symbolTable;
     private final FunctionTable functionTable;
-    private static class ParseError extends RuntimeException {}
+    private final ErrorReporter reporter;
+    // Casilla y última línea de cada nombre de la NameTable; -1 si no está declarado.
+    private int[] slots = new int[0];
+    private int[] lastLines = new int[0];
+    private final List<Integer> declared = new ArrayList<>();
+    private final List<String> variables = new ArrayList<>();
+    private int errors = 0;
+    // Se lanza después de reportar el error para detener el análisis.
+    static class ParseError extends RuntimeException {}
 
     public AnalizadorSemantico(List<Token> tokens, SymbolTable symbolTable, FunctionTable functionTable) {
+        this(tokens, symbolTable, functionTable, new ErrorReporter());
+    }
+
+    private AnalizadorSemantico(List<Token> tokens, SymbolTable symbolTable, FunctionTable functionTable, ErrorReporter reporter) {
         this.tokens = tokens;
         this.symbolTable = symbolTable;
         this.functionTable = functionTable;
+        this.reporter = reporter;
+    }
+
+    // Analizador incremental sobre un TokenBuffer: ver analyze(TokenBuffer, int, boolean).
+    public AnalizadorSemantico(SymbolTable symbolTable, FunctionTable functionTable) {
+        this(symbolTable, functionTable, new ErrorReporter());
+    }
+
+    public AnalizadorSemantico(SymbolTable symbolTable, FunctionTable functionTable, ErrorReporter reporter) {
+        this(null, symbolTable, functionTable, reporter);
     }
 
     public void analyze() {
-        for (int i = 0; i < tokens.size(); i++) {
-            Token token = tokens.get(i);
-            if (token.type == VAR) {
-                if (tokens.get(i + 1).type != IDENTIFIER) {
-                    throw error(token, "Expect variable name after 'var'.");
-                } else if(symbolTable.contains(tokens.get(i + 1).lexeme)){
-                    throw error(token, "Variable already declared: " + tokens.get(i + 1).lexeme);
-                }
-                Token identifier = tokens.get(i + 1);
-                Token valueToken = null;
-                if (tokens.size() > i + 2 && tokens.get(i + 2).type == EQUAL) {
-                    valueToken = tokens.get(i + 3);
-                }
-                symbolTable.put(identifier.lexeme, new SymbolTable.Symbol(identifier.lexeme, "IDENTIFIER", new SymbolTable.Value(identifier.lexeme, valueToken != null ? valueToken.literal : null, identifier.line)));
-            } else if (token.type == PROGRAM) {
-                if (tokens.get(i + 1).type != IDENTIFIER) {
-                    throw error(token, "Expect program name after 'program'.");
-                } else if(functionTable.contains(tokens.get(i + 1).lexeme)){
-                    throw error(token, "Program already declared: " + tokens.get(i + 1).lexeme);
-                }
-                Token identifier = tokens.get(i + 1);
-                i++;
-                functionTable.put(identifier.lexeme, new SymbolTable.Symbol(identifier.lexeme, "PROGRAM", new SymbolTable.Value(identifier.lexeme, null, identifier.line)));
-            } else if (token.type == IDENTIFIER) {
-                if (!symbolTable.contains(token.lexeme)) {
-                    throw error(token, "Undefined variable: " + token.lexeme);
-                }else{
-                    symbolTable.put(token.lexeme, new SymbolTable.Symbol(token.lexeme, "IDENTIFIER", new SymbolTable.Value(token.lexeme, null, token.line)));
-                }
+        TokenBuffer buffer = TokenBuffer.of(tokens);
+        analyze(buffer, 0, true);
+        finish();
+        for (int row = 0; row < buffer.size(); row++) {
+            tokens.get(row).identifier = buffer.slot(row);
+        }
+    }
+
+    // Analiza las filas desde from mientras tengan sus tokens siguientes en el
+    // buffer (o todas si last) y devuelve la primera fila que falta analizar.
+    public int analyze(TokenBuffer buffer, int from, boolean last) {
+        int i = from;
+        while (i < buffer.size() && (last || i + LOOKAHEAD < buffer.size())) {
+            i = step(buffer, i);
+        }
+        return i;
+    }
+
+    // Pasa las variables declaradas a la tabla de símbolos.
+    public void finish() {
+        for (int v = 0; v < variables.size(); v++) {
+            String name = variables.get(v);
+            symbolTable.put(name, new SymbolTable.Symbol(name, "IDENTIFIER", new SymbolTable.Value(name, null, lastLines[declared.get(v)])));
+        }
+    }
+
+    private int step(TokenBuffer buffer, int i) {
+        TokenType type = buffer.type(i);
+        TokenType next = i + 1 < buffer.size() ? buffer.type(i + 1) : null;
+        if (type == VAR) {
+            if (next != IDENTIFIER) {
+                throw error(buffer.token(i), "Expect variable name after 'var'.");
+            }
+            int name = buffer.name(i + 1);
+            ensureCapacity(name);
+            String lexeme = buffer.lexeme(i + 1);
+            if (slots[name] >= 0 || symbolTable.contains(lexeme)) {
+                throw error(buffer.token(i), "Variable already declared: " + lexeme);
             }
+            slots[name] = variables.size();
+            lastLines[name] = buffer.line(i + 1);
+            declared.add(name);
+            variables.add(lexeme);
+        } else if (type == PROGRAM) {
+            if (next != IDENTIFIER) {
+                throw error(buffer.token(i), "Expect program name after 'program'.");
+            } else if(functionTable.contains(buffer.lexeme(i + 1))){
+                throw error(buffer.token(i), "Program already declared: " + buffer.lexeme(i + 1));
+            }
+            String identifier = buffer.lexeme(i + 1);
+            functionTable.put(identifier, new SymbolTable.Symbol(identifier, "PROGRAM", new SymbolTable.Value(identifier, null, buffer.line(i + 1))));
+            return i + 2;
+        } else if (type == IDENTIFIER) {
+            int name = buffer.name(i);
+            ensureCapacity(name);
+            if (slots[name] >= 0) {
+                buffer.setSlot(i, slots[name]);
+                lastLines[name] = buffer.line(i);
+            } else if (!symbolTable.contains(buffer.lexeme(i))) {
+                throw error(buffer.token(i), "Undefined variable: " + buffer.lexeme(i));
+            }else{
+                String lexeme = buffer.lexeme(i);
+                symbolTable.put(lexeme, new SymbolTable.Symbol(lexeme, "IDENTIFIER", new SymbolTable.Value(lexeme, null, buffer.line(i))));
+            }
+        }
+        return i + 1;
+    }
+
+    private void ensureCapacity(int name) {
+        if (name >= slots.length) {
+            int capacity = Math.max(name + 1, slots.length * 2);
+            int size = slots.length;
+            slots = Arrays.copyOf(slots, capacity);
+            lastLines = Arrays.copyOf(lastLines, capacity);
+            Arrays.fill(slots, size, capacity, -1);
         }
     }
 
+    // Nombres de las variables declaradas, en el orden de su casilla.
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    public int errors() {
+        return errors;
+    }
+
     private ParseError error(Token token, String message) {
-        Compilador.error(token, message);
+        errors++;
+        reporter.error(token, message);
         return new ParseError();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,125 @@
+package com.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+
+// Funciones de apoyo para las clases que genera JvmBackend. Se copia tal cual
+// dentro de los jar generados, así que no depende de ninguna otra clase del compilador.
+public final class AotRuntime {
+    private static final PrintStream OUT = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false,
+            Charset.forName(System.getProperty("stdout.encoding", Charset.defaultCharset().name())));
+    private static BufferedReader in;
+
+    private AotRuntime() {}
+
+    public static void print(double value) {
+        OUT.print(value);
+    }
+
+    public static void print(boolean value) {
+        OUT.print(value);
+    }
+
+    public static void print(Object value) {
+        OUT.print(value);
+    }
+
+    public static void flush() {
+        OUT.flush();
+    }
+
+    // Lee una línea; si es un número se guarda como Double, si no como cadena.
+    public static Object input(int line) {
+        OUT.flush();
+        try {
+            if (in == null) in = new BufferedReader(new InputStreamReader(System.in));
+            String text = in.readLine();
+            if (text == null) fail(line, "No hay más líneas de entrada.");
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                return text;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static double number(Object value, int line) {
+        if (value instanceof Double number) return number;
+        fail(line, "Los operandos deben ser números.");
+        return 0;
+    }
+
+    public static boolean condition(Object value, int line) {
+        if (value instanceof Boolean bool) return bool;
+        fail(line, "La condición debe ser booleana.");
+        return false;
+    }
+
+    public static Object add(Object a, Object b, int line) {
+        if (a instanceof Double x && b instanceof Double y) return x + y;
+        return concat(a, b, line);
+    }
+
+    public static String concat(Object a, Object b, int line) {
+        if (a == null || b == null) fail(line, "No se puede concatenar un valor nulo.");
+        return a.toString() + b;
+    }
+
+    public static boolean and(Object a, Object b, int line) {
+        if (!(a instanceof Boolean left)) return bool(line);
+        if (!left) return false;
+        return b instanceof Boolean right ? right : bool(line);
+    }
+
+    public static boolean or(Object a, Object b, int line) {
+        if (!(a instanceof Boolean left)) return bool(line);
+        if (left) return true;
+        return b instanceof Boolean right ? right : bool(line);
+    }
+
+    private static boolean bool(int line) {
+        fail(line, "Los operandos deben ser booleanos.");
+        return false;
+    }
+
+    public static boolean equal(Object a, Object b, int line) {
+        if (a == null) fail(line, "No se puede comparar un valor nulo.");
+        return a.equals(b);
+    }
+
+    public static boolean equal(double a, double b) {
+        return Double.compare(a, b) == 0;
+    }
+
+    public static boolean greater(double a, double b) {
+        return a > b;
+    }
+
+    public static boolean greaterEqual(double a, double b) {
+        return a >= b;
+    }
+
+    public static boolean less(double a, double b) {
+        return a < b;
+    }
+
+    public static boolean lessEqual(double a, double b) {
+        return a <= b;
+    }
+
+    // Reporta el error como lo hace el intérprete y termina con el mismo código.
+    public static void fail(int line, String message) {
+        OUT.flush();
+        System.err.println("[line " + line + "] Runtime error: " + message);
+        System.exit(70);
+    }
+}
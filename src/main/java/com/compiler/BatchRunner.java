@@ -0,0 +1,151 @@
+package com.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Ejecuta un lote de pares programa/entrada en hilos virtuales, uno por
+// ejecución. Cada programa distinto se compila una sola vez y cada ejecución
+// tiene su propia Execution, tabla de símbolos, entrada, salida y errores.
+public class BatchRunner {
+    // Programa a ejecutar y el texto que recibe como input.
+    public record Job(Path program, String input) {}
+
+    // Salida y errores de una ejecución y lo que costó.
+    public record Result(Job job, String output, String errors, boolean compileFailed, boolean runtimeFailed,
+                         long instructions, long nanos) {}
+
+    private final Compilador compilador;
+    private long elapsed;
+    private int programs;
+
+    public BatchRunner(Compilador compilador) {
+        this.compilador = compilador;
+    }
+
+    // Cada línea del archivo es la ruta de un programa y, separada por un
+    // tabulador, la de un archivo con su entrada. Las rutas relativas son
+    // relativas al archivo del lote; las líneas vacías y las que empiezan con
+    // # se ignoran.
+    public static List<Job> read(Path list) throws IOException {
+        Path base = list.toAbsolutePath().getParent();
+        Map<Path, String> inputs = new HashMap<>();
+        List<Job> jobs = new ArrayList<>();
+        for (String line : Files.readAllLines(list)) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            String[] parts = line.split("\t", 2);
+            String input = "";
+            if (parts.length > 1 && !parts[1].isBlank()) {
+                Path inputPath = base.resolve(parts[1].strip());
+                input = inputs.get(inputPath);
+                if (input == null) {
+                    input = Files.readString(inputPath);
+                    inputs.put(inputPath, input);
+                }
+            }
+            jobs.add(new Job(base.resolve(parts[0].strip()), input));
+        }
+        return jobs;
+    }
+
+    public List<Result> run(List<Job> jobs) {
+        long started = System.nanoTime();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Primero se compila cada programa distinto, también en paralelo.
+            Set<Path> paths = new LinkedHashSet<>();
+            for (Job job : jobs) paths.add(job.program());
+            Map<Path, Future<Compilation>> compilations = new HashMap<>();
+            for (Path path : paths) compilations.put(path, threads.submit(() -> compile(path)));
+            programs = paths.size();
+
+            List<Future<Result>> futures = new ArrayList<>(jobs.size());
+            for (Job job : jobs) {
+                Future<Compilation> compilation = compilations.get(job.program());
+                futures.add(threads.submit(() -> execute(job, compilation.get())));
+            }
+            List<Result> results = new ArrayList<>(jobs.size());
+            for (Future<Result> future : futures) results.add(get(future));
+            return results;
+        } finally {
+            elapsed = System.nanoTime() - started;
+        }
+    }
+
+    // Resumen del último lote: ejecuciones, errores y rendimiento total.
+    public String summary(List<Result> results) {
+        long instructions = 0;
+        int compileFailures = 0;
+        int runtimeFailures = 0;
+        StringBuilder out = new StringBuilder();
+        for (Result result : results) {
+            instructions += result.instructions();
+            if (result.compileFailed()) compileFailures++;
+            if (result.runtimeFailed()) runtimeFailures++;
+            if (result.compileFailed() || result.runtimeFailed()) {
+                out.append(result.job().program()).append(": ").append(result.errors().strip()).append(System.lineSeparator());
+            }
+        }
+        double seconds = elapsed / 1e9;
+        out.append(String.format("Programas: %d%n", programs));
+        out.append(String.format("Ejecuciones: %d (%d con error de compilación, %d con error de ejecución)%n",
+                results.size(), compileFailures, runtimeFailures));
+        out.append(String.format("Tiempo total: %.1f ms%n", elapsed / 1e6));
+        out.append(String.format("Ejecuciones por segundo: %.1f%n", results.size() / seconds));
+        out.append(String.format("Instrucciones por segundo: %.0f%n", instructions / seconds));
+        return out.toString();
+    }
+
+    private record Compilation(CompiledProgram program, String errors, boolean failed) {}
+
+    private Compilation compile(Path path) {
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        ErrorReporter errors = new ErrorReporter(new PrintStream(messages, true, StandardCharsets.UTF_8));
+        CompiledProgram program;
+        try {
+            program = compilador.compile(path, errors);
+        } catch (IOException e) {
+            errors.error("Error reading file: " + e.getMessage());
+            program = null;
+        }
+        return new Compilation(program, messages.toString(StandardCharsets.UTF_8), program == null || errors.hadError());
+    }
+
+    private Result execute(Job job, Compilation compilation) {
+        if (compilation.failed()) {
+            return new Result(job, "", compilation.errors(), true, false, 0, 0);
+        }
+        OutputSink.Capture output = OutputSink.capture();
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        ErrorReporter errors = new ErrorReporter(new PrintStream(messages, true, StandardCharsets.UTF_8));
+        long started = System.nanoTime();
+        Execution execution = compilador.execute(compilation.program(), InputSource.of(job.input()), output, errors);
+        long nanos = System.nanoTime() - started;
+        return new Result(job, output.toString(), messages.toString(StandardCharsets.UTF_8),
+                false, errors.hadRuntimeError(), execution.getDispatches(), nanos);
+    }
+
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Lote interrumpido.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
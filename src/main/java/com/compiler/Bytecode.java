@@ -0,0 +1,130 @@
+package com.compiler;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Forma ejecutable del VCI: arreglo de códigos de operación con sus operandos
+// y una tabla de constantes ya convertidas (números y cadenas). Las variables
+// se referencian por su casilla; variables guarda el nombre de cada casilla.
+public class Bytecode {
+    final int[] code;
+    final int[] lines;
+    final double[] numbers;
+    // Para cada número, si es entero (ValueType.isInteger) y su valor como long.
+    final boolean[] integral;
+    final long[] integers;
+    final String[] strings;
+    final String[] variables;
+    // El mismo código con los ciclos optimizados, operadores especializados
+    // por tipo, cadenas de concatenación juntadas y superinstrucciones; se
+    // calcula la primera vez que se ejecuta y se comparte entre ejecuciones
+    // (si dos hilos lo calculan a la vez dan el mismo resultado).
+    private volatile Bytecode fused;
+    // Lo mismo sin LoopOptimizer, para medir su efecto.
+    private volatile Bytecode fusedWithoutLoops;
+    // Traducción para RegisterMachine, con las invariantes de los ciclos
+    // sacadas y los operadores especializados. translated indica si ya se
+    // intentó, porque registers es null cuando no se puede traducir.
+    private volatile RegisterCode registers;
+    private volatile boolean translated;
+    // Ciclos que ya compiló LoopCompiler, por rango y tipos de las variables;
+    // vacío si no se pudieron compilar.
+    final Map<String, Optional<CompiledLoop>> compiledLoops = new ConcurrentHashMap<>();
+
+    public Bytecode(int[] code, int[] lines, double[] numbers, String[] strings, String[] variables) {
+        this.code = code;
+        this.lines = lines;
+        this.numbers = numbers;
+        this.integral = new boolean[numbers.length];
+        this.integers = new long[numbers.length];
+        for (int k = 0; k < numbers.length; k++) {
+            integral[k] = ValueType.isInteger(numbers[k]);
+            if (integral[k]) integers[k] = (long) numbers[k];
+        }
+        this.strings = strings;
+        this.variables = variables;
+    }
+
+    public String[] getVariables() {
+        return variables;
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    public Bytecode fused() {
+        return fused(true);
+    }
+
+    public Bytecode fused(boolean loops) {
+        if (!loops) {
+            Bytecode result = fusedWithoutLoops;
+            if (result == null) fusedWithoutLoops = result = Superinstructions.rewrite(ConcatChains.rewrite(TypeInference.specialize(this)));
+            return result;
+        }
+        Bytecode result = fused;
+        if (result == null) {
+            Bytecode specialized = TypeInference.specialize(LoopOptimizer.hoist(this));
+            fused = result = LoopOptimizer.rotate(Superinstructions.rewrite(ConcatChains.rewrite(specialized)));
+        }
+        return result;
+    }
+
+    public RegisterCode registers() {
+        if (!translated) {
+            registers = RegisterTranslator.translate(TypeInference.specialize(LoopOptimizer.hoist(this)));
+            translated = true;
+        }
+        return registers;
+    }
+
+    // Línea del código fuente de la instrucción que empieza en pc.
+    public int lineAt(int pc) {
+        return lines[pc];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        int pc = 0;
+        while (pc < code.length) {
+            builder.append(String.format("%5d  ", pc));
+            appendInstruction(builder, pc);
+            builder.append(System.lineSeparator());
+            pc += Opcode.length(code[pc]);
+        }
+        return builder.toString();
+    }
+
+    // La instrucción que empieza en pc con sus operandos legibles.
+    public String instructionAt(int pc) {
+        StringBuilder builder = new StringBuilder();
+        appendInstruction(builder, pc);
+        return builder.toString().stripTrailing();
+    }
+
+    // Las casillas sin nombre (por ejemplo las de LoopOptimizer) se muestran por número.
+    private String variableName(int slot) {
+        return variables[slot] != null ? variables[slot] : "#" + slot;
+    }
+
+    private void appendInstruction(StringBuilder builder, int pc) {
+        int opcode = code[pc];
+        builder.append(String.format("%-15s", Opcode.name(opcode)));
+        switch (opcode) {
+            case Opcode.PUSH_NUMBER, Opcode.PUSH_INTEGER -> builder.append(numbers[code[pc + 1]]);
+            case Opcode.PUSH_STRING -> builder.append('"').append(strings[code[pc + 1]]).append('"');
+            case Opcode.LOAD, Opcode.REFERENCE -> builder.append(variableName(code[pc + 1]));
+            case Opcode.PROGRAM -> builder.append(strings[code[pc + 1]]);
+            case Opcode.JUMP, Opcode.JUMP_IF_FALSE -> builder.append(code[pc + 1]);
+            default -> {
+                for (int operand = 1; operand < Opcode.length(opcode); operand++) {
+                    if (operand > 1) builder.append(' ');
+                    builder.append(code[pc + operand]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.compiler.TokenType.*;
+
+// Traduce el VCI (lista de tokens en postfijo) a Bytecode. Los literales se
+// convierten una sola vez a la tabla de constantes y las direcciones de salto
+// se resuelven a posiciones dentro del arreglo de código.
+public class BytecodeGenerator {
+    // Papel de cada token del VCI, calculado simulando la pila de ejecución.
+    private static final byte EMIT = 0;
+    private static final byte REFERENCE = 1;
+    private static final byte SKIP = 2;
+    private static final byte DISCARD = 3;
+
+    private final TokenBuffer vci;
+    private final ErrorReporter reporter;
+    private final byte[] roles;
+    private final int[] programNames;
+    private final boolean[] jumpTargets;
+
+    private int[] code = new int[64];
+    private int[] lines = new int[64];
+    private int size = 0;
+
+    private final List<Double> numbers = new ArrayList<>();
+    private final Map<Double, Integer> numberIndex = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final List<String> variables;
+    private final Map<String, Integer> undeclared = new HashMap<>();
+
+    public BytecodeGenerator(List<Token> vci) {
+        this(vci, List.of());
+    }
+
+    // variables son los nombres de las casillas asignadas por el AnalizadorSemantico.
+    public BytecodeGenerator(List<Token> vci, List<String> variables) {
+        this(TokenBuffer.of(vci), variables);
+    }
+
+    public BytecodeGenerator(TokenBuffer vci, List<String> variables) {
+        this(vci, variables, new ErrorReporter());
+    }
+
+    public BytecodeGenerator(TokenBuffer vci, List<String> variables, ErrorReporter reporter) {
+        this.vci = vci;
+        this.reporter = reporter;
+        this.variables = new ArrayList<>(variables);
+        this.roles = new byte[vci.size()];
+        this.programNames = new int[vci.size()];
+        this.jumpTargets = new boolean[vci.size() + 1];
+    }
+
+    public Bytecode generate() {
+        for (int i = 0; i < vci.size(); i++) {
+            int slot = vci.slot(i);
+            if (vci.type(i) != IDENTIFIER || slot < 0) continue;
+            while (variables.size() <= slot) variables.add(null);
+            if (variables.get(slot) == null) variables.set(slot, vci.lexeme(i));
+        }
+        classify();
+
+        int[] offsets = new int[vci.size() + 1];
+        List<int[]> fixups = new ArrayList<>();
+        for (int i = 0; i < vci.size(); i++) {
+            offsets[i] = size;
+            TokenType type = vci.type(i);
+            int line = vci.line(i);
+            if (roles[i] == SKIP) continue;
+
+            if (type == ADDRESS && isJumpAt(i + 1)) {
+                TokenType jump = vci.type(i + 1);
+                int opcode = jump == IF || jump == WHILE ? Opcode.JUMP_IF_FALSE : Opcode.JUMP;
+                emit(opcode, line);
+                fixups.add(new int[]{size, (int) vci.number(i)});
+                emitOperand(0);
+                i++;
+                offsets[i] = offsets[i - 1];
+                continue;
+            }
+
+            switch (type) {
+                case IDENTIFIER -> {
+                    emit(roles[i] == REFERENCE ? Opcode.REFERENCE : Opcode.LOAD, line);
+                    emitOperand(slot(i));
+                }
+                case NUMBER, ADDRESS -> {
+                    emit(Opcode.PUSH_NUMBER, line);
+                    emitOperand(number(vci.number(i)));
+                }
+                case STRING -> {
+                    emit(Opcode.PUSH_STRING, line);
+                    emitOperand(string((String) vci.literal(i)));
+                }
+                case TRUE -> emit(Opcode.PUSH_TRUE, line);
+                case FALSE -> emit(Opcode.PUSH_FALSE, line);
+                case NULL -> emit(Opcode.PUSH_NULL, line);
+                case EQUAL -> emit(Opcode.STORE, line);
+                case PRINT -> emit(Opcode.PRINT, line);
+                case INPUT -> emit(Opcode.INPUT, line);
+                case PROGRAM -> {
+                    emit(Opcode.PROGRAM, line);
+                    emitOperand(string(vci.lexeme(programNames[i] >= 0 ? programNames[i] : i)));
+                }
+                case EMPTY -> reporter.error(vci.token(i), "Dirección de salto sin resolver en el VCI.");
+                default -> {
+                    int opcode = operatorOpcode(type);
+                    if (opcode < 0) {
+                        reporter.error(vci.token(i), "Token inesperado en el VCI.");
+                    } else {
+                        emit(opcode, line);
+                    }
+                }
+            }
+            if (roles[i] == DISCARD) emit(Opcode.POP, line);
+        }
+        offsets[vci.size()] = size;
+
+        for (int[] fixup : fixups) {
+            int target = fixup[1];
+            code[fixup[0]] = target >= 0 && target < offsets.length ? offsets[target] : size;
+        }
+
+        double[] numberPool = new double[numbers.size()];
+        for (int i = 0; i < numberPool.length; i++) numberPool[i] = numbers.get(i);
+        return new Bytecode(Arrays.copyOf(code, size), Arrays.copyOf(lines, size), numberPool,
+                strings.toArray(new String[0]), variables.toArray(new String[0]));
+    }
+
+    // Simula la pila de ejecución sobre el VCI para saber qué identificadores
+    // son destino de una asignación y qué valores nunca se consumen.
+    private void classify() {
+        Arrays.fill(programNames, -1);
+        for (int i = 0; i + 1 < vci.size(); i++) {
+            if (vci.type(i) == ADDRESS && isJumpAt(i + 1)) {
+                int target = (int) vci.number(i);
+                if (target >= 0 && target < jumpTargets.length) jumpTargets[target] = true;
+            }
+        }
+
+        int[] stack = new int[16];
+        int top = 0;
+        for (int i = 0; i < vci.size(); i++) {
+            if (jumpTargets[i]) {
+                discard(stack, top);
+                top = 0;
+            }
+            TokenType type = vci.type(i);
+            switch (type) {
+                case IDENTIFIER, NUMBER, STRING, TRUE, FALSE, NULL, ADDRESS -> {
+                    if (type == ADDRESS && isJumpAt(i + 1)) {
+                        TokenType jump = vci.type(++i);
+                        if ((jump == IF || jump == WHILE) && top > 0) top--;
+                        discard(stack, top);
+                        top = 0;
+                    } else {
+                        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                        stack[top++] = i;
+                    }
+                }
+                case EQUAL, INPUT -> {
+                    if (type == EQUAL && top > 0) top--;
+                    int target = top > 0 ? stack[--top] : -1;
+                    if (target >= 0 && vci.type(target) == IDENTIFIER) {
+                        roles[target] = REFERENCE;
+                    } else {
+                        reporter.error(vci.token(i), "Destino de asignación inválido.");
+                    }
+                }
+                case PRINT -> {
+                    if (top > 0) top--;
+                }
+                case PROGRAM -> {
+                    int name = top > 0 ? stack[--top] : -1;
+                    if (name >= 0 && vci.type(name) == IDENTIFIER) {
+                        roles[name] = SKIP;
+                        programNames[i] = name;
+                    }
+                }
+                case NOT -> {
+                    if (top > 0) stack[top - 1] = i;
+                }
+                default -> {
+                    if (operatorOpcode(type) >= 0) {
+                        if (top > 0) top--;
+                        if (top > 0) {
+                            stack[top - 1] = i;
+                        } else {
+                            stack[top++] = i;
+                        }
+                    }
+                }
+            }
+        }
+        discard(stack, top);
+    }
+
+    // Los valores que quedan en la pila al cruzar un salto nunca se usan
+    // (por ejemplo "var x;"): las constantes se omiten y los resultados se descartan.
+    private void discard(int[] stack, int top) {
+        for (int j = 0; j < top; j++) {
+            int index = stack[j];
+            TokenType type = vci.type(index);
+            if (type == IDENTIFIER || type == NUMBER || type == STRING || type == TRUE || type == FALSE
+                    || type == NULL || type == ADDRESS) {
+                if (roles[index] == EMIT) roles[index] = SKIP;
+            } else {
+                roles[index] = DISCARD;
+            }
+        }
+    }
+
+    private boolean isJumpAt(int index) {
+        if (index >= vci.size()) return false;
+        TokenType type = vci.type(index);
+        return type == IF || type == WHILE || type == ELSE || type == END;
+    }
+
+    static int operatorOpcode(TokenType type) {
+        return switch (type) {
+            case PLUS -> Opcode.ADD;
+            case MINUS -> Opcode.SUB;
+            case MUL -> Opcode.MUL;
+            case DIV -> Opcode.DIV;
+            case MOD -> Opcode.MOD;
+            case AND -> Opcode.AND;
+            case OR -> Opcode.OR;
+            case NOT -> Opcode.NOT;
+            case GREATER -> Opcode.GREATER;
+            case GREATER_EQUAL -> Opcode.GREATER_EQUAL;
+            case LESS -> Opcode.LESS;
+            case LESS_EQUAL -> Opcode.LESS_EQUAL;
+            case EQUAL_EQUAL -> Opcode.EQUAL_EQUAL;
+            case NOT_EQUAL -> Opcode.NOT_EQUAL;
+            default -> -1;
+        };
+    }
+
+    private void emit(int opcode, int line) {
+        ensureCapacity();
+        lines[size] = line;
+        code[size++] = opcode;
+    }
+
+    private void emitOperand(int operand) {
+        ensureCapacity();
+        lines[size] = lines[size - 1];
+        code[size++] = operand;
+    }
+
+    private void ensureCapacity() {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+            lines = Arrays.copyOf(lines, size * 2);
+        }
+    }
+
+    private int number(double value) {
+        return numberIndex.computeIfAbsent(value, v -> {
+            numbers.add(v);
+            return numbers.size() - 1;
+        });
+    }
+
+    private int string(String value) {
+        return stringIndex.computeIfAbsent(value, v -> {
+            strings.add(v);
+            return strings.size() - 1;
+        });
+    }
+
+    // Casilla de la variable. Los identificadores que no pasaron por el
+    // AnalizadorSemantico reciben una casilla nueva al final.
+    private int slot(int i) {
+        if (vci.slot(i) >= 0) return vci.slot(i);
+        return undeclared.computeIfAbsent(vci.lexeme(i), name -> {
+            variables.add(name);
+            return variables.size() - 1;
+        });
+    }
+}
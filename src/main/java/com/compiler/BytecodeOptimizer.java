@@ -0,0 +1,504 @@
+package com.compiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Optimiza el Bytecode generado del VCI antes de ejecutarlo:
+//  - evalúa las operaciones entre constantes (aritmética, comparaciones,
+//    and/or y concatenaciones), salvo las que darían un error de ejecución;
+//  - quita las identidades que no cambian el valor (x - 0, x * 1, x / 1, 1 * x,
+//    x + "" con x cadena, x and true, x or false...) cuando se sabe el tipo de x;
+//  - quita las ramas con condición constante (if (true), while (false)), el
+//    código al que ya no se llega y los saltos al siguiente, y encadena los
+//    saltos a otro salto.
+// Las operaciones no se reasocian (celsius * 9 / 5 no es celsius * 1.8 en
+// punto flotante). Las direcciones de salto se recalculan al final.
+public class BytecodeOptimizer {
+    // Tipo conocido de un valor de la pila; -1 si no se conoce.
+    private static final byte UNKNOWN = -1;
+
+    private final Bytecode input;
+
+    // Instrucciones decodificadas: opcode, operando (los saltos apuntan a un
+    // índice de instrucción) y línea.
+    private int[] ops;
+    private int[] args;
+    private int[] lines;
+    private int count;
+
+    private final List<Double> numbers = new ArrayList<>();
+    private final Map<Double, Integer> numberIndex = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+
+    private int folded = 0;
+    private int identities = 0;
+    private int branches = 0;
+    private int threaded = 0;
+    private int unreachable = 0;
+    private int before;
+
+    public BytecodeOptimizer(Bytecode input) {
+        this.input = input;
+    }
+
+    public Bytecode optimize() {
+        decode();
+        before = count;
+        int previous;
+        do {
+            previous = count;
+            fold();
+            simplifyJumps();
+        } while (count < previous);
+        return encode();
+    }
+
+    // Instrucciones que quitó la última llamada a optimize.
+    public int removed() {
+        return before - count;
+    }
+
+    public String report() {
+        return "Instrucciones: " + before + " -> " + count + " (" + removed() + " eliminadas)" + System.lineSeparator()
+                + "Constantes evaluadas: " + folded + System.lineSeparator()
+                + "Identidades eliminadas: " + identities + System.lineSeparator()
+                + "Ramas constantes eliminadas: " + branches + System.lineSeparator()
+                + "Saltos encadenados: " + threaded + System.lineSeparator()
+                + "Instrucciones inalcanzables: " + unreachable + System.lineSeparator();
+    }
+
+    private void decode() {
+        int[] code = input.code;
+        int[] index = new int[code.length + 1];
+        count = 0;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) index[pc] = count++;
+        index[code.length] = count;
+        ops = new int[count];
+        args = new int[count];
+        lines = new int[count];
+        int i = 0;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc]), i++) {
+            ops[i] = code[pc];
+            lines[i] = input.lines[pc];
+            if (Opcode.length(code[pc]) == 1) continue;
+            int operand = code[pc + 1];
+            args[i] = switch (code[pc]) {
+                case Opcode.JUMP, Opcode.JUMP_IF_FALSE -> operand >= 0 && operand < index.length ? index[operand] : count;
+                case Opcode.PUSH_NUMBER -> number(input.numbers[operand]);
+                case Opcode.PUSH_STRING, Opcode.PROGRAM -> string(input.strings[operand]);
+                default -> operand;
+            };
+        }
+    }
+
+    // Las tablas de constantes se vuelven a armar solo con las que se usan.
+    private Bytecode encode() {
+        int[] pcs = new int[count + 1];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            pcs[i] = size;
+            size += Opcode.length(ops[i]);
+        }
+        pcs[count] = size;
+        BytecodeOptimizer pools = new BytecodeOptimizer(input);
+        int[] code = new int[size];
+        int[] codeLines = new int[size];
+        for (int i = 0; i < count; i++) {
+            int pc = pcs[i];
+            code[pc] = ops[i];
+            codeLines[pc] = lines[i];
+            if (Opcode.length(ops[i]) == 1) continue;
+            code[pc + 1] = switch (ops[i]) {
+                case Opcode.JUMP, Opcode.JUMP_IF_FALSE -> pcs[args[i]];
+                case Opcode.PUSH_NUMBER -> pools.number(numbers.get(args[i]));
+                case Opcode.PUSH_STRING, Opcode.PROGRAM -> pools.string(strings.get(args[i]));
+                default -> args[i];
+            };
+            codeLines[pc + 1] = lines[i];
+        }
+        double[] numberPool = new double[pools.numbers.size()];
+        for (int i = 0; i < numberPool.length; i++) numberPool[i] = pools.numbers.get(i);
+        return new Bytecode(code, codeLines, numberPool, pools.strings.toArray(new String[0]), input.variables);
+    }
+
+    // Una pasada hacia adelante que escribe las instrucciones de nuevo sobre
+    // los mismos arreglos. Mientras escribe simula la pila: para cada valor
+    // guarda dónde empieza la expresión que lo produce y su tipo, de modo que
+    // al llegar a un operador puede reescribir la cola ya escrita. No se
+    // combina nada a través de un destino de salto (fence).
+    private void fold() {
+        boolean[] targets = targets();
+        int[] map = new int[count + 1];
+        int[] starts = new int[16];
+        byte[] kinds = new byte[16];
+        int depth = 0;
+        int size = 0;
+        int fence = -1;
+        for (int i = 0; i < count; i++) {
+            map[i] = size;
+            if (targets[i]) {
+                fence = size;
+                depth = 0;
+            }
+            int op = ops[i];
+            int arg = args[i];
+            int line = lines[i];
+
+            if (!targets[i] && op == Opcode.JUMP_IF_FALSE && depth > 0 && starts[depth - 1] == size - 1
+                    && (ops[size - 1] == Opcode.PUSH_TRUE || ops[size - 1] == Opcode.PUSH_FALSE)) {
+                boolean condition = ops[size - 1] == Opcode.PUSH_TRUE;
+                size--;
+                depth--;
+                branches++;
+                if (condition) continue;
+                op = Opcode.JUMP;
+            }
+
+            if (!targets[i] && isBinary(op) && depth >= 2) {
+                int left = starts[depth - 2];
+                int right = starts[depth - 1];
+                byte leftKind = kinds[depth - 2];
+                byte rightKind = kinds[depth - 1];
+                if (left >= 0 && right > fence && right == left + 1 && right == size - 1
+                        && isConstant(ops[left]) && isConstant(ops[right])) {
+                    if (foldBinary(op, left, right, line)) {
+                        size = left + 1;
+                        depth--;
+                        kinds[depth - 1] = kindOf(ops[left]);
+                        folded++;
+                        continue;
+                    }
+                }
+                if (right > fence && right == size - 1 && isRightIdentity(op, leftKind, ops[right], args[right])) {
+                    size--;
+                    depth--;
+                    identities++;
+                    continue;
+                }
+                if (left >= 0 && left >= fence && right == left + 1 && isLeftIdentity(op, ops[left], args[left], rightKind)) {
+                    System.arraycopy(ops, left + 1, ops, left, size - left - 1);
+                    System.arraycopy(args, left + 1, args, left, size - left - 1);
+                    System.arraycopy(lines, left + 1, lines, left, size - left - 1);
+                    size--;
+                    depth--;
+                    starts[depth - 1] = left;
+                    kinds[depth - 1] = rightKind;
+                    identities++;
+                    continue;
+                }
+            }
+            if (!targets[i] && op == Opcode.NOT && depth >= 1 && starts[depth - 1] > fence && starts[depth - 1] == size - 1
+                    && (ops[size - 1] == Opcode.PUSH_TRUE || ops[size - 1] == Opcode.PUSH_FALSE)) {
+                ops[size - 1] = ops[size - 1] == Opcode.PUSH_TRUE ? Opcode.PUSH_FALSE : Opcode.PUSH_TRUE;
+                folded++;
+                continue;
+            }
+
+            ops[size] = op;
+            args[size] = arg;
+            lines[size] = line;
+            size++;
+
+            // Efecto de la instrucción en la pila simulada.
+            switch (op) {
+                case Opcode.PUSH_NUMBER, Opcode.PUSH_STRING, Opcode.PUSH_TRUE, Opcode.PUSH_FALSE, Opcode.PUSH_NULL,
+                        Opcode.LOAD, Opcode.REFERENCE -> {
+                    if (depth == starts.length) {
+                        starts = Arrays.copyOf(starts, depth * 2);
+                        kinds = Arrays.copyOf(kinds, depth * 2);
+                    }
+                    starts[depth] = size - 1;
+                    kinds[depth++] = op == Opcode.LOAD ? UNKNOWN : kindOf(op);
+                }
+                case Opcode.NOT -> {
+                    if (depth > 0) kinds[depth - 1] = ValueType.BOOLEAN;
+                }
+                case Opcode.STORE -> depth = Math.max(0, depth - 2);
+                case Opcode.POP, Opcode.PRINT, Opcode.INPUT -> depth = Math.max(0, depth - 1);
+                case Opcode.JUMP, Opcode.JUMP_IF_FALSE -> {
+                    // Lo que sigue a un salto se trata como el inicio de un bloque.
+                    depth = 0;
+                    fence = size;
+                }
+                case Opcode.PROGRAM -> {}
+                default -> {
+                    // Operador binario: la expresión empieza donde empieza el operando izquierdo.
+                    byte kind = resultKind(op, depth >= 2 ? kinds[depth - 2] : UNKNOWN, depth >= 1 ? kinds[depth - 1] : UNKNOWN);
+                    if (depth >= 2) {
+                        depth--;
+                        kinds[depth - 1] = kind;
+                    } else {
+                        depth = 1;
+                        starts[0] = -1;
+                        kinds[0] = kind;
+                    }
+                }
+            }
+        }
+        map[count] = size;
+        for (int i = 0; i < size; i++) {
+            if (Opcode.isJump(ops[i])) args[i] = map[args[i]];
+        }
+        count = size;
+    }
+
+    // Encadena los saltos, quita lo inalcanzable y los saltos al siguiente.
+    private void simplifyJumps() {
+        for (int i = 0; i < count; i++) {
+            if (!Opcode.isJump(ops[i])) continue;
+            int target = args[i];
+            for (int hops = 0; target < count && ops[target] == Opcode.JUMP && args[target] != target && hops < count; hops++) {
+                target = args[target];
+            }
+            if (target != args[i]) {
+                args[i] = target;
+                threaded++;
+            }
+        }
+
+        boolean[] live = new boolean[count];
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        if (count > 0) {
+            live[0] = true;
+            work.push(0);
+        }
+        while (!work.isEmpty()) {
+            int i = work.pop();
+            int op = ops[i];
+            if (Opcode.isJump(op)) reach(live, work, args[i]);
+            if (op != Opcode.JUMP) reach(live, work, i + 1);
+        }
+
+        int[] map = new int[count + 1];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            map[i] = size;
+            if (!live[i]) {
+                unreachable++;
+                continue;
+            }
+            ops[size] = ops[i];
+            args[size] = args[i];
+            lines[size] = lines[i];
+            size++;
+        }
+        map[count] = size;
+        for (int i = 0; i < size; i++) {
+            if (Opcode.isJump(ops[i])) args[i] = map[args[i]];
+        }
+        count = size;
+
+        // Un salto incondicional al siguiente no hace nada.
+        size = 0;
+        map = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            map[i] = size;
+            if (ops[i] == Opcode.JUMP && args[i] == i + 1) continue;
+            ops[size] = ops[i];
+            args[size] = args[i];
+            lines[size] = lines[i];
+            size++;
+        }
+        map[count] = size;
+        for (int i = 0; i < size; i++) {
+            if (Opcode.isJump(ops[i])) args[i] = map[args[i]];
+        }
+        count = size;
+    }
+
+    private void reach(boolean[] live, ArrayDeque<Integer> work, int i) {
+        if (i < count && !live[i]) {
+            live[i] = true;
+            work.push(i);
+        }
+    }
+
+    private boolean[] targets() {
+        boolean[] targets = new boolean[count + 1];
+        for (int i = 0; i < count; i++) {
+            if (Opcode.isJump(ops[i])) targets[args[i]] = true;
+        }
+        return targets;
+    }
+
+    // Evalúa left op right y deja el resultado en left. Devuelve false si la
+    // operación daría un error de ejecución; ese error se deja para el intérprete.
+    private boolean foldBinary(int op, int left, int right, int line) {
+        byte a = kindOf(ops[left]);
+        byte b = kindOf(ops[right]);
+        boolean numbers = a == ValueType.NUMBER && b == ValueType.NUMBER;
+        boolean booleans = a == ValueType.BOOLEAN && b == ValueType.BOOLEAN;
+        double x = numbers ? number(left) : 0;
+        double y = numbers ? number(right) : 0;
+        // Con dos enteros el intérprete calcula en long; si el resultado sale
+        // del rango exacto de double, plegarlo aquí lo redondearía. La cuenta
+        // se revisa en long: en double 2^53 + 1 ya se redondea a 2^53.
+        if (numbers && ValueType.isInteger(x) && ValueType.isInteger(y) && op >= Opcode.ADD && op <= Opcode.MUL
+                && !exact(op, (long) x, (long) y)) {
+            return false;
+        }
+        switch (op) {
+            case Opcode.ADD -> {
+                if (numbers) return setNumber(left, x + y, line);
+                if (a == ValueType.NULL || b == ValueType.NULL) return false;
+                return setString(left, text(left) + text(right), line);
+            }
+            case Opcode.SUB -> { return numbers && setNumber(left, x - y, line); }
+            case Opcode.MUL -> { return numbers && setNumber(left, x * y, line); }
+            case Opcode.DIV -> { return numbers && setNumber(left, x / y, line); }
+            case Opcode.MOD -> { return numbers && setNumber(left, x % y, line); }
+            case Opcode.GREATER -> { return numbers && setBoolean(left, x > y, line); }
+            case Opcode.GREATER_EQUAL -> { return numbers && setBoolean(left, x >= y, line); }
+            case Opcode.LESS -> { return numbers && setBoolean(left, x < y, line); }
+            case Opcode.LESS_EQUAL -> { return numbers && setBoolean(left, x <= y, line); }
+            case Opcode.AND -> { return booleans && setBoolean(left, ops[left] == Opcode.PUSH_TRUE && ops[right] == Opcode.PUSH_TRUE, line); }
+            case Opcode.OR -> { return booleans && setBoolean(left, ops[left] == Opcode.PUSH_TRUE || ops[right] == Opcode.PUSH_TRUE, line); }
+            case Opcode.EQUAL_EQUAL, Opcode.NOT_EQUAL -> {
+                if (a == ValueType.NULL) return false;
+                boolean equal;
+                if (a != b) {
+                    equal = false;
+                } else if (a == ValueType.NUMBER) {
+                    equal = Double.doubleToLongBits(x) == Double.doubleToLongBits(y);
+                } else if (a == ValueType.STRING) {
+                    equal = string(left).equals(string(right));
+                } else {
+                    equal = ops[left] == ops[right];
+                }
+                return setBoolean(left, op == Opcode.EQUAL_EQUAL == equal, line);
+            }
+            default -> { return false; }
+        }
+    }
+
+    // Si a op b (suma, resta o producto) da un long dentro de ±2^53.
+    private static boolean exact(int op, long a, long b) {
+        try {
+            long result = op == Opcode.ADD ? Math.addExact(a, b)
+                    : op == Opcode.SUB ? Math.subtractExact(a, b)
+                    : Math.multiplyExact(a, b);
+            return Math.abs(result) <= ValueType.EXACT;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    // x - 0, x * 1, x / 1 con x número; x + "" con x cadena; x and true, x or false con x booleano.
+    private boolean isRightIdentity(int op, byte left, int constant, int arg) {
+        if (left == ValueType.NUMBER && constant == Opcode.PUSH_NUMBER) {
+            double value = numbers.get(arg);
+            return op == Opcode.SUB && Double.doubleToLongBits(value) == 0L
+                    || (op == Opcode.MUL || op == Opcode.DIV) && value == 1.0;
+        }
+        if (left == ValueType.STRING && constant == Opcode.PUSH_STRING) {
+            return op == Opcode.ADD && strings.get(arg).isEmpty();
+        }
+        if (left == ValueType.BOOLEAN) {
+            return op == Opcode.AND && constant == Opcode.PUSH_TRUE || op == Opcode.OR && constant == Opcode.PUSH_FALSE;
+        }
+        return false;
+    }
+
+    // 1 * x con x número; "" + x con x cadena; true and x, false or x con x booleano.
+    private boolean isLeftIdentity(int op, int constant, int arg, byte right) {
+        if (right == ValueType.NUMBER && constant == Opcode.PUSH_NUMBER) {
+            return op == Opcode.MUL && numbers.get(arg) == 1.0;
+        }
+        if (right == ValueType.STRING && constant == Opcode.PUSH_STRING) {
+            return op == Opcode.ADD && strings.get(arg).isEmpty();
+        }
+        if (right == ValueType.BOOLEAN) {
+            return op == Opcode.AND && constant == Opcode.PUSH_TRUE || op == Opcode.OR && constant == Opcode.PUSH_FALSE;
+        }
+        return false;
+    }
+
+    private static boolean isBinary(int op) {
+        return op >= Opcode.ADD && op <= Opcode.OR || op >= Opcode.GREATER && op <= Opcode.NOT_EQUAL;
+    }
+
+    private static boolean isConstant(int op) {
+        return op >= Opcode.PUSH_NUMBER && op <= Opcode.PUSH_NULL;
+    }
+
+    private static byte kindOf(int op) {
+        return switch (op) {
+            case Opcode.PUSH_NUMBER -> ValueType.NUMBER;
+            case Opcode.PUSH_STRING -> ValueType.STRING;
+            case Opcode.PUSH_TRUE, Opcode.PUSH_FALSE -> ValueType.BOOLEAN;
+            case Opcode.PUSH_NULL -> ValueType.NULL;
+            case Opcode.REFERENCE -> ValueType.REFERENCE;
+            default -> UNKNOWN;
+        };
+    }
+
+    // Tipo del resultado de un operador binario; si la operación falla la
+    // ejecución se detiene, así que ese caso no cuenta.
+    private static byte resultKind(int op, byte left, byte right) {
+        if (op != Opcode.ADD) {
+            return op == Opcode.SUB || op == Opcode.MUL || op == Opcode.DIV || op == Opcode.MOD
+                    ? ValueType.NUMBER : ValueType.BOOLEAN;
+        }
+        if (left == ValueType.NUMBER && right == ValueType.NUMBER) return ValueType.NUMBER;
+        if (left != UNKNOWN && left != ValueType.NUMBER || right != UNKNOWN && right != ValueType.NUMBER) return ValueType.STRING;
+        return UNKNOWN;
+    }
+
+    private double number(int i) {
+        return numbers.get(args[i]);
+    }
+
+    private String string(int i) {
+        return strings.get(args[i]);
+    }
+
+    // Texto del valor como lo concatena Execution.
+    private String text(int i) {
+        return switch (ops[i]) {
+            case Opcode.PUSH_NUMBER -> Double.toString(number(i));
+            case Opcode.PUSH_STRING -> string(i);
+            case Opcode.PUSH_TRUE -> "true";
+            default -> "false";
+        };
+    }
+
+    private boolean setNumber(int i, double value, int line) {
+        ops[i] = Opcode.PUSH_NUMBER;
+        args[i] = number(value);
+        lines[i] = line;
+        return true;
+    }
+
+    private boolean setString(int i, String value, int line) {
+        ops[i] = Opcode.PUSH_STRING;
+        args[i] = string(value);
+        lines[i] = line;
+        return true;
+    }
+
+    private boolean setBoolean(int i, boolean value, int line) {
+        ops[i] = value ? Opcode.PUSH_TRUE : Opcode.PUSH_FALSE;
+        args[i] = 0;
+        lines[i] = line;
+        return true;
+    }
+
+    private int number(double value) {
+        return numberIndex.computeIfAbsent(value, v -> {
+            numbers.add(v);
+            return numbers.size() - 1;
+        });
+    }
+
+    private int string(String value) {
+        return stringIndex.computeIfAbsent(value, v -> {
+            strings.add(v);
+            return strings.size() - 1;
+        });
+    }
+}
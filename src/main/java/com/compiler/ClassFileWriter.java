@@ -0,0 +1,471 @@
+package com.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Escritor mínimo de archivos .class. Genera la versión 49 del formato, que la
+// JVM verifica por inferencia de tipos, así que no hace falta calcular StackMapTable.
+public final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int VERSION = 49;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+
+    private final String superName;
+    private final int thisClass;
+    private final int superClass;
+    private final List<Integer> interfaces = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+
+    public ClassFileWriter(String className, String superName, String... interfaceNames) {
+        this.superName = superName;
+        thisClass = classRef(className);
+        superClass = classRef(superName);
+        for (String name : interfaceNames) interfaces.add(classRef(name));
+    }
+
+    // Entradas de la tabla de constantes. Se reutilizan si ya existen.
+    int utf8(String value) {
+        return entry("U" + value, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        }, 1);
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return entry("C" + internalName, out -> {
+            out.writeByte(7);
+            out.writeShort(name);
+        }, 1);
+    }
+
+    int string(String value) {
+        int utf = utf8(value);
+        return entry("S" + value, out -> {
+            out.writeByte(8);
+            out.writeShort(utf);
+        }, 1);
+    }
+
+    int doubleConstant(double value) {
+        return entry("D" + Double.doubleToRawLongBits(value), out -> {
+            out.writeByte(6);
+            out.writeDouble(value);
+        }, 2);
+    }
+
+    int longConstant(long value) {
+        return entry("J" + value, out -> {
+            out.writeByte(5);
+            out.writeLong(value);
+        }, 2);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(11, owner, name, descriptor);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = entry("N" + name + ":" + descriptor, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        }, 1);
+        return entry(tag + owner + "." + name + ":" + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        }, 1);
+    }
+
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int entry(String key, EntryWriter writer, int slots) {
+        Integer index = entries.get(key);
+        if (index != null) return index;
+        try {
+            writer.write(poolOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int created = poolCount;
+        poolCount += slots;
+        if (poolCount > 0xFFFF) throw new IllegalStateException("Demasiadas constantes para un archivo .class.");
+        entries.put(key, created);
+        return created;
+    }
+
+    public Code method(int access, String name, String descriptor) {
+        return new Code(access, name, descriptor);
+    }
+
+    // Constructor sin argumentos que solo llama al de la superclase.
+    public void defaultConstructor() {
+        Code code = method(ACC_PUBLIC, "<init>", "()V");
+        code.aload(0);
+        code.invokeSpecial(superName, "<init>", "()V");
+        code.op(Code.RETURN);
+        code.end(1);
+    }
+
+    public byte[] toByteArray() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.size());
+            for (int index : interfaces) out.writeShort(index);
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (byte[] method : methods) out.write(method);
+            out.writeShort(0);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Cuerpo de un método. Lleva la cuenta de la profundidad de la pila para
+    // calcular max_stack; en las etiquetas la pila se asume vacía.
+    public final class Code {
+        static final int ACONST_NULL = 1, ICONST_0 = 3, ICONST_1 = 4, LCONST_0 = 9, DCONST_0 = 14;
+        static final int BIPUSH = 16, SIPUSH = 17, LDC = 18, LDC_W = 19, LDC2_W = 20;
+        static final int ILOAD = 21, LLOAD = 22, DLOAD = 24, ALOAD = 25;
+        static final int ISTORE = 54, LSTORE = 55, DSTORE = 57, ASTORE = 58;
+        static final int POP = 87, POP2 = 88, DUP = 89, DUP2 = 92;
+        static final int LADD = 97, DADD = 99, LSUB = 101, DSUB = 103, LMUL = 105, DMUL = 107;
+        static final int DDIV = 111, LREM = 113, DREM = 115;
+        static final int IAND = 126, IOR = 128, IXOR = 130;
+        static final int I2L = 133, L2I = 136, L2D = 138, D2L = 143;
+        static final int LCMP = 148, DCMPL = 151, DCMPG = 152;
+        static final int IFEQ = 153, IFNE = 154, IFLT = 155, IFGE = 156, IFGT = 157, IFLE = 158;
+        static final int IF_ICMPEQ = 159, IF_ICMPNE = 160, IF_ICMPLT = 161, IF_ICMPGE = 162, IF_ICMPGT = 163, IF_ICMPLE = 164;
+        static final int GOTO = 167, IRETURN = 172, RETURN = 177;
+        static final int GETSTATIC = 178, PUTSTATIC = 179, GETFIELD = 180, PUTFIELD = 181;
+        static final int INVOKEVIRTUAL = 182, INVOKESPECIAL = 183, INVOKESTATIC = 184, INVOKEINTERFACE = 185;
+        static final int NEW = 187, ATHROW = 191, CHECKCAST = 192, GOTO_W = 200;
+        static final int IALOAD = 46, LALOAD = 47, DALOAD = 49, AALOAD = 50, BALOAD = 51;
+        static final int IASTORE = 79, LASTORE = 80, DASTORE = 82, AASTORE = 83, BASTORE = 84;
+
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<int[]> jumps = new ArrayList<>();
+        private final List<int[]> handlers = new ArrayList<>();
+        private final List<Integer> labels = new ArrayList<>();
+        private int stack = 0;
+        private int maxStack = 0;
+        private boolean wideJumps = false;
+
+        private Code(int access, String name, String descriptor) {
+            this.access = access;
+            this.name = utf8(name);
+            this.descriptor = utf8(descriptor);
+        }
+
+        // Con saltos largos cada salto usa goto_w; necesario en métodos de más de 32 KB.
+        public void useWideJumps() {
+            wideJumps = true;
+        }
+
+        public int position() {
+            return bytes.size();
+        }
+
+        private void adjust(int delta) {
+            stack += delta;
+            if (stack > maxStack) maxStack = stack;
+        }
+
+        public void op(int opcode) {
+            bytes.write(opcode);
+            adjust(delta(opcode));
+        }
+
+        private void u1(int value) {
+            bytes.write(value);
+        }
+
+        private void u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+
+        private void u4(int value) {
+            u2(value >>> 16);
+            u2(value);
+        }
+
+        private void local(int opcode, int index, int delta) {
+            if (index > 0xFF) {
+                u1(196);
+                u1(opcode);
+                u2(index);
+            } else {
+                u1(opcode);
+                u1(index);
+            }
+            adjust(delta);
+        }
+
+        public void iload(int index) { local(ILOAD, index, 1); }
+        public void lload(int index) { local(LLOAD, index, 2); }
+        public void dload(int index) { local(DLOAD, index, 2); }
+        public void aload(int index) { local(ALOAD, index, 1); }
+        public void istore(int index) { local(ISTORE, index, -1); }
+        public void lstore(int index) { local(LSTORE, index, -2); }
+        public void dstore(int index) { local(DSTORE, index, -2); }
+        public void astore(int index) { local(ASTORE, index, -1); }
+
+        public void iconst(int value) {
+            if (value >= -1 && value <= 5) {
+                u1(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(value);
+            } else {
+                ldc(ClassFileWriter.this.entry("I" + value, out -> {
+                    out.writeByte(3);
+                    out.writeInt(value);
+                }, 1));
+                return;
+            }
+            adjust(1);
+        }
+
+        public void dconst(double value) {
+            u1(LDC2_W);
+            u2(doubleConstant(value));
+            adjust(2);
+        }
+
+        public void lconst(long value) {
+            u1(LDC2_W);
+            u2(longConstant(value));
+            adjust(2);
+        }
+
+        public void sconst(String value) {
+            ldc(string(value));
+        }
+
+        private void ldc(int index) {
+            if (index <= 0xFF) {
+                u1(LDC);
+                u1(index);
+            } else {
+                u1(LDC_W);
+                u2(index);
+            }
+            adjust(1);
+        }
+
+        public void invokeStatic(String owner, String name, String descriptor) {
+            u1(INVOKESTATIC);
+            u2(methodRef(owner, name, descriptor));
+            adjust(returnSize(descriptor) - argumentsSize(descriptor));
+        }
+
+        public void invokeSpecial(String owner, String name, String descriptor) {
+            u1(INVOKESPECIAL);
+            u2(methodRef(owner, name, descriptor));
+            adjust(returnSize(descriptor) - argumentsSize(descriptor) - 1);
+        }
+
+        public void invokeVirtual(String owner, String name, String descriptor) {
+            u1(INVOKEVIRTUAL);
+            u2(methodRef(owner, name, descriptor));
+            adjust(returnSize(descriptor) - argumentsSize(descriptor) - 1);
+        }
+
+        public void invokeInterface(String owner, String name, String descriptor) {
+            u1(INVOKEINTERFACE);
+            u2(interfaceMethodRef(owner, name, descriptor));
+            u1(argumentsSize(descriptor) + 1);
+            u1(0);
+            adjust(returnSize(descriptor) - argumentsSize(descriptor) - 1);
+        }
+
+        public void getStatic(String owner, String name, String descriptor) {
+            u1(GETSTATIC);
+            u2(fieldRef(owner, name, descriptor));
+            adjust(returnSize("()" + descriptor));
+        }
+
+        // Salto a una etiqueta; la pila debe estar vacía después del salto.
+        public void jump(int opcode, Label label) {
+            int start = position();
+            if (wideJumps) {
+                if (opcode != GOTO) {
+                    u1(inverse(opcode));
+                    u2(8);
+                    adjust(delta(opcode));
+                    start = position();
+                }
+                u1(GOTO_W);
+                jumps.add(new int[]{start, position(), 4, label.id});
+                u4(0);
+            } else {
+                u1(opcode);
+                jumps.add(new int[]{start, position(), 2, label.id});
+                u2(0);
+                adjust(delta(opcode));
+            }
+        }
+
+        public Label newLabel() {
+            labels.add(-1);
+            return new Label(labels.size() - 1);
+        }
+
+        public void mark(Label label) {
+            labels.set(label.id, position());
+            stack = 0;
+        }
+
+        // Manejador de excepciones para el rango [start, end); al entrar, la pila
+        // contiene solo la excepción.
+        public void handler(Label start, Label end, Label handler, String exceptionClass) {
+            handlers.add(new int[]{start.id, end.id, handler.id, classRef(exceptionClass)});
+        }
+
+        public void markHandler(Label label) {
+            mark(label);
+            adjust(1);
+        }
+
+        public void end(int maxLocals) {
+            byte[] code = bytes.toByteArray();
+            for (int[] jump : jumps) {
+                int target = labels.get(jump[3]);
+                int offset = target - jump[0];
+                if (jump[2] == 2) {
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        throw new IllegalStateException("Salto fuera de rango; usar saltos largos.");
+                    }
+                    code[jump[1]] = (byte) (offset >>> 8);
+                    code[jump[1] + 1] = (byte) offset;
+                } else {
+                    code[jump[1]] = (byte) (offset >>> 24);
+                    code[jump[1] + 1] = (byte) (offset >>> 16);
+                    code[jump[1] + 2] = (byte) (offset >>> 8);
+                    code[jump[1] + 3] = (byte) offset;
+                }
+            }
+            if (code.length > 0xFFFF) {
+                throw new IllegalStateException("El método excede el tamaño máximo de la JVM (64 KB).");
+            }
+            try {
+                ByteArrayOutputStream method = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(method);
+                out.writeShort(access);
+                out.writeShort(name);
+                out.writeShort(descriptor);
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + code.length + 8 * handlers.size());
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(code.length);
+                out.write(code);
+                out.writeShort(handlers.size());
+                for (int[] handler : handlers) {
+                    out.writeShort(labels.get(handler[0]));
+                    out.writeShort(labels.get(handler[1]));
+                    out.writeShort(labels.get(handler[2]));
+                    out.writeShort(handler[3]);
+                }
+                out.writeShort(0);
+                methods.add(method.toByteArray());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static int inverse(int opcode) {
+            return ((opcode - IFEQ) ^ 1) + IFEQ;
+        }
+
+        private static int delta(int opcode) {
+            return switch (opcode) {
+                case ACONST_NULL, ICONST_0, ICONST_1, DUP, I2L -> 1;
+                case DCONST_0, LCONST_0, DUP2 -> 2;
+                case POP, L2I, IAND, IOR, IXOR, IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE, IRETURN, ATHROW,
+                     IALOAD, AALOAD, BALOAD -> -1;
+                case POP2, DADD, DSUB, DMUL, DDIV, DREM, LADD, LSUB, LMUL, LREM,
+                     IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE -> -2;
+                case DCMPL, DCMPG, LCMP, IASTORE, AASTORE, BASTORE -> -3;
+                case LASTORE, DASTORE -> -4;
+                default -> 0;
+            };
+        }
+    }
+
+    public static final class Label {
+        private final int id;
+
+        private Label(int id) {
+            this.id = id;
+        }
+    }
+
+    static int argumentsSize(String descriptor) {
+        int size = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'J' || c == 'D') {
+                size += 2;
+                i++;
+            } else {
+                size++;
+                while (descriptor.charAt(i) == '[') i++;
+                i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+            }
+        }
+        return size;
+    }
+
+    static int returnSize(String descriptor) {
+        char c = descriptor.charAt(descriptor.indexOf(')') + 1);
+        return c == 'V' ? 0 : c == 'J' || c == 'D' ? 2 : 1;
+    }
+}
@@ -2,31 +2,178 @@ package com.compiler;
 
 import javax.swing.*;
 import java.io.*;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
+// Compila y ejecuta programas. Cada instancia guarda solo sus opciones; los
+// errores van al ErrorReporter de cada llamada, así que una misma instancia
+// puede compilar y ejecutar varios programas a la vez:
+//
+//   Compilador compilador = new Compilador();
+//   ErrorReporter errors = new ErrorReporter();
+//   CompiledProgram program = compilador.compile(Paths.get("primo.txt"), errors);
+//   compilador.execute(program, InputSource.of("97\n"), OutputSink.console(), errors);
+//
+// main es la línea de comandos: un solo archivo, o un lote con --lote (ver BatchRunner).
 public class Compilador {
-    private static boolean hadError = false;
-    static boolean hadRuntimeError = false;
+    // Filas de cada bloque de tokens que se pasa del léxico al análisis.
+    static final int CHUNK = 4096;
+    static final String VERSION = "1.0-SNAPSHOT";
+
+    // Con --secuencial las etapas de compilación corren una tras otra en un solo hilo.
+    private boolean sequential = false;
+    // Con --sin-optimizar el bytecode se ejecuta tal como sale del VCI.
+    private boolean optimize = true;
+    // Con --registros los programas se ejecutan con RegisterMachine en lugar de la pila.
+    private boolean registers = false;
+    // Con --sin-compilar-ciclos los ciclos calientes no se compilan a clases de la JVM.
+    private boolean compileLoops = true;
+    // Con --cache (o --cache-dir <dir>) los programas compilados se guardan en disco.
+    private ProgramCache cache;
+    // Reportes pedidos con --dump=...; por omisión no se escribe ninguno.
+    private Diagnostics diagnostics = Diagnostics.NONE;
+
+    public Compilador sequential(boolean sequential) {
+        this.sequential = sequential;
+        return this;
+    }
+
+    public Compilador optimize(boolean optimize) {
+        this.optimize = optimize;
+        return this;
+    }
+
+    public Compilador registers(boolean registers) {
+        this.registers = registers;
+        return this;
+    }
+
+    public Compilador compileLoops(boolean compileLoops) {
+        this.compileLoops = compileLoops;
+        return this;
+    }
+
+    public Compilador cache(ProgramCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public Compilador diagnostics(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+        return this;
+    }
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
+        Compilador compilador = new Compilador();
+        // Si se indica, el programa se compila a un .class o a un jar en lugar de ejecutarse.
+        Path emitClass = null;
+        Path emitJar = null;
+        // Con --emit-vci <archivo> el programa se compila a un .vci que después se ejecuta sin el código fuente.
+        Path emitVci = null;
+        // Con --metrics <archivo> se escriben al terminar las métricas de Metrics en JSON.
+        Path metricsFile = null;
+        // Con --lote <archivo> se ejecutan a la vez todos los programas del archivo.
+        Path batch = null;
+        // Con --dump-dir <dir> los reportes se escriben ahí en lugar de src/main/resources.
+        Path dumpDirectory = Paths.get("src/main/resources");
+        String dumps = null;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--secuencial")) {
+                compilador.sequential(true);
+            } else if (args[i].equals("--sin-optimizar")) {
+                compilador.optimize(false);
+            } else if (args[i].equals("--registros")) {
+                compilador.registers(true);
+            } else if (args[i].equals("--sin-compilar-ciclos")) {
+                compilador.compileLoops(false);
+            } else if (args[i].equals("--cache")) {
+                compilador.cache(new ProgramCache(ProgramCache.defaultDirectory(), ProgramCache.DEFAULT_MAX_BYTES));
+            } else if (args[i].equals("--cache-dir") && i + 1 < args.length) {
+                compilador.cache(new ProgramCache(Paths.get(args[++i]), ProgramCache.DEFAULT_MAX_BYTES));
+            } else if (args[i].startsWith("--dump=")) {
+                dumps = args[i].substring("--dump=".length());
+            } else if (args[i].equals("--dump-dir") && i + 1 < args.length) {
+                dumpDirectory = Paths.get(args[++i]);
+            } else if (args[i].equals("--metrics") && i + 1 < args.length) {
+                metricsFile = Paths.get(args[++i]);
+                Metrics.enable();
+            } else if (args[i].equals("--lote") && i + 1 < args.length) {
+                batch = Paths.get(args[++i]);
+            } else if (args[i].equals("--emit-vci") && i + 1 < args.length) {
+                emitVci = Paths.get(args[++i]);
+            } else if ((args[i].equals("--emit-class") || args[i].equals("--emit-jar")) && i + 1 < args.length) {
+                if (args[i].equals("--emit-class")) emitClass = Paths.get(args[++i]);
+                else emitJar = Paths.get(args[++i]);
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (dumps != null) {
+            try {
+                compilador.diagnostics(new Diagnostics(Diagnostics.parse(dumps), dumpDirectory));
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+                return;
+            }
+        }
+
+        ErrorReporter errors = new ErrorReporter();
+        if (batch != null) {
+            // Los reportes usan nombres fijos, así que en un lote no se escriben.
+            compilador.diagnostics(Diagnostics.NONE);
+            BatchRunner runner = new BatchRunner(compilador);
+            List<BatchRunner.Result> results = runner.run(BatchRunner.read(batch));
+            System.out.print(runner.summary(results));
+            writeMetrics(metricsFile);
+            if (results.stream().anyMatch(BatchRunner.Result::compileFailed)) System.exit(65);
+            if (results.stream().anyMatch(BatchRunner.Result::runtimeFailed)) System.exit(70);
+            return;
+        }
+
+        String path;
+        boolean emitting = emitClass != null || emitJar != null || emitVci != null;
+        if (files.size() > 1) {
             System.out.println("Ingresa solo 1 argumento.");
             return;
-        } else if (args.length == 1) {
-            System.out.println("Ejecutando archivo: " + args[0]);
-            runFile(args[0]);
+        } else if (files.size() == 1) {
+            path = files.get(0);
+            System.out.println((emitting ? "Compilando archivo: " : "Ejecutando archivo: ") + path);
         } else {
-            String filePath = selectFile();
-            if (filePath != null) {
-                System.out.println("Ejecutando archivo: " + filePath);
-                runFile(filePath);
-            } else {
+            path = selectFile();
+            if (path == null) {
                 System.out.println("No se seleccionó ningún archivo.");
+                return;
             }
+            System.out.println("Ejecutando archivo: " + path);
+        }
+
+        try (Diagnostics diagnostics = compilador.diagnostics) {
+            CompiledProgram program = compilador.compile(Paths.get(path), errors);
+            if (program != null) {
+                if (emitting) {
+                    if (!errors.hadError()) compilador.emit(program, emitVci, emitClass, emitJar, errors);
+                    diagnostics.addresses(program);
+                } else {
+                    Execution execution = compilador.execute(program, InputSource.console(), OutputSink.console(), errors);
+                    diagnostics.symbols(execution.getSymbolTable(), execution.getFunctionTable());
+                    diagnostics.addresses(program);
+                }
+            }
+        }
+        writeMetrics(metricsFile);
+        if (errors.hadError()) System.exit(65);
+        if (errors.hadRuntimeError()) System.exit(70);
+    }
+
+    private static void writeMetrics(Path metricsFile) {
+        if (metricsFile == null) return;
+        try {
+            Metrics.write(metricsFile);
+        } catch (IOException e) {
+            System.err.println("Error writing metrics to file: " + e.getMessage());
         }
     }
 
@@ -39,134 +186,173 @@ public class Compilador {
         return null;
     }
 
-    // Ejecuta un archivo de código fuente.
-    private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
-        if (hadError) System.exit(65);
-        if (hadRuntimeError) System.exit(70);
-    }
-
-    private static void run(String source) throws IOException {
-        AnalizadorLexico analizadorLexico = new AnalizadorLexico(source);
-        List<Token> tokens = analizadorLexico.scanTokens();
-        writeTokensToFile(tokens, "src/main/resources/tokens.txt");
-
-        SymbolTable symbolTable = new SymbolTable();
-        FunctionTable functionTable = new FunctionTable();
-        AnalizadorSemantico analizadorSemantico = new AnalizadorSemantico(tokens, symbolTable, functionTable);
-        analizadorSemantico.analyze();
-
-        VCI vci = new VCI(tokens);
-        List<Token> vciTokens = vci.getVCI();
-        writeVCIToFile(vciTokens, "src/main/resources/vci.txt");
-
-        Execution execution = new Execution(symbolTable);
-        execution.executeVCI(vciTokens);
-        writeSymbolTableToFile(execution.getSymbolTable(), "src/main/resources/symbolTable.txt", execution.getFunctionTable());
-        writeAddressTableToFile(functionTable, vciTokens, "src/main/resources/addressTable.txt");
-    }
-
-    private static void writeTokensToFile(List<Token> tokens, String fileName) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            String format = "%-20s %-15s %-10s %-10s%n";
-            writer.write(String.format(format, "Token", "Lexeme", "Literal", "Line"));
-            writer.write(String.format(format, "--------------------", "---------------", "----------", "----------"));
-            for (Token token : tokens) {
-                String tokenType = truncate(token.type.toString(), 20);
-                String lexeme = truncate(token.lexeme, 15);
-                String literal = truncate(token.literal != null ? token.literal.toString() : "null", 10);
-                writer.write(String.format(format, tokenType, lexeme, literal, token.line));
+    // Compila un archivo de código fuente.
+    // El archivo se lee mapeado en memoria y los tokens pasan directo al
+    // análisis semántico y al VCI, sin guardar la lista completa de tokens.
+    // Con la caché activa, si el archivo ya se compiló antes se usa directo.
+    // Un archivo .vci ya compilado se carga sin pasar por el léxico; si no se
+    // puede leer se reporta el error y se devuelve null.
+    public CompiledProgram compile(Path path, ErrorReporter errors) throws IOException {
+        if (VciFile.isVci(path)) {
+            try {
+                return VciFile.read(path);
+            } catch (IOException e) {
+                errors.error("Error reading VCI file: " + e.getMessage());
+                return null;
             }
-        } catch (IOException e) {
-            System.err.println("Error writing tokens to file: " + e.getMessage());
         }
+        String key = cache != null ? cache.key(path, optimize ? "" : "sin-optimizar") : null;
+        CompiledProgram program = key != null ? cache.load(key) : null;
+        if (program == null) {
+            int before = errors.errorCount();
+            try (AnalizadorLexico analizadorLexico = new AnalizadorLexico(path, errors)) {
+                program = compile(analizadorLexico, errors);
+            }
+            if (key != null && program != null && errors.errorCount() == before) cache.store(key, program);
+        }
+        return program;
     }
 
-    private static String truncate(String value, int length) {
-        if (value.length() > length) {
-            return value.substring(0, length - 3) + "...";
-        }
-        return value;
+    // Compila código fuente en memoria, sin caché; null como compile(Path, ErrorReporter).
+    public CompiledProgram compile(String source, ErrorReporter errors) {
+        return compile(new AnalizadorLexico(source, errors), errors);
     }
 
-    private static void writeVCIToFile(List<Token> tokens, String fileName) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            writer.write("VCI: ");
-            writer.newLine();
-            writer.write("[");
-            for (Token token : tokens) {
-                writer.write(token.lexeme);
-                if (token != tokens.get(tokens.size() - 1)){
-                    writer.write(", ");
-                }
-            }
-            writer.write("]");
-        } catch (IOException e) {
-            System.err.println("Error writing VCI to file: " + e.getMessage());
-        }
+    // Sesión para compilar source y sus ediciones sin volver a procesar todo
+    // el archivo en cada cambio (ver IncrementalCompilation).
+    public IncrementalCompilation incremental(String source) {
+        return new IncrementalCompilation(source, optimize);
     }
 
-    private static void writeSymbolTableToFile(SymbolTable symbolTable, String fileName, FunctionTable functionTable) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            String format = "%-20s %-15s %-20s %-10s %-10s %-10s %-10s %-10s%n";
-            writer.write(String.format(format, "ID", "Token Type", "Value", "D1", "D2", "PTR", "Scope", "Ambito"));
-            writer.write(String.format(format, "--------------------", "---------------", "--------------------", "----------", "----------", "----------", "----------", "----------"));
-            String ambito = "";
-            for (Map.Entry<String, SymbolTable.Symbol> entry : functionTable.getTable().entrySet()) {
-                ambito = entry.getKey();
+    // Devuelve null si el análisis semántico se detuvo (el error ya se reportó).
+    private CompiledProgram compile(AnalizadorLexico analizadorLexico, ErrorReporter errors) {
+        int before = errors.errorCount();
+        SymbolTable symbolTable = new SymbolTable();
+        FunctionTable functionTable = new FunctionTable();
+        NameTable names = new NameTable();
+        AnalizadorSemantico analizadorSemantico = new AnalizadorSemantico(symbolTable, functionTable, errors);
+        VCI vci = new VCI(names);
+        // El VCI se genera en este hilo en los dos modos.
+        CompilerEvents.Vci vciEvent = new CompilerEvents.Vci();
+        vciEvent.start();
+        try {
+            if (sequential) {
+                scan(analizadorLexico, new TokenBuffer(names, CHUNK), analizadorSemantico, vci, vciEvent);
+            } else {
+                new CompilationPipeline(names).run(analizadorLexico, analizadorSemantico, vci, diagnostics, vciEvent);
             }
+        } catch (AnalizadorSemantico.ParseError e) {
+            return null;
+        } finally {
+            diagnostics.endTokens();
+        }
+        analizadorSemantico.finish();
+        long started = System.nanoTime();
+        vci.finish();
+        vciEvent.busy(System.nanoTime() - started);
+        TokenBuffer vciTokens = vci.getBuffer();
+        vciEvent.items = vciTokens.size();
+        vciEvent.finish();
+        diagnostics.vci(vciTokens);
 
-            for (Map.Entry<String, SymbolTable.Symbol> entry : symbolTable.getTable().entrySet()) {
-                writer.write(String.format(format, entry.getKey(), entry.getValue().type, entry.getValue().value.getValue(), "0", "0", "null", "Scope", ambito));
-            }
-        } catch (IOException e) {
-            System.err.println("Error writing symbol table to file: " + e.getMessage());
+        Bytecode bytecode = new BytecodeGenerator(vciTokens, analizadorSemantico.getVariables(), errors).generate();
+        if (optimize && errors.errorCount() == before) {
+            BytecodeOptimizer optimizer = new BytecodeOptimizer(bytecode);
+            bytecode = optimizer.optimize();
+            diagnostics.optimizer(optimizer.report());
         }
+        return new CompiledProgram(bytecode, symbolTable, functionTable, vci.addresses(functionTable));
     }
 
-    private static void writeAddressTableToFile(FunctionTable functionTable, List<Token> vciTokens, String fileName) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            String format = "%-20s %-15s %-10s %-10s%n";
-            writer.write(String.format(format, "ID", "Token Type", "Line", "Address"));
-            writer.write(String.format(format, "--------------------", "---------------", "----------", "----------"));
-            for (Map.Entry<String, SymbolTable.Symbol> entry : functionTable.getTable().entrySet()) {
-                String id = entry.getKey();
-                String tokenType = entry.getValue().type;
-                int line = entry.getValue().value.getLine();
-                int address = findAddressInVCI(vciTokens, id);
-                writer.write(String.format(format, id, tokenType, line, address));
-            }
-        } catch (IOException e) {
-            System.err.println("Error writing address table to file: " + e.getMessage());
+    // Ejecuta program con su propia tabla de símbolos, leyendo de input y
+    // escribiendo en output. Un error de ejecución se reporta en errors.
+    public Execution execute(CompiledProgram program, InputSource input, OutputSink output, ErrorReporter errors) {
+        Execution execution = new Execution(new SymbolTable(program.symbolTable), input, output);
+        execution.useRegisters(registers);
+        execution.compileLoops(compileLoops);
+        // Los perfiles se toman sobre el bytecode sin superinstrucciones.
+        if (diagnostics.enabled(Diagnostics.Dump.NGRAMS) || diagnostics.enabled(Diagnostics.Dump.PROFILE)) execution.profile();
+        CompilerEvents.Phase event = new CompilerEvents.Execution().start();
+        long started = System.nanoTime();
+        try {
+            execution.execute(program.bytecode);
+        } catch (RuntimeError error) {
+            errors.runtimeError(error);
+            event.errors = 1;
         }
+        event.busy(System.nanoTime() - started);
+        event.items = execution.getDispatches();
+        event.finish();
+        if (execution.getInstructionCounts() != null) {
+            diagnostics.ngrams(new OpcodeProfile(program.bytecode, execution.getInstructionCounts()).report());
+            diagnostics.profile(new Profiler(program.bytecode, execution.getInstructionCounts(), execution.getInstructionTimes()));
+        }
+        return execution;
     }
 
-    private static int findAddressInVCI(List<Token> vciTokens, String id) {
-        for (int i = 0; i < vciTokens.size(); i++) {
-            if (vciTokens.get(i).lexeme.equals(id)) {
-                return i;
+    // Genera el .vci, el .class y/o el jar ejecutable del programa.
+    private void emit(CompiledProgram program, Path emitVci, Path emitClass, Path emitJar, ErrorReporter errors) throws IOException {
+        if (emitVci != null) {
+            try {
+                VciFile.write(program, emitVci);
+                System.out.println("VCI generado: " + emitVci);
+            } catch (IOException e) {
+                errors.error("Error writing VCI to file: " + e.getMessage());
             }
         }
-        return -1;
-    }
-
-    public static void error(int line, String s) {
-        report(line, "", s);
-    }
-
-    private static void report(int line, String where, String message) {
-        System.err.println(
-                "[line " + line + "] Error" + where + ": " + message
-        );
-        hadError = true;
+        if (emitClass == null && emitJar == null) return;
+        Bytecode bytecode = program.bytecode;
+        JvmBackend backend = new JvmBackend(bytecode, JvmBackend.className(bytecode, "Programa"));
+        try {
+            if (emitClass != null) System.out.println("Clase generada: " + backend.writeClass(emitClass));
+            if (emitJar != null) System.out.println("Jar generado: " + backend.writeJar(emitJar));
+        } catch (IllegalStateException e) {
+            errors.error("Error generating class file: " + e.getMessage());
+        }
     }
 
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
+    // Lee los tokens por bloques de CHUNK filas y pasa cada bloque al archivo de
+    // tokens, al análisis semántico y al VCI. De un bloque al siguiente solo se
+    // conservan las filas que todavía necesitan como tokens siguientes. Si el
+    // análisis falla se terminan de escribir los tokens.
+    private void scan(AnalizadorLexico analizadorLexico, TokenBuffer chunk, AnalizadorSemantico analizadorSemantico, VCI vci,
+                      CompilerEvents.Vci vciEvent) {
+        CompilerEvents.Phase lexer = new CompilerEvents.Lexer().start();
+        CompilerEvents.Phase semantic = new CompilerEvents.Semantic().start();
+        RuntimeException failure = null;
+        int analyzed = 0;
+        int generated = 0;
+        boolean more = true;
+        while (more) {
+            int written = chunk.size();
+            long started = System.nanoTime();
+            more = analizadorLexico.fill(chunk, CHUNK);
+            long lexed = System.nanoTime();
+            lexer.busy(lexed - started);
+            lexer.items += chunk.size() - written;
+            diagnostics.tokens(chunk, written);
+            if (failure == null) {
+                int from = analyzed;
+                try {
+                    analyzed = analizadorSemantico.analyze(chunk, analyzed, !more);
+                    long checked = System.nanoTime();
+                    semantic.busy(checked - lexed);
+                    semantic.items += analyzed - from;
+                    generated = vci.generate(chunk, generated, analyzed, !more);
+                    vciEvent.busy(System.nanoTime() - checked);
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            int keep = failure == null ? Math.min(analyzed, generated) : chunk.size();
+            chunk.retain(keep);
+            analyzed -= keep;
+            generated -= keep;
         }
+        lexer.errors = analizadorLexico.errors();
+        lexer.finish();
+        semantic.errors = analizadorSemantico.errors();
+        semantic.finish();
+        if (failure != null) throw failure;
     }
 }
@@ -0,0 +1,144 @@
+package com.compiler;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Compila con el léxico, el análisis semántico y el VCI como etapas en hilos
+// distintos, conectadas por colas acotadas de bloques de tokens. Cada bloque
+// pertenece a una sola etapa a la vez; cada etapa guarda en su propia ventana
+// las filas que todavía necesita como tokens siguientes.
+class CompilationPipeline {
+    private static final int QUEUE_CAPACITY = 4;
+    // Marca el final del flujo de bloques.
+    private static final TokenBuffer END = new TokenBuffer(new NameTable(), 0);
+
+    private final NameTable names;
+    private final BlockingQueue<TokenBuffer> toSemantic = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<TokenBuffer> toVci = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile RuntimeException failure;
+
+    CompilationPipeline(NameTable names) {
+        this.names = names;
+    }
+
+    // El VCI se genera en el hilo actual y su tiempo se suma a vciEvent;
+    // termina cuando las tres etapas terminaron.
+    void run(AnalizadorLexico analizadorLexico, AnalizadorSemantico analizadorSemantico, VCI vci, Diagnostics diagnostics,
+             CompilerEvents.Vci vciEvent) {
+        Thread lexing = new Thread(() -> lex(analizadorLexico, diagnostics), "lexico");
+        Thread analyzing = new Thread(() -> analyze(analizadorSemantico), "semantico");
+        lexing.start();
+        analyzing.start();
+        generate(vci, vciEvent);
+        join(lexing);
+        join(analyzing);
+        if (failure != null) throw failure;
+    }
+
+    private void lex(AnalizadorLexico analizadorLexico, Diagnostics diagnostics) {
+        CompilerEvents.Phase event = new CompilerEvents.Lexer().start();
+        try {
+            boolean more = true;
+            while (more) {
+                TokenBuffer chunk = new TokenBuffer(names, Compilador.CHUNK);
+                long started = System.nanoTime();
+                more = analizadorLexico.fill(chunk, Compilador.CHUNK);
+                event.busy(System.nanoTime() - started);
+                event.items += chunk.size();
+                diagnostics.tokens(chunk, 0);
+                put(toSemantic, chunk);
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            put(toSemantic, END);
+            event.errors = analizadorLexico.errors();
+            event.finish();
+        }
+    }
+
+    // Si el análisis falla se siguen recibiendo bloques para que el léxico
+    // termine de mandar los tokens a tokens.txt, igual que en el modo secuencial.
+    private void analyze(AnalizadorSemantico analizadorSemantico) {
+        TokenBuffer window = new TokenBuffer(names, Compilador.CHUNK * 2);
+        CompilerEvents.Phase event = new CompilerEvents.Semantic().start();
+        try {
+            while (true) {
+                TokenBuffer chunk = take(toSemantic);
+                boolean last = chunk == END;
+                if (failure == null) {
+                    try {
+                        window.addAll(chunk, 0, chunk.size());
+                        long started = System.nanoTime();
+                        int analyzed = analizadorSemantico.analyze(window, 0, last);
+                        event.busy(System.nanoTime() - started);
+                        event.items += analyzed;
+                        if (analyzed > 0) {
+                            TokenBuffer ready = new TokenBuffer(names, analyzed);
+                            ready.addAll(window, 0, analyzed);
+                            put(toVci, ready);
+                            window.retain(analyzed);
+                        }
+                    } catch (RuntimeException e) {
+                        fail(e);
+                    }
+                }
+                if (last) break;
+            }
+        } finally {
+            put(toVci, END);
+            event.errors = analizadorSemantico.errors();
+            event.finish();
+        }
+    }
+
+    private void generate(VCI vci, CompilerEvents.Vci event) {
+        TokenBuffer window = new TokenBuffer(names, Compilador.CHUNK * 2);
+        while (true) {
+            TokenBuffer chunk = take(toVci);
+            boolean last = chunk == END;
+            if (failure == null) {
+                try {
+                    window.addAll(chunk, 0, chunk.size());
+                    long started = System.nanoTime();
+                    window.retain(vci.generate(window, 0, window.size(), last));
+                    event.busy(System.nanoTime() - started);
+                } catch (RuntimeException e) {
+                    fail(e);
+                }
+            }
+            if (last) break;
+        }
+    }
+
+    private void fail(RuntimeException e) {
+        if (failure == null) failure = e;
+    }
+
+    private static void put(BlockingQueue<TokenBuffer> queue, TokenBuffer chunk) {
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Compilación interrumpida.", e);
+        }
+    }
+
+    private static TokenBuffer take(BlockingQueue<TokenBuffer> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Compilación interrumpida.", e);
+        }
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Compilación interrumpida.", e);
+        }
+    }
+}
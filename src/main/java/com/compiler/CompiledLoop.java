@@ -0,0 +1,37 @@
+package com.compiler;
+
+// Un ciclo compilado por LoopCompiler, válido mientras las variables que usa
+// tengan los tipos que tenían al compilarlo.
+final class CompiledLoop {
+    // Lo implementa la clase oculta. Recibe los valores de las casillas, los
+    // copia a variables locales de la JVM, ejecuta el ciclo y los devuelve;
+    // el resultado es el pc del bytecode donde sigue el intérprete.
+    interface Body {
+        int run(long[] values, OutputSink out);
+    }
+
+    final int start;
+    final int end;
+    private final int[] slots;
+    private final byte[] types;
+    private final Body body;
+
+    CompiledLoop(int start, int end, int[] slots, byte[] types, Body body) {
+        this.start = start;
+        this.end = end;
+        this.slots = slots;
+        this.types = types;
+        this.body = body;
+    }
+
+    boolean accepts(Frame frame) {
+        for (int i = 0; i < slots.length; i++) {
+            if (frame.types[slots[i]] != types[i]) return false;
+        }
+        return true;
+    }
+
+    int run(Frame frame, OutputSink out) {
+        return body.run(frame.values, out);
+    }
+}
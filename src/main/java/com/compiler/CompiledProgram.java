@@ -0,0 +1,24 @@
+package com.compiler;
+
+import java.util.Map;
+
+// Resultado de compilar un programa: lo que necesitan Execution y los reportes
+// de después de la ejecución, sin volver a pasar por el léxico ni el VCI.
+public class CompiledProgram {
+    final Bytecode bytecode;
+    final SymbolTable symbolTable;
+    final FunctionTable functionTable;
+    // Posición de cada programa de functionTable dentro del VCI (ver VCI.addresses).
+    final Map<String, Integer> addresses;
+
+    public CompiledProgram(Bytecode bytecode, SymbolTable symbolTable, FunctionTable functionTable, Map<String, Integer> addresses) {
+        this.bytecode = bytecode;
+        this.symbolTable = symbolTable;
+        this.functionTable = functionTable;
+        this.addresses = addresses;
+    }
+
+    public Bytecode getBytecode() {
+        return bytecode;
+    }
+}
@@ -0,0 +1,134 @@
+package com.compiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.lang.management.ManagementFactory;
+
+// Eventos de Java Flight Recorder para cada etapa (léxico, análisis
+// semántico, VCI, ejecución y escritura de reportes). Cada etapa crea su evento
+// al empezar, suma con busy() el tiempo que de verdad trabajó (sin esperas
+// entre hilos) y lo cierra con finish(), que además lo pasa a Metrics. Si ni
+// JFR ni Metrics están activos, finish() no mide ni registra nada.
+//
+//   java -XX:StartFlightRecording=filename=compilador.jfr -cp target/classes com.compiler.Compilador programa.txt
+//   jfr print --categories Compilador compilador.jfr
+final class CompilerEvents {
+    private CompilerEvents() {
+    }
+
+    @Category("Compilador")
+    @StackTrace(false)
+    abstract static class Phase extends Event {
+        @Label("Elementos")
+        @Description("Tokens, filas del VCI, instrucciones o bytes, según la etapa")
+        long items;
+
+        @Label("Tiempo trabajando")
+        @Timespan(Timespan.NANOSECONDS)
+        long busy;
+
+        @Label("Memoria asignada")
+        @Description("Bytes asignados por el hilo de la etapa (estimado)")
+        @DataAmount
+        long allocated;
+
+        @Label("Errores")
+        int errors;
+
+        private transient long allocatedAtStart = -1;
+
+        // Empieza la etapa en el hilo actual.
+        final Phase start() {
+            if (isEnabled() || Metrics.enabled()) allocatedAtStart = allocatedBytes();
+            begin();
+            return this;
+        }
+
+        // Si start() empezó a medir porque JFR o Metrics están activos.
+        final boolean measured() {
+            return allocatedAtStart >= 0;
+        }
+
+        final void busy(long nanos) {
+            busy += nanos;
+        }
+
+        final void finish() {
+            end();
+            if (allocatedAtStart >= 0) {
+                long now = allocatedBytes();
+                allocated = now >= 0 ? now - allocatedAtStart : 0;
+            }
+            if (shouldCommit()) commit();
+            if (!Metrics.enabled()) return;
+            String phase = phase();
+            Metrics.count(phase + ".runs", 1);
+            Metrics.count(phase + "." + itemName(), items);
+            Metrics.count(phase + ".errors", errors);
+            Metrics.count(phase + ".allocated_bytes", allocated);
+            Metrics.record(phase + ".busy_ns", busy);
+        }
+
+        // Nombre de la etapa en las métricas.
+        abstract String phase();
+
+        abstract String itemName();
+    }
+
+    @Name("com.compiler.Lexer")
+    @Label("Análisis léxico")
+    static final class Lexer extends Phase {
+        String phase() { return "lexer"; }
+        String itemName() { return "tokens"; }
+    }
+
+    @Name("com.compiler.Semantic")
+    @Label("Análisis semántico")
+    static final class Semantic extends Phase {
+        String phase() { return "semantic"; }
+        String itemName() { return "tokens"; }
+    }
+
+    @Name("com.compiler.Vci")
+    @Label("Generación del VCI")
+    static final class Vci extends Phase {
+        String phase() { return "vci"; }
+        String itemName() { return "length"; }
+    }
+
+    @Name("com.compiler.Execution")
+    @Label("Ejecución")
+    static final class Execution extends Phase {
+        String phase() { return "execution"; }
+        String itemName() { return "instructions"; }
+    }
+
+    @Name("com.compiler.Report")
+    @Label("Escritura de reporte")
+    static final class Report extends Phase {
+        @Label("Archivo")
+        String file;
+
+        Report(String file) {
+            this.file = file;
+        }
+
+        String phase() { return "report." + file; }
+        String itemName() { return "bytes"; }
+    }
+
+    // Bytes asignados hasta ahora por el hilo actual, o -1 si la JVM no lo informa.
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,139 @@
+package com.compiler;
+
+import java.util.Arrays;
+
+import static com.compiler.Opcode.*;
+
+// Junta las cadenas de concatenaciones que dejó TypeInference. En postfijo,
+// a + b + c + d es "a b CONCAT c CONCAT d CONCAT": cada CONCAT crea una
+// cadena nueva que el siguiente vuelve a copiar. Si el operando izquierdo de
+// un CONCAT es el resultado del CONCAT anterior, los dos son parte de la misma
+// cadena; se quitan los intermedios y el último se vuelve CONCAT_N n, que
+// junta las n partes de una vez. Si el resultado solo se imprime, la cadena se
+// vuelve PRINT_CONCAT n y las partes se escriben directo en la salida.
+//
+// Solo se juntan CONCAT especializados, que no pueden fallar, así que los
+// errores de las partes siguen ocurriendo en el mismo orden y en la misma línea.
+public class ConcatChains {
+    private final Bytecode input;
+
+    public ConcatChains(Bytecode input) {
+        this.input = input;
+    }
+
+    public static Bytecode rewrite(Bytecode bytecode) {
+        return new ConcatChains(bytecode).rewrite();
+    }
+
+    public Bytecode rewrite() {
+        int[] code = input.code;
+        boolean[] targets = new boolean[code.length + 1];
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            int operand = jumpOperand(code[pc]);
+            if (operand > 0) targets[Math.min(Math.max(code[pc + operand], 0), code.length)] = true;
+        }
+
+        // Para cada CONCAT, cuántas partes lleva su cadena hasta él, en negativo
+        // si no es el último de la cadena. producers guarda qué instrucción
+        // apiló cada valor de la pila simulada.
+        int[] parts = new int[code.length];
+        int[] producers = new int[16];
+        int top = 0;
+        int chains = 0;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (targets[pc]) top = 0;
+            if (top + 1 >= producers.length) producers = Arrays.copyOf(producers, producers.length * 2);
+            int opcode = code[pc];
+            int pops;
+            boolean pushes;
+            switch (generic(opcode)) {
+                case PUSH_NUMBER, PUSH_STRING, PUSH_TRUE, PUSH_FALSE, PUSH_NULL, LOAD, REFERENCE -> {
+                    pops = 0;
+                    pushes = true;
+                }
+                case STORE -> {
+                    pops = 2;
+                    pushes = false;
+                }
+                case INPUT, POP, PRINT -> {
+                    pops = 1;
+                    pushes = false;
+                }
+                case NOT -> {
+                    pops = 1;
+                    pushes = true;
+                }
+                case JUMP, JUMP_IF_FALSE -> {
+                    top = 0;
+                    continue;
+                }
+                default -> {
+                    pops = Superinstructions.isBinary(opcode) ? 2 : 0;
+                    pushes = pops > 0;
+                }
+            }
+            if (opcode == CONCAT) {
+                int left = top >= 2 ? producers[top - 2] : -1;
+                if (left >= 0 && code[left] == CONCAT) {
+                    parts[pc] = parts[left] + 1;
+                    // El anterior ya no termina la cadena.
+                    parts[left] = -parts[left];
+                    if (parts[pc] == 3) chains++;
+                } else {
+                    parts[pc] = 2;
+                }
+            }
+            top = Math.max(top - pops, 0);
+            if (pushes) producers[top++] = pc;
+        }
+        if (chains == 0) return input;
+
+        // Se copia el código quitando los CONCAT intermedios y cambiando el
+        // último de cada cadena de tres o más partes. Cada cadena pierde al
+        // menos una posición, así que el código nuevo no es más largo.
+        int[] out = new int[code.length];
+        int[] lines = new int[out.length];
+        int[] map = new int[code.length + 1];
+        int size = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            map[pc] = size;
+            int opcode = code[pc];
+            int length = Opcode.length(opcode);
+            if (opcode == CONCAT && parts[pc] < 0) {
+                pc += length;
+                continue;
+            }
+            if (opcode == CONCAT && parts[pc] >= 3) {
+                int next = pc + 1;
+                boolean printed = next < code.length && code[next] == PRINT && !targets[next];
+                lines[size] = input.lines[pc];
+                out[size++] = printed ? PRINT_CONCAT : CONCAT_N;
+                lines[size] = input.lines[pc];
+                out[size++] = parts[pc];
+                if (printed) {
+                    map[next] = size - 2;
+                    pc = next + 1;
+                } else {
+                    pc = next;
+                }
+                continue;
+            }
+            for (int i = 0; i < length; i++) {
+                out[size + i] = code[pc + i];
+                lines[size + i] = input.lines[pc + i];
+            }
+            size += length;
+            pc += length;
+        }
+        map[code.length] = size;
+
+        for (int p = 0; p < size; p += Opcode.length(out[p])) {
+            int operand = jumpOperand(out[p]);
+            if (operand == 0) continue;
+            int target = out[p + operand];
+            out[p + operand] = target >= 0 && target < map.length ? map[target] : size;
+        }
+        return new Bytecode(Arrays.copyOf(out, size), Arrays.copyOf(lines, size), input.numbers, input.strings, input.variables);
+    }
+}
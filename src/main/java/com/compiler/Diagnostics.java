@@ -0,0 +1,289 @@
+package com.compiler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Reportes de diagnóstico: tokens.txt, vci.txt, symbolTable.txt,
+// addressTable.txt, optimizer.txt, ngrams.txt y profile.txt (con
+// profile.folded). Cada uno se pide por separado
+// (--dump=tokens,vci,symbols,addresses,optimizer,ngrams,profile o --dump=all) y se escribe en un solo hilo aparte, de una pasada y sin
+// String.format por fila. Sin reportes pedidos no se crea el hilo y cada
+// llamada regresa de inmediato.
+public class Diagnostics implements AutoCloseable {
+    public enum Dump { TOKENS, VCI, SYMBOLS, ADDRESSES, OPTIMIZER, NGRAMS, PROFILE }
+
+    static final Diagnostics NONE = new Diagnostics(EnumSet.noneOf(Dump.class), Paths.get("src/main/resources"));
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final Set<Dump> dumps;
+    private final Path directory;
+    private final ExecutorService writer;
+    // Solo se usan en el hilo del escritor.
+    private BufferedWriter tokenWriter;
+    private boolean tokensFailed = false;
+    private CompilerEvents.Phase tokenEvent;
+    private final StringBuilder line = new StringBuilder(128);
+
+    public Diagnostics(Set<Dump> dumps, Path directory) {
+        this.dumps = dumps.isEmpty() ? EnumSet.noneOf(Dump.class) : EnumSet.copyOf(dumps);
+        this.directory = directory;
+        this.writer = dumps.isEmpty() ? null : Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "diagnostico");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Lista separada por comas de tokens, vci, symbols, addresses, optimizer, ngrams y profile, o all.
+    public static Set<Dump> parse(String list) {
+        Set<Dump> dumps = EnumSet.noneOf(Dump.class);
+        for (String name : list.split(",")) {
+            if (name.equals("all")) {
+                dumps.addAll(EnumSet.allOf(Dump.class));
+            } else if (!name.isEmpty()) {
+                try {
+                    dumps.add(Dump.valueOf(name.toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Reporte desconocido: " + name);
+                }
+            }
+        }
+        return dumps;
+    }
+
+    public boolean enabled(Dump dump) {
+        return dumps.contains(dump);
+    }
+
+    // Agrega a tokens.txt las filas del bloque desde from. Las filas se copian
+    // porque el bloque puede reutilizarse antes de que se escriban.
+    void tokens(TokenBuffer chunk, int from) {
+        if (!enabled(Dump.TOKENS) || from >= chunk.size()) return;
+        TokenBuffer rows = new TokenBuffer(chunk.names, chunk.size() - from);
+        rows.addAll(chunk, from, chunk.size());
+        writer.execute(() -> writeTokens(rows));
+    }
+
+    // Termina tokens.txt (con solo el encabezado si no llegó ningún bloque).
+    void endTokens() {
+        if (!enabled(Dump.TOKENS)) return;
+        writer.execute(() -> {
+            writeTokens(null);
+            closeTokens();
+        });
+    }
+
+    private void writeTokens(TokenBuffer rows) {
+        if (tokensFailed) return;
+        long started = System.nanoTime();
+        if (tokenEvent == null) tokenEvent = new CompilerEvents.Report("tokens.txt").start();
+        try {
+            if (tokenWriter == null) {
+                tokenWriter = Files.newBufferedWriter(directory.resolve("tokens.txt"));
+                row(tokenWriter, "Token", 20, "Lexeme", 15, "Literal", 10, "Line", 10);
+                row(tokenWriter, "--------------------", 20, "---------------", 15, "----------", 10, "----------", 10);
+            }
+            for (int i = 0; rows != null && i < rows.size(); i++) {
+                Object value = rows.literal(i);
+                row(tokenWriter, truncate(rows.type(i).toString(), 20), 20, truncate(rows.lexeme(i), 15), 15,
+                        truncate(value != null ? value.toString() : "null", 10), 10, Integer.toString(rows.line(i)), 10);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing tokens to file: " + e.getMessage());
+            tokensFailed = true;
+        }
+        tokenEvent.busy(System.nanoTime() - started);
+    }
+
+    // El buffer ya no debe cambiar después de llamar a este método.
+    void vci(TokenBuffer vci) {
+        if (!enabled(Dump.VCI)) return;
+        submit("vci.txt", () -> {
+            try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("vci.txt"))) {
+                out.write("VCI: ");
+                out.newLine();
+                out.write("[");
+                for (int i = 0; i < vci.size(); i++) {
+                    if (i > 0) out.write(", ");
+                    out.write(vci.lexeme(i));
+                }
+                out.write("]");
+            } catch (IOException e) {
+                System.err.println("Error writing VCI to file: " + e.getMessage());
+            }
+        });
+    }
+
+    void symbols(SymbolTable symbolTable, FunctionTable functionTable) {
+        if (!enabled(Dump.SYMBOLS)) return;
+        submit("symbolTable.txt", () -> {
+            try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("symbolTable.txt"))) {
+                symbolRow(out, "ID", "Token Type", "Value", "D1", "D2", "PTR", "Scope", "Ambito");
+                symbolRow(out, "--------------------", "---------------", "--------------------", "----------", "----------", "----------", "----------", "----------");
+                String ambito = "";
+                for (String name : functionTable.getTable().keySet()) {
+                    ambito = name;
+                }
+                for (Map.Entry<String, SymbolTable.Symbol> entry : symbolTable.getTable().entrySet()) {
+                    symbolRow(out, entry.getKey(), entry.getValue().type, String.valueOf(entry.getValue().value.getValue()),
+                            "0", "0", "null", "Scope", ambito);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing symbol table to file: " + e.getMessage());
+            }
+        });
+    }
+
+    void addresses(CompiledProgram program) {
+        if (!enabled(Dump.ADDRESSES)) return;
+        submit("addressTable.txt", () -> {
+            try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("addressTable.txt"))) {
+                row(out, "ID", 20, "Token Type", 15, "Line", 10, "Address", 10);
+                row(out, "--------------------", 20, "---------------", 15, "----------", 10, "----------", 10);
+                for (Map.Entry<String, SymbolTable.Symbol> entry : program.functionTable.getTable().entrySet()) {
+                    String id = entry.getKey();
+                    row(out, id, 20, entry.getValue().type, 15, Integer.toString(entry.getValue().value.getLine()), 10,
+                            Integer.toString(program.addresses.getOrDefault(id, -1)), 10);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing address table to file: " + e.getMessage());
+            }
+        });
+    }
+
+    // Resumen de lo que hizo el BytecodeOptimizer.
+    void optimizer(String report) {
+        if (!enabled(Dump.OPTIMIZER)) return;
+        submit("optimizer.txt", () -> {
+            try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("optimizer.txt"))) {
+                out.write(report);
+            } catch (IOException e) {
+                System.err.println("Error writing optimizer report to file: " + e.getMessage());
+            }
+        });
+    }
+
+    // Secuencias de opcodes más ejecutadas (ver OpcodeProfile).
+    void ngrams(String report) {
+        if (!enabled(Dump.NGRAMS)) return;
+        submit("ngrams.txt", () -> {
+            try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("ngrams.txt"))) {
+                out.write(report);
+            } catch (IOException e) {
+                System.err.println("Error writing opcode profile to file: " + e.getMessage());
+            }
+        });
+    }
+
+    // Puntos calientes de la ejecución y sus pilas plegadas para flame graphs.
+    void profile(Profiler profiler) {
+        if (!enabled(Dump.PROFILE)) return;
+        submit("profile.txt", () -> {
+            try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("profile.txt"))) {
+                out.write(profiler.report());
+            } catch (IOException e) {
+                System.err.println("Error writing profile to file: " + e.getMessage());
+            }
+        });
+        submit("profile.folded", () -> {
+            try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("profile.folded"))) {
+                out.write(profiler.folded());
+            } catch (IOException e) {
+                System.err.println("Error writing profile to file: " + e.getMessage());
+            }
+        });
+    }
+
+    // Escribe file en el hilo del escritor con su evento de JFR y sus métricas.
+    private void submit(String file, Runnable task) {
+        writer.execute(() -> {
+            CompilerEvents.Phase event = new CompilerEvents.Report(file).start();
+            long started = System.nanoTime();
+            task.run();
+            event.busy(System.nanoTime() - started);
+            event.items = size(event, file);
+            event.finish();
+        });
+    }
+
+    // Tamaño del reporte, solo si alguien va a ver el evento.
+    private long size(CompilerEvents.Phase event, String file) {
+        if (!event.measured()) return 0;
+        try {
+            return Files.size(directory.resolve(file));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Espera a que se terminen de escribir los reportes pedidos.
+    @Override
+    public void close() {
+        if (writer == null) return;
+        if (enabled(Dump.TOKENS)) writer.execute(this::closeTokens);
+        writer.shutdown();
+        try {
+            while (!writer.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Sigue escribiendo.
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeTokens() {
+        try {
+            if (tokenWriter != null) tokenWriter.close();
+        } catch (IOException e) {
+            System.err.println("Error writing tokens to file: " + e.getMessage());
+        }
+        tokenWriter = null;
+        tokensFailed = true;
+        if (tokenEvent != null) {
+            tokenEvent.items = size(tokenEvent, "tokens.txt");
+            tokenEvent.finish();
+            tokenEvent = null;
+        }
+    }
+
+    // Una fila de columnas alineadas a la izquierda, separadas por un espacio.
+    private void row(BufferedWriter out, String a, int widthA, String b, int widthB, String c, int widthC, String d, int widthD) throws IOException {
+        line.setLength(0);
+        column(a, widthA).append(' ');
+        column(b, widthB).append(' ');
+        column(c, widthC).append(' ');
+        column(d, widthD).append(NEWLINE);
+        out.append(line);
+    }
+
+    private void symbolRow(BufferedWriter out, String... values) throws IOException {
+        line.setLength(0);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) line.append(' ');
+            column(values[i], i == 0 || i == 2 ? 20 : i == 1 ? 15 : 10);
+        }
+        out.append(line).append(NEWLINE);
+    }
+
+    private StringBuilder column(String value, int width) {
+        line.append(value);
+        for (int i = value.length(); i < width; i++) line.append(' ');
+        return line;
+    }
+
+    private static String truncate(String value, int length) {
+        if (value.length() > length) {
+            return value.substring(0, length - 3) + "...";
+        }
+        return value;
+    }
+}
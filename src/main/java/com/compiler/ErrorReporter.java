@@ -0,0 +1,62 @@
+package com.compiler;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Errores de una compilación y su ejecución. Cada Compilador (y cada análisis
+// que se cree por separado) tiene el suyo, así que varios programas pueden
+// compilarse y ejecutarse a la vez sin compartir estado. Los hilos del
+// CompilationPipeline reportan al mismo tiempo, por eso los contadores son atómicos.
+public class ErrorReporter {
+    private final PrintStream err;
+    private final AtomicInteger errors = new AtomicInteger();
+    private volatile boolean hadRuntimeError = false;
+
+    public ErrorReporter(PrintStream err) {
+        this.err = err;
+    }
+
+    public ErrorReporter() {
+        this(System.err);
+    }
+
+    public void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    public void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    // Un error fuera del código fuente (por ejemplo, al leer o escribir un archivo).
+    public void error(String message) {
+        err.println(message);
+        errors.incrementAndGet();
+    }
+
+    private void report(int line, String where, String message) {
+        err.println("[line " + line + "] Error" + where + ": " + message);
+        errors.incrementAndGet();
+    }
+
+    public void runtimeError(RuntimeError error) {
+        err.println("[line " + error.line + "] Runtime error: " + error.getMessage());
+        hadRuntimeError = true;
+    }
+
+    public boolean hadError() {
+        return errors.get() > 0;
+    }
+
+    public int errorCount() {
+        return errors.get();
+    }
+
+    public boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+}
@@ -1,177 +1,674 @@
 package com.compiler;
 
 import java.util.List;
-import java.util.Scanner;
-import java.util.Stack;
-import static com.compiler.TokenType.*;
 
 public class Execution {
-    private final Stack<SymbolTable.Symbol> executionStack = new Stack<>();
+    private final OperandStack executionStack = new OperandStack();
     private final FunctionTable functionTable = new FunctionTable();
     private final SymbolTable symbolTable;
-    private final Scanner scanner = new Scanner(System.in);
+    private final InputSource input;
+    private final OutputSink out;
+    private String[] variables = new String[0];
+    private Frame frame = new Frame(0);
+    // Veces que se ejecutó cada instrucción y nanosegundos acumulados en ella
+    // (por pc), solo si se pidió con profile(); en ese caso no se usan
+    // superinstrucciones. Sin perfil el ciclo solo revisa que counts sea null.
+    private boolean profiling = false;
+    // Si se aplica LoopOptimizer al bytecode fusionado.
+    private boolean loops = true;
+    // Si se ejecuta con RegisterMachine en lugar de la pila.
+    private boolean registers = false;
+    // Si los ciclos calientes se compilan a clases de la JVM (ver HotLoops).
+    private boolean compileLoops = true;
+    private long[] counts;
+    private long[] times;
+    // Instrucción en curso y cuándo empezó, para el perfil.
+    private int current = -1;
+    private long started;
+    // Instrucciones despachadas en la última ejecución (las superinstrucciones cuentan como una).
+    private long dispatches;
     public Execution(SymbolTable symbolTable) {
+        this(symbolTable, InputSource.console());
+    }
+
+    // Permite alimentar input desde otra fuente, por ejemplo valores de prueba.
+    public Execution(SymbolTable symbolTable, InputSource input) {
+        this(symbolTable, input, OutputSink.console());
+    }
+
+    // Con su propia entrada y salida, para ejecutar varios programas a la vez.
+    public Execution(SymbolTable symbolTable, InputSource input, OutputSink out) {
         this.symbolTable = symbolTable;
+        this.input = input;
+        this.out = out;
     }
 
     public void executeVCI(List<Token> vci) {
-        int i = 0;
-        while (i < vci.size()) {
-            Token token = vci.get(i);
-            if (token.type == IDENTIFIER) {
-                if (symbolTable.contains(token.lexeme)) {
-                    executionStack.push(symbolTable.get(token.lexeme));
-                } else {
-                    executionStack.push(new SymbolTable.Symbol(token.lexeme, "IDENTIFIER", new SymbolTable.Value(token.lexeme, null, token.line)));
+        execute(new BytecodeGenerator(vci).generate());
+    }
+
+    // Perfila las siguientes ejecuciones, sobre el bytecode sin fusionar.
+    public void profile() {
+        profiling = true;
+    }
+
+    // Sin optimizar los ciclos (ver LoopOptimizer); para comparar en los benchmarks.
+    public void optimizeLoops(boolean loops) {
+        this.loops = loops;
+    }
+
+    // Ejecuta con RegisterMachine. Los programas que RegisterTranslator no
+    // puede traducir, y las ejecuciones con perfil, siguen usando la pila.
+    public void useRegisters(boolean registers) {
+        this.registers = registers;
+    }
+
+    // Sin compilar los ciclos calientes; todo el programa corre en el intérprete.
+    public void compileLoops(boolean compileLoops) {
+        this.compileLoops = compileLoops;
+    }
+
+    public long[] getInstructionCounts() {
+        return counts;
+    }
+
+    public long getDispatches() {
+        return dispatches;
+    }
+
+    public long[] getInstructionTimes() {
+        return times;
+    }
+
+    public void execute(Bytecode bytecode) {
+        RegisterCode registerCode = registers && !profiling ? bytecode.registers() : null;
+        if (registerCode != null) {
+            execute(registerCode);
+            return;
+        }
+        if (profiling) {
+            counts = new long[bytecode.code.length];
+            times = new long[bytecode.code.length];
+        } else {
+            bytecode = bytecode.fused(loops);
+        }
+        long[] counts = this.counts;
+        long dispatched = 0;
+        int[] code = bytecode.code;
+        OperandStack stack = executionStack;
+        variables = bytecode.variables;
+        frame = new Frame(variables.length);
+        Frame frame = this.frame;
+        HotLoops hot = compileLoops && !profiling ? new HotLoops(bytecode, out) : null;
+        int pc = 0;
+        try {
+            while (pc < code.length) {
+                dispatched++;
+                if (counts != null) tick(pc);
+                switch (code[pc]) {
+                    case Opcode.PUSH_NUMBER -> {
+                        pushConstant(bytecode, code[pc + 1]);
+                        pc += 2;
+                    }
+                    case Opcode.PUSH_INTEGER -> {
+                        stack.pushInteger(bytecode.integers[code[pc + 1]]);
+                        pc += 2;
+                    }
+                    case Opcode.PUSH_STRING -> {
+                        stack.pushString(bytecode.strings[code[pc + 1]]);
+                        pc += 2;
+                    }
+                    case Opcode.PUSH_TRUE -> {
+                        stack.pushBoolean(true);
+                        pc++;
+                    }
+                    case Opcode.PUSH_FALSE -> {
+                        stack.pushBoolean(false);
+                        pc++;
+                    }
+                    case Opcode.PUSH_NULL -> {
+                        stack.pushNull();
+                        pc++;
+                    }
+                    case Opcode.LOAD -> {
+                        stack.load(frame, code[pc + 1]);
+                        pc += 2;
+                    }
+                    case Opcode.REFERENCE -> {
+                        stack.pushReference(code[pc + 1]);
+                        pc += 2;
+                    }
+                    case Opcode.STORE -> {
+                        if (stack.type(1) != ValueType.REFERENCE) {
+                            throw new RuntimeError(bytecode.lines[pc], "Destino de asignación inválido.");
+                        }
+                        int slot = stack.referenceAt(1);
+                        stack.store(frame, slot);
+                        stack.pop();
+                        pc++;
+                    }
+                    case Opcode.POP -> {
+                        stack.pop();
+                        pc++;
+                    }
+                    case Opcode.ADD, Opcode.SUB, Opcode.MUL, Opcode.DIV, Opcode.MOD, Opcode.AND, Opcode.OR,
+                         Opcode.GREATER, Opcode.GREATER_EQUAL, Opcode.LESS, Opcode.LESS_EQUAL,
+                         Opcode.EQUAL_EQUAL, Opcode.NOT_EQUAL -> {
+                        binary(code[pc], bytecode.lines[pc]);
+                        pc++;
+                    }
+                    case Opcode.ADD_NUMBERS, Opcode.SUB_NUMBERS, Opcode.MUL_NUMBERS, Opcode.DIV_NUMBERS,
+                         Opcode.MOD_NUMBERS -> {
+                        applyArithmetic(Opcode.generic(code[pc]));
+                        pc++;
+                    }
+                    case Opcode.CONCAT -> {
+                        stack.concat(2);
+                        pc++;
+                    }
+                    case Opcode.CONCAT_N -> {
+                        stack.concat(code[pc + 1]);
+                        pc += 2;
+                    }
+                    case Opcode.PRINT_CONCAT -> {
+                        stack.print(code[pc + 1], out);
+                        pc += 2;
+                    }
+                    case Opcode.AND_BOOLEANS -> {
+                        boolean b = stack.popBoolean();
+                        stack.pushBoolean(stack.popBoolean() && b);
+                        pc++;
+                    }
+                    case Opcode.OR_BOOLEANS -> {
+                        boolean b = stack.popBoolean();
+                        stack.pushBoolean(stack.popBoolean() || b);
+                        pc++;
+                    }
+                    case Opcode.NOT_BOOLEAN -> {
+                        stack.pushBoolean(!stack.popBoolean());
+                        pc++;
+                    }
+                    case Opcode.GREATER_NUMBERS, Opcode.GREATER_EQUAL_NUMBERS, Opcode.LESS_NUMBERS,
+                         Opcode.LESS_EQUAL_NUMBERS, Opcode.EQUAL_NUMBERS, Opcode.NOT_EQUAL_NUMBERS -> {
+                        stack.pushBoolean(compareNumbers(Opcode.generic(code[pc])));
+                        pc++;
+                    }
+                    case Opcode.NOT -> {
+                        if (stack.type(0) != ValueType.BOOLEAN) {
+                            throw new RuntimeError(bytecode.lines[pc], "El operando debe ser booleano.");
+                        }
+                        stack.pushBoolean(!stack.popBoolean());
+                        pc++;
+                    }
+                    case Opcode.PRINT -> {
+                        processPrint();
+                        pc++;
+                    }
+                    case Opcode.INPUT -> {
+                        processInput(bytecode.lines[pc]);
+                        pc++;
+                    }
+                    case Opcode.PROGRAM -> {
+                        String name = bytecode.strings[code[pc + 1]];
+                        functionTable.put(name, new SymbolTable.Symbol(name, "IDENTIFIER", new SymbolTable.Value(name, null, bytecode.lines[pc])));
+                        pc += 2;
+                    }
+                    case Opcode.JUMP -> {
+                        int target = code[pc + 1];
+                        pc = target < pc && hot != null ? hot.backEdge(pc, target, frame) : target;
+                    }
+                    case Opcode.JUMP_IF_FALSE -> {
+                        if (stack.type(0) != ValueType.BOOLEAN) {
+                            throw new RuntimeError(bytecode.lines[pc], "La condición debe ser booleana.");
+                        }
+                        pc = stack.popBoolean() ? pc + 2 : code[pc + 1];
+                    }
+                    case Opcode.INCREMENT -> {
+                        increment(bytecode, code[pc + 1], code[pc + 2], bytecode.lines[pc]);
+                        pc += 3;
+                    }
+                    case Opcode.STORE_OP_CONST -> {
+                        int a = code[pc + 3];
+                        int k = code[pc + 4];
+                        long r;
+                        if (frame.types[a] == ValueType.INTEGER && bytecode.integral[k] && isArithmetic(code[pc + 1])
+                                && (r = exact(code[pc + 1], frame.values[a], bytecode.integers[k])) != INEXACT) {
+                            frame.setInteger(code[pc + 2], r);
+                        } else if (ValueType.isNumeric(frame.types[a]) && isArithmetic(code[pc + 1])) {
+                            frame.setNumber(code[pc + 2], arithmetic(code[pc + 1], frame.number(a), bytecode.numbers[k]));
+                        } else {
+                            stack.load(frame, a);
+                            pushConstant(bytecode, k);
+                            binary(code[pc + 1], bytecode.lines[pc]);
+                            stack.store(frame, code[pc + 2]);
+                        }
+                        pc += 5;
+                    }
+                    case Opcode.STORE_OP_VARS -> {
+                        int a = code[pc + 3];
+                        int b = code[pc + 4];
+                        long r;
+                        if (frame.types[a] == ValueType.INTEGER && frame.types[b] == ValueType.INTEGER && isArithmetic(code[pc + 1])
+                                && (r = exact(code[pc + 1], frame.values[a], frame.values[b])) != INEXACT) {
+                            frame.setInteger(code[pc + 2], r);
+                        } else if (ValueType.isNumeric(frame.types[a]) && ValueType.isNumeric(frame.types[b]) && isArithmetic(code[pc + 1])) {
+                            frame.setNumber(code[pc + 2], arithmetic(code[pc + 1], frame.number(a), frame.number(b)));
+                        } else {
+                            stack.load(frame, a);
+                            stack.load(frame, b);
+                            binary(code[pc + 1], bytecode.lines[pc]);
+                            stack.store(frame, code[pc + 2]);
+                        }
+                        pc += 5;
+                    }
+                    case Opcode.LOAD_OP_CONST -> {
+                        int a = code[pc + 2];
+                        int k = code[pc + 3];
+                        long r;
+                        if (frame.types[a] == ValueType.INTEGER && bytecode.integral[k] && isArithmetic(code[pc + 1])
+                                && (r = exact(code[pc + 1], frame.values[a], bytecode.integers[k])) != INEXACT) {
+                            stack.pushInteger(r);
+                        } else if (ValueType.isNumeric(frame.types[a]) && isArithmetic(code[pc + 1])) {
+                            stack.pushNumber(arithmetic(code[pc + 1], frame.number(a), bytecode.numbers[k]));
+                        } else {
+                            stack.load(frame, a);
+                            pushConstant(bytecode, k);
+                            binary(code[pc + 1], bytecode.lines[pc]);
+                        }
+                        pc += 4;
+                    }
+                    case Opcode.LOAD_OP_VARS -> {
+                        int a = code[pc + 2];
+                        int b = code[pc + 3];
+                        long r;
+                        if (frame.types[a] == ValueType.INTEGER && frame.types[b] == ValueType.INTEGER && isArithmetic(code[pc + 1])
+                                && (r = exact(code[pc + 1], frame.values[a], frame.values[b])) != INEXACT) {
+                            stack.pushInteger(r);
+                        } else if (ValueType.isNumeric(frame.types[a]) && ValueType.isNumeric(frame.types[b]) && isArithmetic(code[pc + 1])) {
+                            stack.pushNumber(arithmetic(code[pc + 1], frame.number(a), frame.number(b)));
+                        } else {
+                            stack.load(frame, a);
+                            stack.load(frame, b);
+                            binary(code[pc + 1], bytecode.lines[pc]);
+                        }
+                        pc += 4;
+                    }
+                    case Opcode.COMPARE_JUMP -> {
+                        boolean result;
+                        if (ValueType.isNumeric(stack.type(0)) && ValueType.isNumeric(stack.type(1))) {
+                            result = compareNumbers(code[pc + 1]);
+                        } else {
+                            binary(code[pc + 1], bytecode.lines[pc]);
+                            result = stack.popBoolean();
+                        }
+                        pc = result ? pc + 3 : code[pc + 2];
+                    }
+                    case Opcode.COMPARE_CONST_JUMP -> {
+                        int k = code[pc + 2];
+                        boolean result;
+                        if (stack.type(0) == ValueType.INTEGER && bytecode.integral[k]) {
+                            result = compare(code[pc + 1], stack.popInteger(), bytecode.integers[k]);
+                        } else if (ValueType.isNumeric(stack.type(0))) {
+                            result = compare(code[pc + 1], stack.popNumber(), bytecode.numbers[k]);
+                        } else {
+                            pushConstant(bytecode, k);
+                            binary(code[pc + 1], bytecode.lines[pc]);
+                            result = stack.popBoolean();
+                        }
+                        pc = result ? pc + 4 : code[pc + 3];
+                    }
+                    case Opcode.COMPARE_VAR_CONST_JUMP -> {
+                        boolean result = compareVarConst(bytecode, code[pc + 1], code[pc + 2], code[pc + 3], bytecode.lines[pc]);
+                        pc = result ? pc + 5 : code[pc + 4];
+                    }
+                    case Opcode.COMPARE_VARS_JUMP -> {
+                        boolean result = compareVars(code[pc + 1], code[pc + 2], code[pc + 3], bytecode.lines[pc]);
+                        pc = result ? pc + 5 : code[pc + 4];
+                    }
+                    case Opcode.INCREMENT_COMPARE_JUMP -> {
+                        increment(bytecode, code[pc + 1], code[pc + 2], bytecode.lines[pc]);
+                        boolean result = compareVars(code[pc + 3], code[pc + 1], code[pc + 4], bytecode.lines[pc + 3]);
+                        pc = !result ? pc + 6 : hot != null ? hot.backEdge(pc, code[pc + 5], frame) : code[pc + 5];
+                    }
+                    case Opcode.INCREMENT_COMPARE_CONST_JUMP -> {
+                        increment(bytecode, code[pc + 1], code[pc + 2], bytecode.lines[pc]);
+                        boolean result = compareVarConst(bytecode, code[pc + 3], code[pc + 1], code[pc + 4], bytecode.lines[pc + 3]);
+                        pc = !result ? pc + 6 : hot != null ? hot.backEdge(pc, code[pc + 5], frame) : code[pc + 5];
+                    }
+                    default -> throw new RuntimeError(bytecode.lines[pc], "Instrucción desconocida: " + code[pc]);
                 }
-            } else if (token.type == NUMBER || token.type == ADDRESS) {
-                executionStack.push(new SymbolTable.Symbol(token.lexeme, "NUMBER", new SymbolTable.Value(null, Double.parseDouble(token.lexeme), token.line)));
-            } else if (token.type == STRING) {
-                executionStack.push(new SymbolTable.Symbol(token.lexeme, "STRING", new SymbolTable.Value(null, token.literal, token.line)));
-            } else if (token.type == TRUE || token.type == FALSE) {
-                executionStack.push(new SymbolTable.Symbol(token.lexeme, "BOOLEAN", new SymbolTable.Value(null, Boolean.parseBoolean(token.lexeme), token.line)));
-            } else if (token.type == PLUS || token.type == MINUS || token.type == MUL || token.type == DIV || token.type == MOD ||
-                    token.type == EQUAL || token.type == AND || token.type == OR || token.type == NOT ||
-                    token.type == GREATER || token.type == GREATER_EQUAL || token.type == LESS ||
-                    token.type == LESS_EQUAL || token.type == EQUAL_EQUAL || token.type == NOT_EQUAL) {
-                processOperator(token.lexeme);
-            } else if (token.type == PRINT) {
-                processPrint();
-            } else if (token.type == INPUT) {
-                processInput();
-            }else if (token.type == PROGRAM) {
-                processProgram();
-            } else if (token.type == IF) {
-                SymbolTable.Symbol address = executionStack.pop();
-                SymbolTable.Symbol condition = executionStack.pop();
-                boolean booleanCondition = (Boolean) condition.value.getValue();
-                if (!booleanCondition) {
-                    i = Integer.parseInt(address.lexeme);
-                    continue;
+            }
+        } finally {
+            dispatches = dispatched;
+            if (counts != null) tick(-1);
+            out.flush();
+        }
+    }
+
+    private void execute(RegisterCode registerCode) {
+        variables = registerCode.variables;
+        frame = registerCode.newFrame();
+        RegisterMachine machine = new RegisterMachine(this, executionStack, functionTable, out);
+        try {
+            machine.run(registerCode, frame);
+        } finally {
+            dispatches = machine.dispatches();
+            out.flush();
+        }
+    }
+
+    // Cierra el tiempo de la instrucción anterior y empieza a contar la de pc
+    // (o ninguna si pc es -1). Fuera del ciclo para no agrandarlo sin perfil.
+    private void tick(int pc) {
+        long now = System.nanoTime();
+        if (current >= 0) times[current] += now - started;
+        current = pc;
+        started = now;
+        if (pc >= 0) counts[pc]++;
+    }
+
+    // Operadores binarios sobre los dos valores de la cima.
+    void binary(int op, int line) {
+        OperandStack stack = executionStack;
+        switch (op) {
+            case Opcode.ADD -> {
+                if (ValueType.isNumeric(stack.type(0)) && ValueType.isNumeric(stack.type(1))) {
+                    applyArithmetic(op);
+                } else {
+                    concatenate(line);
                 }
-            } else if (token.type == ELSE) {
-                SymbolTable.Symbol address = executionStack.pop();
-                i = Integer.parseInt(address.lexeme);
-                continue;
-            } else if (token.type == WHILE) {
-                SymbolTable.Symbol address = executionStack.pop();
-                SymbolTable.Symbol condition = executionStack.pop();
-                boolean booleanCondition = (Boolean) condition.value.getValue();
-                if (!booleanCondition) {
-                    i = Integer.parseInt(address.lexeme);
-                    continue;
+            }
+            case Opcode.SUB, Opcode.MUL, Opcode.DIV, Opcode.MOD -> {
+                checkNumbers(line);
+                applyArithmetic(op);
+            }
+            case Opcode.AND -> {
+                checkBooleans(line, false);
+                boolean b = stack.popBoolean();
+                stack.pushBoolean(stack.popBoolean() && b);
+            }
+            case Opcode.OR -> {
+                checkBooleans(line, true);
+                boolean b = stack.popBoolean();
+                stack.pushBoolean(stack.popBoolean() || b);
+            }
+            case Opcode.GREATER, Opcode.GREATER_EQUAL, Opcode.LESS, Opcode.LESS_EQUAL -> {
+                checkNumbers(line);
+                stack.pushBoolean(compareNumbers(op));
+            }
+            default -> {
+                if (stack.type(1) == ValueType.NULL) {
+                    throw new RuntimeError(line, "No se puede comparar un valor nulo.");
                 }
-            } else if (token.type == END) {
-                SymbolTable.Symbol address = executionStack.pop();
-                i = Integer.parseInt(address.lexeme);
-                continue;
+                boolean equal = stack.topEquals();
+                stack.pop();
+                stack.pop();
+                stack.pushBoolean(op == Opcode.EQUAL_EQUAL == equal);
             }
-            i++;
         }
     }
 
-    private void processOperator(String operator) {
-        if (operator.equals("NOT")) {
-            if (executionStack.isEmpty()) {
-                throw new IllegalStateException("Not enough operands for the operator: " + operator);
+    // x = x + k, con la constante k del pool.
+    private void increment(Bytecode bytecode, int slot, int k, int line) {
+        Frame frame = this.frame;
+        long a = frame.values[slot];
+        long b = bytecode.integers[k];
+        long sum = a + b;
+        if (frame.types[slot] == ValueType.INTEGER && bytecode.integral[k] && ((a ^ sum) & (b ^ sum)) >= 0) {
+            frame.values[slot] = sum;
+        } else if (ValueType.isNumeric(frame.types[slot])) {
+            frame.setNumber(slot, frame.number(slot) + bytecode.numbers[k]);
+        } else {
+            executionStack.load(frame, slot);
+            pushConstant(bytecode, k);
+            binary(Opcode.ADD, line);
+            executionStack.store(frame, slot);
+        }
+    }
+
+    // a op k, con la variable a y la constante k del pool.
+    private boolean compareVarConst(Bytecode bytecode, int op, int a, int k, int line) {
+        Frame frame = this.frame;
+        if (frame.types[a] == ValueType.INTEGER && bytecode.integral[k]) {
+            return compare(op, frame.values[a], bytecode.integers[k]);
+        }
+        if (ValueType.isNumeric(frame.types[a])) {
+            return compare(op, frame.number(a), bytecode.numbers[k]);
+        }
+        executionStack.load(frame, a);
+        pushConstant(bytecode, k);
+        binary(op, line);
+        return executionStack.popBoolean();
+    }
+
+    // a op b, con las variables a y b.
+    private boolean compareVars(int op, int a, int b, int line) {
+        Frame frame = this.frame;
+        if (frame.types[a] == ValueType.INTEGER && frame.types[b] == ValueType.INTEGER) {
+            return compare(op, frame.values[a], frame.values[b]);
+        }
+        if (ValueType.isNumeric(frame.types[a]) && ValueType.isNumeric(frame.types[b])) {
+            return compare(op, frame.number(a), frame.number(b));
+        }
+        executionStack.load(frame, a);
+        executionStack.load(frame, b);
+        binary(op, line);
+        return executionStack.popBoolean();
+    }
+
+    private static boolean isArithmetic(int op) {
+        return op >= Opcode.ADD && op <= Opcode.MOD;
+    }
+
+    static double arithmetic(int op, double a, double b) {
+        return switch (op) {
+            case Opcode.ADD -> a + b;
+            case Opcode.SUB -> a - b;
+            case Opcode.MUL -> a * b;
+            case Opcode.DIV -> a / b;
+            default -> a % b;
+        };
+    }
+
+    // Resultado de exact cuando la cuenta no se puede hacer en long. También
+    // es un valor posible de long, pero en ese caso el double es exacto (-2^63).
+    static final long INEXACT = Long.MIN_VALUE;
+
+    // Constante k del pool: entera si el literal lo es, número si no.
+    private void pushConstant(Bytecode bytecode, int k) {
+        if (bytecode.integral[k]) {
+            executionStack.pushInteger(bytecode.integers[k]);
+        } else {
+            executionStack.pushNumber(bytecode.numbers[k]);
+        }
+    }
+
+    // Aplica op a los dos números de la cima. Con dos enteros se opera en
+    // long; si no, como doubles.
+    private void applyArithmetic(int op) {
+        OperandStack stack = executionStack;
+        if (stack.type(0) == ValueType.INTEGER && stack.type(1) == ValueType.INTEGER) {
+            long b = stack.popInteger();
+            long a = stack.popInteger();
+            long r = exact(op, a, b);
+            if (r != INEXACT) {
+                stack.pushInteger(r);
+            } else {
+                stack.pushNumber(arithmetic(op, (double) a, (double) b));
             }
-            SymbolTable.Symbol a = executionStack.pop();
-            boolean result = !(Boolean) a.value.getValue();
-            executionStack.push(new SymbolTable.Symbol(String.valueOf(result), "BOOLEAN", new SymbolTable.Value(null, result, a.value.getLine())));
-            return;
+        } else {
+            double b = stack.popNumber();
+            stack.pushNumber(arithmetic(op, stack.popNumber(), b));
         }
+    }
 
-        SymbolTable.Symbol b = executionStack.pop();
-        SymbolTable.Symbol a = executionStack.pop();
-        Object result = null;
-        String resultType = "BOOLEAN";
-        switch (operator) {
-            case "+" -> {
-                if (a.type.equals("NUMBER") && b.type.equals("NUMBER")) {
-                    result = (Double) a.value.getValue() + (Double) b.value.getValue();
-                    resultType = "NUMBER";
-                } else {
-                    result = a.value.getValue().toString() + b.value.getValue().toString();
-                    resultType = "STRING";
-                }
+    // a op b entre enteros, si el resultado es exactamente el que daría la
+    // cuenta en doubles y cabe en un long: sin desbordar, división exacta y
+    // sin -0.0. Si no, INEXACT y la operación se hace con doubles.
+    static long exact(int op, long a, long b) {
+        switch (op) {
+            case Opcode.ADD -> {
+                long r = a + b;
+                return ((a ^ r) & (b ^ r)) < 0 ? INEXACT : r;
             }
-            case "-" -> {
-                result = (Double) a.value.getValue() - (Double) b.value.getValue();
-                resultType = "NUMBER";
+            case Opcode.SUB -> {
+                long r = a - b;
+                return ((a ^ b) & (a ^ r)) < 0 ? INEXACT : r;
             }
-            case "*" -> {
-                result = (Double) a.value.getValue() * (Double) b.value.getValue();
-                resultType = "NUMBER";
+            case Opcode.MUL -> {
+                long r = a * b;
+                if (Math.multiplyHigh(a, b) != (r >> 63) || (r == 0 && (a < 0 || b < 0))) return INEXACT;
+                return r;
             }
-            case "/" -> {
-                result = (Double) a.value.getValue() / (Double) b.value.getValue();
-                resultType = "NUMBER";
+            case Opcode.DIV -> {
+                // -2^63 / -1 desborda a -2^63, que es INEXACT.
+                return b == 0 || a % b != 0 || (a == 0 && b < 0) ? INEXACT : a / b;
             }
-            case "=" -> {
-                symbolTable.put(a.lexeme, new SymbolTable.Symbol(a.lexeme, b.type, b.value));
-                return;
+            default -> {
+                return b == 0 || (a < 0 && a % b == 0) ? INEXACT : a % b;
             }
-            case "%" -> {
-                result = (Double) a.value.getValue() % (Double) b.value.getValue();
-                resultType = "NUMBER";
+        }
+    }
+
+    // Compara los dos números de la cima y los saca.
+    private boolean compareNumbers(int op) {
+        OperandStack stack = executionStack;
+        if (stack.type(0) == ValueType.INTEGER && stack.type(1) == ValueType.INTEGER) {
+            long b = stack.popInteger();
+            return compare(op, stack.popInteger(), b);
+        }
+        double b = stack.popNumber();
+        return compare(op, stack.popNumber(), b);
+    }
+
+    static boolean compare(int op, long a, long b) {
+        return switch (op) {
+            case Opcode.GREATER -> a > b;
+            case Opcode.GREATER_EQUAL -> a >= b;
+            case Opcode.LESS -> a < b;
+            case Opcode.LESS_EQUAL -> a <= b;
+            case Opcode.EQUAL_EQUAL -> a == b;
+            default -> a != b;
+        };
+    }
+
+    // Comparación entre números; la igualdad es la de equals de Double, como en OperandStack.topEquals.
+    static boolean compare(int op, double a, double b) {
+        return switch (op) {
+            case Opcode.GREATER -> a > b;
+            case Opcode.GREATER_EQUAL -> a >= b;
+            case Opcode.LESS -> a < b;
+            case Opcode.LESS_EQUAL -> a <= b;
+            case Opcode.EQUAL_EQUAL -> Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+            default -> Double.doubleToLongBits(a) != Double.doubleToLongBits(b);
+        };
+    }
+
+    private void checkNumbers(int line) {
+        if (!ValueType.isNumeric(executionStack.type(0)) || !ValueType.isNumeric(executionStack.type(1))) {
+            throw new RuntimeError(line, "Los operandos deben ser números.");
+        }
+    }
+
+    // Como en Java, el operando derecho solo se revisa cuando el izquierdo
+    // no decide por sí solo el resultado (false para and, true para or).
+    private void checkBooleans(int line, boolean decisive) {
+        if (executionStack.type(1) != ValueType.BOOLEAN) {
+            throw new RuntimeError(line, "Los operandos deben ser booleanos.");
+        }
+        if (executionStack.type(0) != ValueType.BOOLEAN) {
+            if (executionStack.booleanAt(1) != decisive) {
+                throw new RuntimeError(line, "Los operandos deben ser booleanos.");
             }
-            case "and" -> result = (Boolean) a.value.getValue() && (Boolean) b.value.getValue();
-            case "or" -> result = (Boolean) a.value.getValue() || (Boolean) b.value.getValue();
-            case ">" -> result = (Double) a.value.getValue() > (Double) b.value.getValue();
-            case ">=" -> result = (Double) a.value.getValue() >= (Double) b.value.getValue();
-            case "<" -> result = (Double) a.value.getValue() < (Double) b.value.getValue();
-            case "<=" -> result = (Double) a.value.getValue() <= (Double) b.value.getValue();
-            case "==" -> result = a.value.getValue().equals(b.value.getValue());
-            case "!=" -> result = !a.value.getValue().equals(b.value.getValue());
+            executionStack.pop();
+            executionStack.pushBoolean(decisive);
+        }
+    }
 
+    private void concatenate(int line) {
+        if (executionStack.type(0) == ValueType.NULL || executionStack.type(1) == ValueType.NULL) {
+            throw new RuntimeError(line, "No se puede concatenar un valor nulo.");
         }
-        executionStack.push(new SymbolTable.Symbol(result.toString(), resultType, new SymbolTable.Value(null, result, a.value.getLine())));
+        executionStack.concat(2);
     }
 
+
+
     private void processPrint() {
         if (executionStack.isEmpty()) {
             throw new IllegalStateException("Nothing to print");
         }
 
-        SymbolTable.Symbol value = executionStack.pop();
-        if (value.type.equals("IDENTIFIER") && symbolTable.contains(value.lexeme)) {
-            System.out.print(symbolTable.get(value.lexeme).value.getValue());
-        } else {
-            System.out.print(value.value.getValue());
+        switch (executionStack.type(0)) {
+            case ValueType.NUMBER -> out.print(executionStack.popNumber());
+            case ValueType.INTEGER -> out.print(executionStack.popInteger());
+            case ValueType.BOOLEAN -> out.print(executionStack.popBoolean());
+            case ValueType.STRING -> out.print(executionStack.popString());
+            default -> {
+                out.print("null");
+                executionStack.pop();
+            }
         }
     }
 
-    private void processInput() {
+    // Guarda la siguiente línea de entrada en la variable referida en la cima.
+    void processInput(int line) {
         if (executionStack.isEmpty()) {
             throw new IllegalStateException("No variable to store input");
         }
 
-        SymbolTable.Symbol variable = executionStack.pop();
-        String input = scanner.nextLine();
-
-        Object value;
-        String type;
-        try {
-            value = Double.parseDouble(input);
-            type = "NUMBER";
-        } catch (NumberFormatException e) {
-            value = input;
-            type = "STRING";
+        if (executionStack.type(0) != ValueType.REFERENCE) {
+            throw new RuntimeError(line, "Destino de input inválido.");
+        }
+        int slot = executionStack.popReference();
+        // Lo impreso hasta aquí (por ejemplo, la pregunta) debe verse antes de leer.
+        out.flush();
+        String text = input.readLine();
+        if (text == null) {
+            throw new RuntimeError(line, "No hay más líneas de entrada.");
         }
 
-        symbolTable.put(variable.lexeme, new SymbolTable.Symbol(variable.lexeme, type, new SymbolTable.Value(variable.lexeme, value, variable.value.getLine())));
+        if (numeric(text)) {
+            try {
+                double value = Double.parseDouble(text);
+                if (ValueType.isInteger(value)) {
+                    frame.setInteger(slot, (long) value);
+                } else {
+                    frame.setNumber(slot, value);
+                }
+                return;
+            } catch (NumberFormatException e) {
+                // Por ejemplo "1a": se guarda como cadena.
+            }
+        }
+        frame.setString(slot, text);
     }
 
-    private void processProgram() {
-        SymbolTable.Symbol value = executionStack.pop();
-        functionTable.put(value.lexeme, value);
+    // Si line puede ser un número para Double.parseDouble, que ignora los
+    // espacios y acepta signo, dígito, punto, NaN o Infinity al inicio. Evita
+    // lanzar una excepción por cada input que es texto.
+    private static boolean numeric(String line) {
+        int i = 0;
+        while (i < line.length() && line.charAt(i) <= ' ') i++;
+        if (i == line.length()) return false;
+        char c = line.charAt(i);
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'N' || c == 'I';
     }
 
+    // Vuelca las variables de la última ejecución en la tabla de símbolos.
+    // Solo se usa para los reportes; la ejecución no consulta la tabla.
     public SymbolTable getSymbolTable() {
+        for (int slot = 0; slot < variables.length; slot++) {
+            String name = variables[slot];
+            if (name == null) continue;
+            SymbolTable.Symbol previous = symbolTable.get(name);
+            int line = previous != null ? previous.value.getLine() : 0;
+            symbolTable.put(name, new SymbolTable.Symbol(name, ValueType.name(frame.type(slot)), new SymbolTable.Value(name, frame.value(slot), line)));
+        }
         return symbolTable;
     }
 
     public FunctionTable getFunctionTable() {
         return functionTable;
     }
-}
\ No newline at end of file
+}
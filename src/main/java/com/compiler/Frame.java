@@ -0,0 +1,63 @@
+package com.compiler;
+
+// Variables del programa en ejecución, indexadas por la casilla que les
+// asigna el AnalizadorSemantico. Usa la misma representación que OperandStack.
+public class Frame {
+    final long[] values;
+    final byte[] types;
+    final String[] strings;
+
+    public Frame(int size) {
+        values = new long[size];
+        types = new byte[size];
+        strings = new String[size];
+    }
+
+    public int size() {
+        return types.length;
+    }
+
+    public byte type(int slot) {
+        return types[slot];
+    }
+
+    // Valor de la casilla como objeto, para reportes y la tabla de símbolos.
+    // Los enteros se muestran como Double, igual que los demás números.
+    public Object value(int slot) {
+        return switch (types[slot]) {
+            case ValueType.NUMBER -> Double.longBitsToDouble(values[slot]);
+            case ValueType.INTEGER -> (double) values[slot];
+            case ValueType.BOOLEAN -> values[slot] != 0;
+            case ValueType.STRING -> strings[slot];
+            default -> null;
+        };
+    }
+
+    // Número o entero de la casilla, como double.
+    public double number(int slot) {
+        return types[slot] == ValueType.INTEGER ? (double) values[slot] : Double.longBitsToDouble(values[slot]);
+    }
+
+    public void setNumber(int slot, double value) {
+        types[slot] = ValueType.NUMBER;
+        values[slot] = Double.doubleToRawLongBits(value);
+        strings[slot] = null;
+    }
+
+    public void setInteger(int slot, long value) {
+        types[slot] = ValueType.INTEGER;
+        values[slot] = value;
+        strings[slot] = null;
+    }
+
+    public void setBoolean(int slot, boolean value) {
+        types[slot] = ValueType.BOOLEAN;
+        values[slot] = value ? 1 : 0;
+        strings[slot] = null;
+    }
+
+    public void setString(int slot, String value) {
+        types[slot] = ValueType.STRING;
+        strings[slot] = value;
+    }
+}
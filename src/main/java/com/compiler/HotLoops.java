@@ -0,0 +1,57 @@
+package com.compiler;
+
+// Contadores de vueltas de los ciclos de una ejecución. Execution avisa de
+// cada salto hacia atrás (el JUMP del final de un while o el
+// INCREMENT_COMPARE_JUMP de uno rotado); cuando un ciclo da THRESHOLD vueltas
+// se compila con LoopCompiler y el resto de sus vueltas corren en la JVM. Los
+// programas cortos nunca llegan al umbral y no pagan la compilación.
+class HotLoops {
+    static final int THRESHOLD = 2000;
+    // Compilaciones por ciclo, por si los tipos de sus variables cambian.
+    private static final int ATTEMPTS = 3;
+
+    private final Bytecode bytecode;
+    private final OutputSink out;
+    // Por pc del salto hacia atrás; se crean con el primero.
+    private int[] counts;
+    private CompiledLoop[] loops;
+    private byte[] attempts;
+
+    HotLoops(Bytecode bytecode, OutputSink out) {
+        this.bytecode = bytecode;
+        this.out = out;
+    }
+
+    // Salto de pc a target < pc: devuelve el pc donde sigue el intérprete.
+    int backEdge(int pc, int target, Frame frame) {
+        if (counts == null) counts = new int[bytecode.code.length];
+        if (++counts[pc] < THRESHOLD) return target;
+        return enter(pc, target, frame);
+    }
+
+    private int enter(int pc, int target, Frame frame) {
+        if (loops == null) {
+            loops = new CompiledLoop[bytecode.code.length];
+            attempts = new byte[bytecode.code.length];
+        }
+        CompiledLoop loop = loops[pc];
+        if (loop == null || !loop.accepts(frame)) {
+            loop = attempts[pc]++ < ATTEMPTS
+                    ? LoopCompiler.compile(bytecode, target, pc + Opcode.length(bytecode.code[pc]), frame)
+                    : null;
+            if (loop == null) {
+                // No se vuelve a intentar.
+                counts[pc] = Integer.MIN_VALUE;
+                return target;
+            }
+            loops[pc] = loop;
+        }
+        int resume = loop.run(frame, out);
+        if (resume >= loop.start && resume < loop.end) {
+            // Falló una suposición: el intérprete termina la vuelta y se vuelve a contar.
+            counts[pc] = 0;
+            Metrics.count("execution.deoptimizations", 1);
+        }
+        return resume;
+    }
+}
@@ -0,0 +1,539 @@
+package com.compiler;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.compiler.TokenType.*;
+
+// Compilación de un código fuente que se edita (por ejemplo, en un editor),
+// sin volver a pasar todo el archivo por el léxico, el análisis y el VCI en
+// cada cambio.
+//
+// El código se guarda partido en sentencias: cada ; o } que cierra un bloque
+// del nivel principal (si no le sigue un else), siempre que ahí el VCI no
+// tenga nada pendiente. Cada sentencia guarda sus tokens y su fragmento del
+// VCI, con las líneas contadas desde su inicio y las direcciones desde el
+// inicio del fragmento, así que no cambian cuando se edita otra parte.
+//
+// Una edición vuelve a escanear desde el inicio de la sentencia anterior a la
+// que la contiene (un punto fuera de cadenas y comentarios, donde el léxico no
+// depende de lo anterior) hasta llegar al inicio de una sentencia vieja que
+// no cambió, y reemplaza las sentencias de en medio. El análisis semántico
+// solo revisa las sentencias nuevas si declaran las mismas variables que las
+// que reemplazan; si no, revisa desde ahí hasta el final, sin volver a
+// escanear. El VCI completo se arma juntando los fragmentos cuando se pide.
+//
+// El resultado es el mismo que el de Compilador.compile sobre el código
+// completo.
+public class IncrementalCompilation {
+    private final NameTable names = new NameTable();
+    private final boolean optimize;
+    private final StringBuilder source;
+    private final List<Statement> statements = new ArrayList<>();
+    // Casilla de cada nombre de la NameTable (-1 si no está declarado) y nombre de cada casilla.
+    private int[] slots = new int[0];
+    private int[] declarations = new int[16];
+    private final List<String> variables = new ArrayList<>();
+    // Sentencia con el primer error semántico, o null. Como en
+    // AnalizadorSemantico, las sentencias que siguen no se analizan.
+    private Statement failed;
+    // Errores del léxico en todas las sentencias.
+    private int lexicalErrors;
+    // VCI completo, hasta la siguiente edición.
+    private TokenBuffer vci;
+    private int relexed;
+    // Sentencia donde empezó la última edición y su posición en el código.
+    private int cursor;
+    private int cursorStart;
+
+    private static final class Statement {
+        // Caracteres desde el final de la sentencia anterior hasta el final de
+        // su último token, y saltos de línea hasta la línea de ese token.
+        final int length;
+        final int lines;
+        final TokenBuffer tokens;
+        final TokenBuffer vci;
+        // Fila del token de la que salió cada identificador del VCI, o -1.
+        final int[] origins;
+        // VCI.state() antes y después de la sentencia.
+        final int entry;
+        final int exit;
+        // Errores del léxico, con la línea contada desde la sentencia.
+        final int[] errorLines;
+        final String[] errorMessages;
+        // Error del VCI en la última sentencia, si lo hubo.
+        final RuntimeException broken;
+        // Nombres que declara con var, en orden, y si declara un programa.
+        final int[] declared;
+        final boolean programs;
+        // Casillas declaradas antes de la sentencia y, si falló el análisis, el error.
+        int firstSlot;
+        int errorRow;
+        String error;
+
+        Statement(int length, TokenBuffer tokens, TokenBuffer vci, int[] origins, int entry, int exit, int[] errorLines, String[] errorMessages,
+                  RuntimeException broken) {
+            this.length = length;
+            this.lines = tokens.line(tokens.size() - 1) - 1;
+            this.tokens = tokens;
+            this.vci = vci;
+            this.origins = origins;
+            this.entry = entry;
+            this.exit = exit;
+            this.errorLines = errorLines;
+            this.errorMessages = errorMessages;
+            this.broken = broken;
+            int[] names = new int[0];
+            boolean programs = false;
+            for (int row = 0; row < tokens.size(); row++) {
+                if (tokens.type(row) == PROGRAM) programs = true;
+                if (tokens.type(row) == VAR && row + 1 < tokens.size() && tokens.type(row + 1) == IDENTIFIER) {
+                    names = Arrays.copyOf(names, names.length + 1);
+                    names[names.length - 1] = tokens.name(row + 1);
+                }
+            }
+            this.declared = names;
+            this.programs = programs;
+        }
+    }
+
+    // Error del léxico y la fila del token que le sigue.
+    private record LexicalError(int row, int line, String message) {}
+
+    public IncrementalCompilation(String source, boolean optimize) {
+        this.source = new StringBuilder(source);
+        this.optimize = optimize;
+        List<Statement> made = new ArrayList<>();
+        relex(0, 0, 0, 0, 0, made);
+        statements.addAll(made);
+        for (Statement statement : made) lexicalErrors += statement.errorLines.length;
+        analyze(0, 0);
+    }
+
+    public String source() {
+        return source.toString();
+    }
+
+    // Tokens que escaneó la última edición (o la compilación inicial).
+    public int relexedTokens() {
+        return relexed;
+    }
+
+    public boolean hadErrors() {
+        return failed != null || lexicalErrors > 0;
+    }
+
+    // Reemplaza length caracteres desde offset por text.
+    public void edit(int offset, int length, String text) {
+        if (offset < 0 || length < 0 || offset + length > source.length()) {
+            throw new IllegalArgumentException("Edición fuera del código fuente: " + offset + ", " + length);
+        }
+        // La sentencia que contiene offset y, para volver a decidir si termina
+        // donde terminaba (un else agregado la une con la siguiente), la anterior.
+        // Se busca desde la edición anterior, que suele estar cerca.
+        int index = Math.min(cursor, statements.size() - 1);
+        int start = cursor == index ? cursorStart : 0;
+        if (cursor != index) index = 0;
+        while (index > 0 && start > offset) start -= statements.get(--index).length;
+        while (index < statements.size() - 1 && start + statements.get(index).length <= offset) {
+            start += statements.get(index++).length;
+        }
+        if (index > 0) start -= statements.get(--index).length;
+        cursor = index;
+        cursorStart = start;
+
+        if (text.length() == length) {
+            // Sin mover el resto del código.
+            for (int i = 0; i < length; i++) source.setCharAt(offset + i, text.charAt(i));
+        } else {
+            source.replace(offset, offset + length, text);
+        }
+        List<Statement> made = new ArrayList<>();
+        int end = relex(index, start, statements.get(index).entry, offset + text.length(), text.length() - length, made);
+        List<Statement> replaced = statements.subList(index, end);
+
+        boolean registered = failed == null && sameDeclarations(replaced, made);
+        int from = index;
+        if (failed != null) {
+            int position = statements.indexOf(failed);
+            if (position < index) from = position;
+        }
+        int firstSlot = statements.get(from).firstSlot;
+        for (Statement statement : replaced) lexicalErrors -= statement.errorLines.length;
+        for (Statement statement : made) lexicalErrors += statement.errorLines.length;
+        replaced.clear();
+        statements.addAll(index, made);
+        vci = null;
+
+        if (registered) {
+            // Las mismas declaraciones en el mismo orden: las casillas no
+            // cambian y basta con revisar las sentencias nuevas.
+            for (Statement statement : made) {
+                statement.firstSlot = firstSlot;
+                if (!analyze(statement, true, new HashSet<>())) {
+                    failed = statement;
+                    break;
+                }
+                firstSlot += statement.declared.length;
+            }
+        } else {
+            analyze(from, firstSlot);
+        }
+        Metrics.count("incremental.edits", 1);
+        Metrics.count("incremental.relexed_tokens", relexed);
+    }
+
+    // Vuelve a escanear desde la sentencia first, que empieza en offset con
+    // el estado state del VCI, hasta el inicio de una sentencia vieja que no
+    // cambió (después de end, el final de la edición; delta es lo que cambió
+    // el largo del código) o hasta el final. Agrega las sentencias nuevas a
+    // made y devuelve la primera sentencia vieja que se conserva.
+    private int relex(int first, int offset, int state, int end, int delta, List<Statement> made) {
+        List<LexicalError> errors = new ArrayList<>();
+        TokenBuffer scratch = new TokenBuffer(names, 64);
+        AnalizadorLexico lexer = new AnalizadorLexico(new SourceReader(source, offset), new ErrorReporter() {
+            @Override
+            public void error(int line, String message) {
+                errors.add(new LexicalError(scratch.size(), line, message));
+            }
+        });
+        relexed = 0;
+        int old = first;
+        int oldStart = offset;
+        int start = offset;
+        int startLine = 1;
+        int depth = 0;
+        // Fila del ; o } con el que puede terminar la sentencia, y dónde termina.
+        int candidate = -1;
+        int candidateEnd = 0;
+        boolean more = true;
+        while (more) {
+            more = lexer.fill(scratch, scratch.size() + 1);
+            int row = scratch.size() - 1;
+            TokenType type = scratch.type(row);
+            if (candidate >= 0 && type == ELSE) {
+                candidate = -1;
+            } else if (candidate >= 0) {
+                int endLine = scratch.line(candidate);
+                Statement statement = statement(scratch, candidate + 1, candidateEnd - start, startLine, state, errors, false);
+                if (statement != null) {
+                    made.add(statement);
+                    relexed += candidate + 1;
+                    scratch.retain(candidate + 1);
+                    retain(errors, candidate + 1);
+                    row -= candidate + 1;
+                    start = candidateEnd;
+                    startLine = endLine;
+                    state = statement.exit;
+                    if (start >= end) {
+                        while (old < statements.size() && oldStart < start - delta) oldStart += statements.get(old++).length;
+                        if (old < statements.size() && oldStart == start - delta && statements.get(old).entry == state) return old;
+                    }
+                }
+                candidate = -1;
+            }
+            if (type == LEFT_BRACE) {
+                depth++;
+            } else if (type == RIGHT_BRACE && depth > 0) {
+                depth--;
+            }
+            if ((type == SEMICOLON || type == RIGHT_BRACE) && depth == 0) {
+                candidate = row;
+                candidateEnd = offset + lexer.offset();
+            }
+        }
+        made.add(statement(scratch, scratch.size(), source.length() - start, startLine, state, errors, true));
+        relexed += scratch.size();
+        return statements.size();
+    }
+
+    // La sentencia con las primeras count filas de scratch, o null si el VCI
+    // queda con algo pendiente después de ellas y no puede terminar ahí.
+    private Statement statement(TokenBuffer scratch, int count, int length, int startLine, int state,
+                                List<LexicalError> errors, boolean last) {
+        TokenBuffer tokens = new TokenBuffer(names, count);
+        tokens.addAll(scratch, 0, count);
+        tokens.relocate(0, 1 - startLine, 0);
+        // El VCI copia la casilla de cada identificador: con -3 - fila se sabe
+        // de qué token salió cada uno y el análisis puede llenarlos después.
+        for (int row = 0; row < count; row++) {
+            if (tokens.type(row) == IDENTIFIER) tokens.setSlot(row, -3 - row);
+        }
+        VCI generator = new VCI(names);
+        generator.restore(state);
+        RuntimeException broken = null;
+        try {
+            generator.generate(tokens, 0, count, true);
+            if (last) {
+                generator.finish();
+            } else if (!generator.clean()) {
+                return null;
+            }
+        } catch (RuntimeException e) {
+            // Bloques mal cerrados: el VCI falla igual que en Compilador.compile,
+            // y el resto del código queda en una sola sentencia.
+            if (!last) return null;
+            broken = e;
+        }
+        TokenBuffer generated = broken == null ? generator.getBuffer() : new TokenBuffer(names, 1);
+        TokenBuffer vci = new TokenBuffer(names, Math.max(generated.size(), 1));
+        vci.addAll(generated, 0, generated.size());
+        int[] origins = new int[vci.size()];
+        for (int row = 0; row < vci.size(); row++) {
+            origins[row] = vci.type(row) == IDENTIFIER && vci.slot(row) <= -3 ? -3 - vci.slot(row) : -1;
+            if (origins[row] >= 0) vci.setSlot(row, -2);
+        }
+        for (int row = 0; row < count; row++) {
+            if (tokens.type(row) == IDENTIFIER) tokens.setSlot(row, -2);
+        }
+
+        int errorCount = 0;
+        while (errorCount < errors.size() && errors.get(errorCount).row() < count) errorCount++;
+        int[] errorLines = new int[errorCount];
+        String[] errorMessages = new String[errorCount];
+        for (int e = 0; e < errorCount; e++) {
+            errorLines[e] = errors.get(e).line() - startLine + 1;
+            errorMessages[e] = errors.get(e).message();
+        }
+        return new Statement(length, tokens, vci, origins, state, generator.state(), errorLines, errorMessages, broken);
+    }
+
+    // Descarta los errores de las primeras count filas y recorre los demás.
+    private static void retain(List<LexicalError> errors, int count) {
+        int kept = 0;
+        for (LexicalError error : errors) {
+            if (error.row() >= count) errors.set(kept++, new LexicalError(error.row() - count, error.line(), error.message()));
+        }
+        errors.subList(kept, errors.size()).clear();
+    }
+
+    private static boolean sameDeclarations(List<Statement> before, List<Statement> after) {
+        List<Integer> names = new ArrayList<>();
+        for (Statement statement : before) {
+            if (statement.programs) return false;
+            for (int name : statement.declared) names.add(name);
+        }
+        int index = 0;
+        for (Statement statement : after) {
+            if (statement.programs) return false;
+            for (int name : statement.declared) {
+                if (index == names.size() || names.get(index++) != name) return false;
+            }
+        }
+        return index == names.size();
+    }
+
+    // Analiza desde la sentencia from, olvidando las casillas desde firstSlot.
+    private void analyze(int from, int firstSlot) {
+        for (int slot = firstSlot; slot < variables.size(); slot++) {
+            slots[declarations[slot]] = -1;
+        }
+        variables.subList(firstSlot, variables.size()).clear();
+        Set<Integer> programs = new HashSet<>();
+        for (int index = 0; index < from; index++) {
+            Statement statement = statements.get(index);
+            if (statement.programs) programs.addAll(programNames(statement));
+        }
+        failed = null;
+        for (int index = from; index < statements.size(); index++) {
+            Statement statement = statements.get(index);
+            statement.firstSlot = variables.size();
+            if (!analyze(statement, false, programs)) {
+                failed = statement;
+                return;
+            }
+        }
+    }
+
+    // Analiza una sentencia como AnalizadorSemantico.step, con las casillas
+    // de las sentencias anteriores (las menores que firstSlot). Si registered
+    // las declaraciones de la sentencia ya tienen su casilla y solo se revisa
+    // que cada variable se use después de declararse.
+    private boolean analyze(Statement statement, boolean registered, Set<Integer> programs) {
+        TokenBuffer tokens = statement.tokens;
+        statement.error = null;
+        int declared = statement.firstSlot;
+        int i = 0;
+        while (i < tokens.size()) {
+            TokenType type = tokens.type(i);
+            TokenType next = i + 1 < tokens.size() ? tokens.type(i + 1) : null;
+            if (type == VAR) {
+                if (next != IDENTIFIER) {
+                    return fail(statement, i, "Expect variable name after 'var'.");
+                }
+                int name = tokens.name(i + 1);
+                ensureCapacity(name);
+                if (registered ? slots[name] != declared : slots[name] >= 0) {
+                    return fail(statement, i, "Variable already declared: " + tokens.lexeme(i + 1));
+                }
+                if (!registered) declare(name, tokens.lexeme(i + 1));
+                declared++;
+            } else if (type == PROGRAM) {
+                if (next != IDENTIFIER) {
+                    return fail(statement, i, "Expect program name after 'program'.");
+                } else if (!programs.add(tokens.name(i + 1))) {
+                    return fail(statement, i, "Program already declared: " + tokens.lexeme(i + 1));
+                }
+                i += 2;
+                continue;
+            } else if (type == IDENTIFIER) {
+                int name = tokens.name(i);
+                ensureCapacity(name);
+                if (slots[name] < 0 || slots[name] >= declared) {
+                    return fail(statement, i, "Undefined variable: " + tokens.lexeme(i));
+                }
+                tokens.setSlot(i, slots[name]);
+            }
+            i++;
+        }
+        TokenBuffer vci = statement.vci;
+        for (int row = 0; row < vci.size(); row++) {
+            if (statement.origins[row] >= 0) vci.setSlot(row, tokens.slot(statement.origins[row]));
+        }
+        return true;
+    }
+
+    private static boolean fail(Statement statement, int row, String message) {
+        statement.errorRow = row;
+        statement.error = message;
+        return false;
+    }
+
+    private void declare(int name, String lexeme) {
+        if (variables.size() == declarations.length) declarations = Arrays.copyOf(declarations, declarations.length * 2);
+        declarations[variables.size()] = name;
+        slots[name] = variables.size();
+        variables.add(lexeme);
+    }
+
+    private void ensureCapacity(int name) {
+        if (name >= slots.length) {
+            int size = slots.length;
+            slots = Arrays.copyOf(slots, Math.max(name + 1, size * 2));
+            Arrays.fill(slots, size, slots.length, -1);
+        }
+    }
+
+    private static List<Integer> programNames(Statement statement) {
+        List<Integer> result = new ArrayList<>();
+        TokenBuffer tokens = statement.tokens;
+        for (int row = 0; row + 1 < tokens.size(); row++) {
+            if (tokens.type(row) == PROGRAM && tokens.type(row + 1) == IDENTIFIER) result.add(tokens.name(++row));
+        }
+        return result;
+    }
+
+    // El VCI completo: los fragmentos uno tras otro, con sus líneas y
+    // direcciones recorridas. Con errores semánticos puede tener
+    // identificadores sin casilla.
+    public TokenBuffer vci() {
+        if (vci != null) return vci;
+        int rows = 0;
+        for (Statement statement : statements) {
+            if (statement.broken != null) throw statement.broken;
+            rows += statement.vci.size();
+        }
+        TokenBuffer result = new TokenBuffer(names, Math.max(rows, 1));
+        int line = 1;
+        for (Statement statement : statements) {
+            int from = result.size();
+            result.addAll(statement.vci, 0, statement.vci.size());
+            result.relocate(from, line - 1, from);
+            line += statement.lines;
+        }
+        return vci = result;
+    }
+
+    // Reporta los errores del código actual en el orden de Compilador.compile:
+    // todos los del léxico y después el primero del análisis.
+    public void report(ErrorReporter errors) {
+        int line = 1;
+        int failedLine = 1;
+        for (Statement statement : statements) {
+            for (int e = 0; e < statement.errorLines.length; e++) {
+                errors.error(line + statement.errorLines[e] - 1, statement.errorMessages[e]);
+            }
+            if (statement == failed) failedLine = line;
+            line += statement.lines;
+        }
+        if (failed != null) {
+            Token token = failed.tokens.token(failed.errorRow);
+            token.line += failedLine - 1;
+            errors.error(token, failed.error);
+        }
+    }
+
+    // Reporta los errores en errors y devuelve el programa, o null si el
+    // análisis semántico falló, como Compilador.compile.
+    public CompiledProgram program(ErrorReporter errors) {
+        int before = errors.errorCount();
+        report(errors);
+        if (failed != null) return null;
+        SymbolTable symbolTable = new SymbolTable();
+        FunctionTable functionTable = new FunctionTable();
+        // Última línea en la que aparece cada variable, como en AnalizadorSemantico.finish.
+        int[] lastLines = new int[variables.size()];
+        int line = 1;
+        for (Statement statement : statements) {
+            TokenBuffer tokens = statement.tokens;
+            for (int row = 0; row < tokens.size(); row++) {
+                if (tokens.type(row) == PROGRAM && row + 1 < tokens.size() && tokens.type(row + 1) == IDENTIFIER) {
+                    String identifier = tokens.lexeme(++row);
+                    functionTable.put(identifier, new SymbolTable.Symbol(identifier, "PROGRAM",
+                            new SymbolTable.Value(identifier, null, line + tokens.line(row) - 1)));
+                } else if (tokens.type(row) == IDENTIFIER && tokens.slot(row) >= 0) {
+                    lastLines[tokens.slot(row)] = line + tokens.line(row) - 1;
+                }
+            }
+            line += statement.lines;
+        }
+        for (int v = 0; v < variables.size(); v++) {
+            String name = variables.get(v);
+            symbolTable.put(name, new SymbolTable.Symbol(name, "IDENTIFIER", new SymbolTable.Value(name, null, lastLines[v])));
+        }
+
+        TokenBuffer vci = vci();
+        Bytecode bytecode = new BytecodeGenerator(vci, variables, errors).generate();
+        if (optimize && errors.errorCount() == before) bytecode = new BytecodeOptimizer(bytecode).optimize();
+        Map<String, Integer> addresses = new LinkedHashMap<>();
+        for (String id : functionTable.getTable().keySet()) {
+            int name = names.intern(id);
+            int address = -1;
+            for (int row = 0; row < vci.size() && address < 0; row++) {
+                if (vci.name(row) == name) address = row;
+            }
+            addresses.put(id, address);
+        }
+        return new CompiledProgram(bytecode, symbolTable, functionTable, addresses);
+    }
+
+    // Lee el código fuente desde una posición, sin copiarlo completo.
+    private static final class SourceReader extends Reader {
+        private final StringBuilder source;
+        private int position;
+
+        SourceReader(StringBuilder source, int position) {
+            this.source = source;
+            this.position = position;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position >= source.length()) return -1;
+            int count = Math.min(length, source.length() - position);
+            source.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
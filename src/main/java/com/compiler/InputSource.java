@@ -0,0 +1,74 @@
+package com.compiler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+
+// De dónde lee input un programa, una línea a la vez. readLine() regresa null
+// cuando ya no hay más entrada.
+public interface InputSource {
+    String readLine();
+
+    // Entrada estándar.
+    static InputSource console() {
+        return of(new InputStreamReader(System.in));
+    }
+
+    static InputSource of(Reader reader) {
+        BufferedReader lines = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        return () -> {
+            try {
+                return lines.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    static InputSource of(String text) {
+        return new Text(text);
+    }
+
+    // El archivo completo se lee de una vez; cada ejecución solo avanza la posición.
+    static InputSource of(Path file) throws IOException {
+        return new Text(Files.readString(file));
+    }
+
+    static InputSource of(ByteBuffer bytes, Charset charset) {
+        return new Text(charset.decode(bytes.duplicate()));
+    }
+
+    // Cada elemento de la cola es una línea; se consume al leerla.
+    static InputSource of(Queue<String> lines) {
+        return lines::poll;
+    }
+
+    // Líneas de un texto en memoria. Separa en \n, \r\n o \r, como BufferedReader.
+    final class Text implements InputSource {
+        private final CharSequence text;
+        private int position = 0;
+
+        private Text(CharSequence text) {
+            this.text = text;
+        }
+
+        @Override
+        public String readLine() {
+            int length = text.length();
+            if (position >= length) return null;
+            int start = position;
+            int end = start;
+            while (end < length && text.charAt(end) != '\n' && text.charAt(end) != '\r') end++;
+            position = end + 1;
+            if (end < length && text.charAt(end) == '\r' && position < length && text.charAt(position) == '\n') position++;
+            return text.subSequence(start, end).toString();
+        }
+    }
+}
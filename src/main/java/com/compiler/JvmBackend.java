@@ -0,0 +1,558 @@
+package com.compiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+// Backend que traduce el Bytecode a un archivo .class con el programa completo
+// dentro de main. Cada variable se vuelve una variable local de la JVM: double
+// si siempre guarda números, int si siempre guarda booleanos y Object si no se
+// puede saber (por ejemplo después de input). Los saltos del VCI se vuelven
+// saltos nativos y print/input llamadas directas a AotRuntime.
+public class JvmBackend {
+    // Tipo estático de un valor.
+    private static final byte UNKNOWN = 0;
+    private static final byte NUM = 1;
+    private static final byte BOOL = 2;
+    private static final byte STR = 3;
+    private static final byte DYN = 4;
+    private static final byte REF = 5;
+
+    // Representación de un valor en la pila de la JVM.
+    private static final byte AS_DOUBLE = 1;
+    private static final byte AS_INT = 2;
+    private static final byte AS_OBJECT = 3;
+    private static final byte AS_CONCAT = 4;
+
+    private static final String RUNTIME = "com/compiler/AotRuntime";
+
+    private final Bytecode bytecode;
+    private final String className;
+    private final int[] code;
+    private final byte[] kinds;
+    private final boolean[] targets;
+    private final byte[] resultKind;
+    private final byte[] convert;
+    private final byte[] mode;
+    private final int[] slot;
+    private final boolean[] fused;
+    private boolean changed;
+
+    public JvmBackend(Bytecode bytecode, String className) {
+        this.bytecode = bytecode;
+        this.className = className;
+        this.code = bytecode.code;
+        this.kinds = new byte[bytecode.variables.length];
+        this.targets = new boolean[code.length + 1];
+        this.resultKind = new byte[code.length];
+        this.convert = new byte[code.length];
+        this.mode = new byte[code.length];
+        this.slot = new int[code.length];
+        this.fused = new boolean[code.length];
+    }
+
+    // Nombre de clase a partir del nombre del programa, o el indicado si no hay.
+    public static String className(Bytecode bytecode, String fallback) {
+        String name = fallback;
+        for (int pc = 0; pc < bytecode.code.length; pc += Opcode.length(bytecode.code[pc])) {
+            if (bytecode.code[pc] == Opcode.PROGRAM) {
+                name = bytecode.strings[bytecode.code[pc + 1]];
+                break;
+            }
+        }
+        StringBuilder builder = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            builder.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        if (builder.isEmpty() || !Character.isJavaIdentifierStart(builder.charAt(0))) builder.insert(0, '_');
+        return builder.toString();
+    }
+
+    public byte[] generate() {
+        analyze();
+        try {
+            return emit(false);
+        } catch (IllegalStateException e) {
+            if (!e.getMessage().startsWith("Salto fuera de rango")) throw e;
+            return emit(true);
+        }
+    }
+
+    // La clase del programa en directory, con AotRuntime en
+    // directory/com/compiler para que corra con java -cp directory.
+    public Path writeClass(Path directory) throws IOException {
+        byte[] program = generate();
+        Path runtimeFile = directory.resolve(RUNTIME + ".class");
+        Files.createDirectories(runtimeFile.getParent());
+        try (InputStream runtime = runtime()) {
+            Files.copy(runtime, runtimeFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path file = directory.resolve(className + ".class");
+        Files.write(file, program);
+        return file;
+    }
+
+    // Jar ejecutable con la clase del programa y AotRuntime.
+    public Path writeJar(Path jar) throws IOException {
+        byte[] program = generate();
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, className);
+        if (jar.getParent() != null) Files.createDirectories(jar.getParent());
+        try (OutputStream file = Files.newOutputStream(jar);
+             JarOutputStream out = new JarOutputStream(file, manifest);
+             InputStream runtime = runtime()) {
+            out.putNextEntry(new JarEntry(className + ".class"));
+            out.write(program);
+            out.closeEntry();
+            out.putNextEntry(new JarEntry(RUNTIME + ".class"));
+            runtime.transferTo(out);
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    private static InputStream runtime() throws IOException {
+        InputStream runtime = AotRuntime.class.getResourceAsStream("AotRuntime.class");
+        if (runtime == null) throw new IOException("No se encontró AotRuntime.class");
+        return runtime;
+    }
+
+    // Inferencia de tipos de las variables. Una variable es numérica o booleana
+    // solo si todas sus asignaciones lo son y la primera ocurre, antes de
+    // cualquier salto, sin que se lea antes; en otro caso puede valer null.
+    private void analyze() {
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (Opcode.isJump(code[pc])) targets[code[pc + 1]] = true;
+        }
+        boolean[] assigned = definitelyAssigned();
+        for (int v = 0; v < kinds.length; v++) kinds[v] = assigned[v] ? UNKNOWN : DYN;
+        do {
+            changed = false;
+            simulate(false);
+        } while (changed);
+        for (int v = 0; v < kinds.length; v++) {
+            if (kinds[v] == UNKNOWN) kinds[v] = DYN;
+        }
+        simulate(true);
+    }
+
+    private boolean[] definitelyAssigned() {
+        boolean[] assigned = new boolean[kinds.length];
+        boolean[] read = new boolean[kinds.length];
+        int[] references = new int[16];
+        int top = 0;
+        for (int pc = 0; pc < code.length && !targets[pc]; pc += Opcode.length(code[pc])) {
+            int opcode = code[pc];
+            if (Opcode.isJump(opcode)) break;
+            switch (opcode) {
+                case Opcode.LOAD -> read[code[pc + 1]] = true;
+                case Opcode.REFERENCE -> {
+                    if (top == references.length) references = java.util.Arrays.copyOf(references, top * 2);
+                    references[top++] = code[pc + 1];
+                }
+                case Opcode.STORE, Opcode.INPUT -> {
+                    if (top > 0) {
+                        int v = references[--top];
+                        if (!read[v]) assigned[v] = true;
+                    }
+                }
+                default -> {}
+            }
+        }
+        return assigned;
+    }
+
+    // Recorre el código simulando la pila con tipos estáticos. En la pasada
+    // final registra cómo emitir cada instrucción y qué conversiones aplicar.
+    private void simulate(boolean last) {
+        byte[] stackKind = new byte[16];
+        int[] stackPc = new int[16];
+        int[] stackSlot = new int[16];
+        int top = 0;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (targets[pc]) top = 0;
+            if (top + 1 >= stackKind.length) {
+                stackKind = java.util.Arrays.copyOf(stackKind, top * 2);
+                stackPc = java.util.Arrays.copyOf(stackPc, top * 2);
+                stackSlot = java.util.Arrays.copyOf(stackSlot, top * 2);
+            }
+            int opcode = code[pc];
+            byte result = -1;
+            switch (opcode) {
+                case Opcode.PUSH_NUMBER -> result = NUM;
+                case Opcode.PUSH_STRING -> result = STR;
+                case Opcode.PUSH_TRUE, Opcode.PUSH_FALSE -> result = BOOL;
+                case Opcode.PUSH_NULL -> result = DYN;
+                case Opcode.LOAD -> result = kinds[code[pc + 1]];
+                case Opcode.REFERENCE -> {
+                    stackKind[top] = REF;
+                    stackPc[top] = pc;
+                    stackSlot[top++] = code[pc + 1];
+                }
+                case Opcode.STORE -> {
+                    checkDepth(top, 2, pc);
+                    int value = --top;
+                    int reference = --top;
+                    if (stackKind[reference] != REF) {
+                        slot[pc] = -1;
+                        if (last) require(stackPc[value], stackKind[value], AS_OBJECT);
+                        break;
+                    }
+                    int v = stackSlot[reference];
+                    slot[pc] = v;
+                    if (stackKind[value] != UNKNOWN) widen(v, stackKind[value]);
+                    if (last) require(stackPc[value], stackKind[value], natural(kinds[v]));
+                }
+                case Opcode.INPUT -> {
+                    checkDepth(top, 1, pc);
+                    int reference = --top;
+                    slot[pc] = stackKind[reference] == REF ? stackSlot[reference] : -1;
+                    if (slot[pc] >= 0) widen(slot[pc], DYN);
+                }
+                case Opcode.POP, Opcode.PRINT -> {
+                    checkDepth(top, 1, pc);
+                    top--;
+                    mode[pc] = natural(stackKind[top]);
+                }
+                case Opcode.ADD -> {
+                    checkDepth(top, 2, pc);
+                    byte b = stackKind[--top];
+                    byte a = stackKind[--top];
+                    if (a == NUM && b == NUM) {
+                        result = NUM;
+                        mode[pc] = AS_DOUBLE;
+                    } else {
+                        if (last) {
+                            require(stackPc[top], a, AS_OBJECT);
+                            require(stackPc[top + 1], b, AS_OBJECT);
+                        }
+                        if (a == STR || b == STR) {
+                            result = STR;
+                            mode[pc] = AS_CONCAT;
+                        } else {
+                            result = a == UNKNOWN || b == UNKNOWN ? UNKNOWN : DYN;
+                            mode[pc] = AS_OBJECT;
+                        }
+                    }
+                }
+                case Opcode.SUB, Opcode.MUL, Opcode.DIV, Opcode.MOD,
+                     Opcode.GREATER, Opcode.GREATER_EQUAL, Opcode.LESS, Opcode.LESS_EQUAL -> {
+                    checkDepth(top, 2, pc);
+                    top -= 2;
+                    if (last) {
+                        require(stackPc[top], stackKind[top], AS_DOUBLE);
+                        require(stackPc[top + 1], stackKind[top + 1], AS_DOUBLE);
+                    }
+                    mode[pc] = AS_DOUBLE;
+                    if (opcode >= Opcode.GREATER) {
+                        result = BOOL;
+                        fused[pc] = jumpFollows(pc);
+                    } else {
+                        result = NUM;
+                    }
+                }
+                case Opcode.EQUAL_EQUAL, Opcode.NOT_EQUAL, Opcode.AND, Opcode.OR -> {
+                    checkDepth(top, 2, pc);
+                    top -= 2;
+                    byte a = stackKind[top];
+                    byte b = stackKind[top + 1];
+                    boolean equality = opcode == Opcode.EQUAL_EQUAL || opcode == Opcode.NOT_EQUAL;
+                    if (a == BOOL && b == BOOL) {
+                        mode[pc] = AS_INT;
+                    } else if (equality && a == NUM && b == NUM) {
+                        mode[pc] = AS_DOUBLE;
+                    } else {
+                        mode[pc] = AS_OBJECT;
+                        if (last) {
+                            require(stackPc[top], a, AS_OBJECT);
+                            require(stackPc[top + 1], b, AS_OBJECT);
+                        }
+                    }
+                    fused[pc] = equality && mode[pc] != AS_OBJECT && jumpFollows(pc);
+                    result = BOOL;
+                }
+                case Opcode.NOT -> {
+                    checkDepth(top, 1, pc);
+                    top--;
+                    mode[pc] = stackKind[top] == BOOL ? AS_INT : AS_OBJECT;
+                    if (last) require(stackPc[top], stackKind[top], mode[pc]);
+                    result = BOOL;
+                }
+                case Opcode.JUMP_IF_FALSE -> {
+                    if (!fused[previous(pc)]) {
+                        checkDepth(top, 1, pc);
+                        top--;
+                        mode[pc] = stackKind[top] == BOOL ? AS_INT : AS_OBJECT;
+                        if (last) require(stackPc[top], stackKind[top], mode[pc]);
+                    }
+                    top = 0;
+                }
+                case Opcode.JUMP -> top = 0;
+                default -> {}
+            }
+            if (result >= 0) {
+                resultKind[pc] = result;
+                stackKind[top] = result;
+                stackPc[top] = pc;
+                stackSlot[top++] = -1;
+            }
+        }
+    }
+
+    private int[] previousPc;
+
+    private int previous(int pc) {
+        if (previousPc == null) {
+            previousPc = new int[code.length + 1];
+            for (int p = 0; p < code.length; p += Opcode.length(code[p])) {
+                int next = p + Opcode.length(code[p]);
+                if (next <= code.length) previousPc[next] = p;
+            }
+        }
+        return pc == 0 ? 0 : previousPc[pc];
+    }
+
+    // Una comparación seguida directamente de JUMP_IF_FALSE se emite como un salto condicional.
+    private boolean jumpFollows(int pc) {
+        int next = pc + 1;
+        return next < code.length && code[next] == Opcode.JUMP_IF_FALSE && !targets[next];
+    }
+
+    private void checkDepth(int top, int needed, int pc) {
+        if (top < needed) throw new IllegalStateException("VCI desbalanceado en la posición " + pc + ".");
+    }
+
+    private void widen(int v, byte kind) {
+        byte joined = kinds[v] == UNKNOWN || kinds[v] == kind ? kind : DYN;
+        if (joined != kinds[v]) {
+            kinds[v] = joined;
+            changed = true;
+        }
+    }
+
+    private void require(int producer, byte kind, byte representation) {
+        if (natural(kind) != representation) convert[producer] = representation;
+    }
+
+    private static byte natural(byte kind) {
+        return switch (kind) {
+            case NUM -> AS_DOUBLE;
+            case BOOL -> AS_INT;
+            default -> AS_OBJECT;
+        };
+    }
+
+    private byte[] emit(boolean wideJumps) {
+        ClassFileWriter writer = new ClassFileWriter(className, "java/lang/Object");
+        ClassFileWriter.Code out = writer.method(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "main", "([Ljava/lang/String;)V");
+        if (wideJumps) out.useWideJumps();
+
+        int[] locals = new int[kinds.length];
+        int next = 1;
+        for (int v = 0; v < kinds.length; v++) {
+            locals[v] = next;
+            switch (kinds[v]) {
+                case NUM -> {
+                    out.dconst(0);
+                    out.dstore(next);
+                    next += 2;
+                }
+                case BOOL -> {
+                    out.iconst(0);
+                    out.istore(next++);
+                }
+                default -> {
+                    out.op(ClassFileWriter.Code.ACONST_NULL);
+                    out.astore(next++);
+                }
+            }
+        }
+
+        ClassFileWriter.Label[] labels = new ClassFileWriter.Label[code.length + 1];
+        for (int pc = 0; pc <= code.length; pc++) {
+            if (targets[pc]) labels[pc] = out.newLabel();
+        }
+
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (targets[pc]) out.mark(labels[pc]);
+            int line = bytecode.lines[pc];
+            int opcode = code[pc];
+            switch (opcode) {
+                case Opcode.PUSH_NUMBER -> out.dconst(bytecode.numbers[code[pc + 1]]);
+                case Opcode.PUSH_STRING -> out.sconst(bytecode.strings[code[pc + 1]]);
+                case Opcode.PUSH_TRUE -> out.iconst(1);
+                case Opcode.PUSH_FALSE -> out.iconst(0);
+                case Opcode.PUSH_NULL -> out.op(ClassFileWriter.Code.ACONST_NULL);
+                case Opcode.LOAD -> {
+                    int v = code[pc + 1];
+                    switch (kinds[v]) {
+                        case NUM -> out.dload(locals[v]);
+                        case BOOL -> out.iload(locals[v]);
+                        default -> out.aload(locals[v]);
+                    }
+                }
+                case Opcode.STORE -> {
+                    int v = slot[pc];
+                    if (v < 0) {
+                        out.op(ClassFileWriter.Code.POP);
+                        fail(out, line, "Destino de asignación inválido.");
+                    } else {
+                        switch (kinds[v]) {
+                            case NUM -> out.dstore(locals[v]);
+                            case BOOL -> out.istore(locals[v]);
+                            default -> out.astore(locals[v]);
+                        }
+                    }
+                }
+                case Opcode.INPUT -> {
+                    if (slot[pc] < 0) {
+                        fail(out, line, "Destino de input inválido.");
+                    } else {
+                        out.iconst(line);
+                        out.invokeStatic(RUNTIME, "input", "(I)Ljava/lang/Object;");
+                        out.astore(locals[slot[pc]]);
+                    }
+                }
+                case Opcode.POP -> out.op(mode[pc] == AS_DOUBLE ? ClassFileWriter.Code.POP2 : ClassFileWriter.Code.POP);
+                case Opcode.PRINT -> {
+                    switch (mode[pc]) {
+                        case AS_DOUBLE -> out.invokeStatic(RUNTIME, "print", "(D)V");
+                        case AS_INT -> out.invokeStatic(RUNTIME, "print", "(Z)V");
+                        default -> out.invokeStatic(RUNTIME, "print", "(Ljava/lang/Object;)V");
+                    }
+                }
+                case Opcode.ADD -> {
+                    switch (mode[pc]) {
+                        case AS_DOUBLE -> out.op(ClassFileWriter.Code.DADD);
+                        case AS_CONCAT -> {
+                            out.iconst(line);
+                            out.invokeStatic(RUNTIME, "concat", "(Ljava/lang/Object;Ljava/lang/Object;I)Ljava/lang/String;");
+                        }
+                        default -> {
+                            out.iconst(line);
+                            out.invokeStatic(RUNTIME, "add", "(Ljava/lang/Object;Ljava/lang/Object;I)Ljava/lang/Object;");
+                        }
+                    }
+                }
+                case Opcode.SUB -> out.op(ClassFileWriter.Code.DSUB);
+                case Opcode.MUL -> out.op(ClassFileWriter.Code.DMUL);
+                case Opcode.DIV -> out.op(ClassFileWriter.Code.DDIV);
+                case Opcode.MOD -> out.op(ClassFileWriter.Code.DREM);
+                case Opcode.GREATER, Opcode.GREATER_EQUAL, Opcode.LESS, Opcode.LESS_EQUAL -> {
+                    if (fused[pc]) {
+                        int jump = pc + 1;
+                        out.op(opcode == Opcode.GREATER || opcode == Opcode.GREATER_EQUAL ? ClassFileWriter.Code.DCMPL : ClassFileWriter.Code.DCMPG);
+                        int branch = switch (opcode) {
+                            case Opcode.GREATER -> ClassFileWriter.Code.IFLE;
+                            case Opcode.GREATER_EQUAL -> ClassFileWriter.Code.IFLT;
+                            case Opcode.LESS -> ClassFileWriter.Code.IFGE;
+                            default -> ClassFileWriter.Code.IFGT;
+                        };
+                        out.jump(branch, labels[code[jump + 1]]);
+                        pc = jump;
+                    } else {
+                        String name = switch (opcode) {
+                            case Opcode.GREATER -> "greater";
+                            case Opcode.GREATER_EQUAL -> "greaterEqual";
+                            case Opcode.LESS -> "less";
+                            default -> "lessEqual";
+                        };
+                        out.invokeStatic(RUNTIME, name, "(DD)Z");
+                    }
+                }
+                case Opcode.EQUAL_EQUAL, Opcode.NOT_EQUAL -> {
+                    boolean equal = opcode == Opcode.EQUAL_EQUAL;
+                    if (mode[pc] == AS_DOUBLE) {
+                        if (fused[pc]) {
+                            out.invokeStatic("java/lang/Double", "compare", "(DD)I");
+                            out.jump(equal ? ClassFileWriter.Code.IFNE : ClassFileWriter.Code.IFEQ, labels[code[pc + 2]]);
+                            pc++;
+                        } else {
+                            out.invokeStatic(RUNTIME, "equal", "(DD)Z");
+                            negateIf(out, !equal);
+                        }
+                    } else if (mode[pc] == AS_INT) {
+                        if (fused[pc]) {
+                            out.jump(equal ? ClassFileWriter.Code.IF_ICMPNE : ClassFileWriter.Code.IF_ICMPEQ, labels[code[pc + 2]]);
+                            pc++;
+                        } else {
+                            out.op(ClassFileWriter.Code.IXOR);
+                            negateIf(out, equal);
+                        }
+                    } else {
+                        out.iconst(line);
+                        out.invokeStatic(RUNTIME, "equal", "(Ljava/lang/Object;Ljava/lang/Object;I)Z");
+                        negateIf(out, !equal);
+                    }
+                }
+                case Opcode.AND, Opcode.OR -> {
+                    if (mode[pc] == AS_INT) {
+                        out.op(opcode == Opcode.AND ? ClassFileWriter.Code.IAND : ClassFileWriter.Code.IOR);
+                    } else {
+                        out.iconst(line);
+                        out.invokeStatic(RUNTIME, opcode == Opcode.AND ? "and" : "or", "(Ljava/lang/Object;Ljava/lang/Object;I)Z");
+                    }
+                }
+                case Opcode.NOT -> {
+                    if (mode[pc] == AS_OBJECT) {
+                        out.iconst(line);
+                        out.invokeStatic(RUNTIME, "condition", "(Ljava/lang/Object;I)Z");
+                    }
+                    negateIf(out, true);
+                }
+                case Opcode.JUMP -> out.jump(ClassFileWriter.Code.GOTO, labels[code[pc + 1]]);
+                case Opcode.JUMP_IF_FALSE -> {
+                    if (mode[pc] == AS_OBJECT) {
+                        out.iconst(line);
+                        out.invokeStatic(RUNTIME, "condition", "(Ljava/lang/Object;I)Z");
+                    }
+                    out.jump(ClassFileWriter.Code.IFEQ, labels[code[pc + 1]]);
+                }
+                default -> {}
+            }
+            if (convert[pc] != 0) convert(out, resultKind[pc], convert[pc], line);
+        }
+        if (targets[code.length]) out.mark(labels[code.length]);
+        out.invokeStatic(RUNTIME, "flush", "()V");
+        out.op(ClassFileWriter.Code.RETURN);
+        out.end(next);
+        return writer.toByteArray();
+    }
+
+    // Convierte el valor de la cima a la representación que espera su consumidor.
+    private void convert(ClassFileWriter.Code out, byte kind, byte representation, int line) {
+        if (kind == NUM) {
+            out.invokeStatic("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+        } else if (kind == BOOL) {
+            out.invokeStatic("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+        }
+        if (representation == AS_DOUBLE) {
+            out.iconst(line);
+            out.invokeStatic(RUNTIME, "number", "(Ljava/lang/Object;I)D");
+        } else if (representation == AS_INT) {
+            out.iconst(line);
+            out.invokeStatic(RUNTIME, "condition", "(Ljava/lang/Object;I)Z");
+        }
+    }
+
+    private void negateIf(ClassFileWriter.Code out, boolean negate) {
+        if (negate) {
+            out.iconst(1);
+            out.op(ClassFileWriter.Code.IXOR);
+        }
+    }
+
+    private void fail(ClassFileWriter.Code out, int line, String message) {
+        out.iconst(line);
+        out.sconst(message);
+        out.invokeStatic(RUNTIME, "fail", "(ILjava/lang/String;)V");
+    }
+}
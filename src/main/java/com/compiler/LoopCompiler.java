@@ -0,0 +1,588 @@
+package com.compiler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.compiler.ClassFileWriter.Code.*;
+
+// Compila un ciclo caliente del bytecode fusionado (el rango [start, end) que
+// va del destino de su salto hacia atrás hasta ese salto) a una clase oculta
+// de la JVM. HotLoops decide cuándo y entra al ciclo compilado desde el
+// intérprete.
+//
+// El código se especializa con los tipos que tienen las variables al entrar:
+// cada casilla que usa el ciclo se vuelve una variable local long (entero),
+// double (número) o int (booleano), y cada profundidad de la pila simulada un
+// temporal. Solo se compila si los tipos no pueden cambiar dentro del ciclo:
+// cada asignación debe dar el mismo tipo que ya tiene la variable, y no hay
+// cadenas (salvo constantes para print), null, input ni operaciones que
+// fallarían con esos tipos.
+//
+// La única suposición que se revisa al ejecutar es que la aritmética entre
+// enteros siga siendo exacta (ver Execution.exact). Si no, el ciclo compilado
+// devuelve las variables y el intérprete sigue desde el inicio de la sentencia
+// en curso, la última posición con la pila vacía. Como ninguna sentencia
+// cambia variables ni escribe antes de terminar, repetirla completa en el
+// intérprete da el mismo resultado.
+public class LoopCompiler {
+    // Ciclos de más posiciones que esto no se compilan, para no pasar el límite de 64 KB por método.
+    private static final int MAX_LENGTH = 2000;
+
+    private static final String BODY = "com/compiler/CompiledLoop$Body";
+    private static final String SINK = "com/compiler/OutputSink";
+    // Locales fijas del método run: this, los valores, la salida y el pc donde sigue el intérprete.
+    private static final int VALUES = 1;
+    private static final int OUT = 2;
+    private static final int RESUME = 3;
+
+    // No se puede compilar el ciclo con estos tipos.
+    private static final class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Bytecode bytecode;
+    private final int[] code;
+    private final int start;
+    private final int end;
+    // Por casilla: tipo (ValueType) al entrar, o 0 si el ciclo no la usa, y su local de la JVM.
+    private final byte[] kinds;
+    private final int[] locals;
+    private final boolean[] assigned;
+    private final Map<Integer, ClassFileWriter.Label> labels = new HashMap<>();
+    private final Map<Integer, ClassFileWriter.Label> exits = new HashMap<>();
+    // Temporal de cada profundidad y tipo.
+    private final Map<Integer, Integer> temps = new HashMap<>();
+    private int nextLocal = RESUME + 1;
+    private ClassFileWriter.Code method;
+    private ClassFileWriter.Label writeBack;
+    // Pila simulada: tipo de cada valor y la local donde está (para las
+    // constantes de cadena, su índice; para las referencias, la casilla).
+    private byte[] stackKinds = new byte[16];
+    private int[] stackLocals = new int[16];
+    private int top;
+    // Inicio de la sentencia en curso, donde sigue el intérprete si falla una suposición.
+    private int resume;
+
+    private LoopCompiler(Bytecode bytecode, int start, int end) {
+        this.bytecode = bytecode;
+        this.code = bytecode.code;
+        this.start = start;
+        this.end = end;
+        this.kinds = new byte[bytecode.variables.length];
+        this.locals = new int[bytecode.variables.length];
+        this.assigned = new boolean[bytecode.variables.length];
+    }
+
+    // El ciclo compilado para los tipos que tiene ahora frame, o null si no se
+    // puede compilar. Se comparte entre ejecuciones del mismo bytecode.
+    static CompiledLoop compile(Bytecode bytecode, int start, int end, Frame frame) {
+        LoopCompiler compiler = new LoopCompiler(bytecode, start, end);
+        try {
+            compiler.scan();
+        } catch (Unsupported e) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder().append(start).append(':').append(end);
+        for (int slot = 0; slot < compiler.kinds.length; slot++) {
+            if (compiler.kinds[slot] != 0) key.append(',').append(frame.types[slot]);
+        }
+        return bytecode.compiledLoops.computeIfAbsent(key.toString(), ignored -> {
+            try {
+                return Optional.of(compiler.compile(frame));
+            } catch (Unsupported e) {
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    // Casillas que usa el ciclo y destinos de salto dentro de él. Por ahora
+    // kinds solo marca las casillas usadas.
+    private void scan() {
+        if (end - start > MAX_LENGTH) throw new Unsupported();
+        for (int pc = start; pc < end; pc += Opcode.length(code[pc])) {
+            int opcode = code[pc];
+            switch (opcode) {
+                case Opcode.LOAD -> use(code[pc + 1]);
+                case Opcode.REFERENCE -> {
+                    use(code[pc + 1]);
+                    assigned[code[pc + 1]] = true;
+                }
+                case Opcode.INCREMENT -> {
+                    use(code[pc + 1]);
+                    assigned[code[pc + 1]] = true;
+                }
+                case Opcode.STORE_OP_CONST -> {
+                    use(code[pc + 2]);
+                    use(code[pc + 3]);
+                    assigned[code[pc + 2]] = true;
+                }
+                case Opcode.STORE_OP_VARS -> {
+                    use(code[pc + 2]);
+                    use(code[pc + 3]);
+                    use(code[pc + 4]);
+                    assigned[code[pc + 2]] = true;
+                }
+                case Opcode.LOAD_OP_CONST, Opcode.COMPARE_VAR_CONST_JUMP -> use(code[pc + 2]);
+                case Opcode.LOAD_OP_VARS, Opcode.COMPARE_VARS_JUMP -> {
+                    use(code[pc + 2]);
+                    use(code[pc + 3]);
+                }
+                case Opcode.INCREMENT_COMPARE_JUMP -> {
+                    use(code[pc + 1]);
+                    use(code[pc + 4]);
+                    assigned[code[pc + 1]] = true;
+                }
+                case Opcode.INCREMENT_COMPARE_CONST_JUMP -> {
+                    use(code[pc + 1]);
+                    assigned[code[pc + 1]] = true;
+                }
+                case Opcode.PUSH_NULL, Opcode.INPUT, Opcode.PROGRAM, Opcode.CONCAT, Opcode.CONCAT_N -> throw new Unsupported();
+                default -> {
+                }
+            }
+            int operand = Opcode.jumpOperand(opcode);
+            if (operand > 0) {
+                int target = code[pc + operand];
+                if (target >= start && target < end) labels.put(target, null);
+            }
+        }
+    }
+
+    private void use(int slot) {
+        kinds[slot] = 1;
+    }
+
+    private CompiledLoop compile(Frame frame) {
+        int used = 0;
+        for (int slot = 0; slot < kinds.length; slot++) {
+            if (kinds[slot] == 0) continue;
+            byte type = frame.types[slot];
+            if (type != ValueType.INTEGER && type != ValueType.NUMBER && type != ValueType.BOOLEAN) throw new Unsupported();
+            kinds[slot] = type;
+            locals[slot] = allocate(type);
+            used++;
+        }
+        int[] slots = new int[used];
+        byte[] types = new byte[used];
+        used = 0;
+        for (int slot = 0; slot < kinds.length; slot++) {
+            if (kinds[slot] == 0) continue;
+            slots[used] = slot;
+            types[used++] = kinds[slot];
+        }
+
+        ClassFileWriter writer = new ClassFileWriter("com/compiler/CompiledLoopCode", "java/lang/Object", BODY);
+        writer.defaultConstructor();
+        method = writer.method(ClassFileWriter.ACC_PUBLIC, "run", "([J" + "L" + SINK + ";)I");
+        writeBack = method.newLabel();
+        for (Integer target : labels.keySet()) labels.put(target, method.newLabel());
+
+        for (int slot : slots) {
+            method.aload(VALUES);
+            method.iconst(slot);
+            method.op(LALOAD);
+            switch (kinds[slot]) {
+                case ValueType.INTEGER -> method.lstore(locals[slot]);
+                case ValueType.NUMBER -> {
+                    method.invokeStatic("java/lang/Double", "longBitsToDouble", "(J)D");
+                    method.dstore(locals[slot]);
+                }
+                default -> {
+                    method.op(L2I);
+                    method.istore(locals[slot]);
+                }
+            }
+        }
+        for (int pc = start; pc < end; pc += Opcode.length(code[pc])) {
+            if (labels.containsKey(pc)) {
+                if (top > 0) throw new Unsupported();
+                method.mark(labels.get(pc));
+            }
+            if (top == 0) resume = pc;
+            instruction(pc);
+        }
+        exit(end);
+        for (Map.Entry<Integer, ClassFileWriter.Label> entry : exits.entrySet()) {
+            method.mark(entry.getValue());
+            exit(entry.getKey());
+        }
+
+        method.mark(writeBack);
+        for (int slot : slots) {
+            if (!assigned[slot]) continue;
+            method.aload(VALUES);
+            method.iconst(slot);
+            switch (kinds[slot]) {
+                case ValueType.INTEGER -> method.lload(locals[slot]);
+                case ValueType.NUMBER -> {
+                    method.dload(locals[slot]);
+                    method.invokeStatic("java/lang/Double", "doubleToRawLongBits", "(D)J");
+                }
+                default -> {
+                    method.iload(locals[slot]);
+                    method.op(I2L);
+                }
+            }
+            method.op(LASTORE);
+        }
+        method.iload(RESUME);
+        method.op(IRETURN);
+        method.end(nextLocal);
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(writer.toByteArray(), true);
+            CompiledLoop.Body body = (CompiledLoop.Body) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+            Metrics.count("execution.compiled_loops", 1);
+            return new CompiledLoop(start, end, slots, types, body);
+        } catch (Throwable e) {
+            throw new IllegalStateException("No se pudo cargar el ciclo compilado.", e);
+        }
+    }
+
+    private void instruction(int pc) {
+        int opcode = code[pc];
+        switch (opcode) {
+            case Opcode.PUSH_NUMBER, Opcode.PUSH_INTEGER -> constant(code[pc + 1]);
+            case Opcode.PUSH_TRUE, Opcode.PUSH_FALSE -> {
+                int temp = temp(top, ValueType.BOOLEAN);
+                method.iconst(opcode == Opcode.PUSH_TRUE ? 1 : 0);
+                method.istore(temp);
+                push(ValueType.BOOLEAN, temp);
+            }
+            case Opcode.PUSH_STRING -> push(ValueType.STRING, code[pc + 1]);
+            case Opcode.LOAD -> {
+                int slot = code[pc + 1];
+                int temp = temp(top, kinds[slot]);
+                load(kinds[slot], locals[slot]);
+                store(kinds[slot], temp);
+                push(kinds[slot], temp);
+            }
+            case Opcode.REFERENCE -> push(ValueType.REFERENCE, code[pc + 1]);
+            case Opcode.STORE -> {
+                if (top < 2 || stackKinds[top - 2] != ValueType.REFERENCE) throw new Unsupported();
+                assign(stackLocals[top - 2], stackKinds[top - 1], stackLocals[top - 1]);
+                top -= 2;
+            }
+            case Opcode.POP -> {
+                if (top == 0) throw new Unsupported();
+                top--;
+            }
+            case Opcode.ADD, Opcode.SUB, Opcode.MUL, Opcode.DIV, Opcode.MOD, Opcode.AND, Opcode.OR,
+                 Opcode.GREATER, Opcode.GREATER_EQUAL, Opcode.LESS, Opcode.LESS_EQUAL, Opcode.EQUAL_EQUAL, Opcode.NOT_EQUAL,
+                 Opcode.ADD_NUMBERS, Opcode.SUB_NUMBERS, Opcode.MUL_NUMBERS, Opcode.DIV_NUMBERS, Opcode.MOD_NUMBERS,
+                 Opcode.AND_BOOLEANS, Opcode.OR_BOOLEANS,
+                 Opcode.GREATER_NUMBERS, Opcode.GREATER_EQUAL_NUMBERS, Opcode.LESS_NUMBERS, Opcode.LESS_EQUAL_NUMBERS,
+                 Opcode.EQUAL_NUMBERS, Opcode.NOT_EQUAL_NUMBERS -> {
+                if (top < 2) throw new Unsupported();
+                top -= 2;
+                binary(Opcode.generic(opcode), stackKinds[top], stackLocals[top], stackKinds[top + 1], stackLocals[top + 1]);
+            }
+            case Opcode.NOT, Opcode.NOT_BOOLEAN -> {
+                if (top < 1 || stackKinds[top - 1] != ValueType.BOOLEAN) throw new Unsupported();
+                int operand = stackLocals[--top];
+                int temp = temp(top, ValueType.BOOLEAN);
+                method.iload(operand);
+                method.iconst(1);
+                method.op(IXOR);
+                method.istore(temp);
+                push(ValueType.BOOLEAN, temp);
+            }
+            case Opcode.PRINT -> {
+                if (top < 1) throw new Unsupported();
+                top--;
+                print(stackKinds[top], stackLocals[top]);
+            }
+            case Opcode.PRINT_CONCAT -> {
+                int count = code[pc + 1];
+                if (top < count) throw new Unsupported();
+                for (int index = top - count; index < top; index++) print(stackKinds[index], stackLocals[index]);
+                top -= count;
+            }
+            case Opcode.JUMP -> method.jump(GOTO, target(code[pc + 1]));
+            case Opcode.JUMP_IF_FALSE -> {
+                if (top < 1 || stackKinds[top - 1] != ValueType.BOOLEAN) throw new Unsupported();
+                method.iload(stackLocals[--top]);
+                method.jump(IFEQ, target(code[pc + 1]));
+            }
+            case Opcode.INCREMENT -> increment(code[pc + 1], code[pc + 2]);
+            case Opcode.STORE_OP_CONST -> {
+                constant(code[pc + 4]);
+                top--;
+                binary(code[pc + 1], kinds[code[pc + 3]], locals[code[pc + 3]], stackKinds[top], stackLocals[top]);
+                top--;
+                assign(code[pc + 2], stackKinds[top], stackLocals[top]);
+            }
+            case Opcode.STORE_OP_VARS -> {
+                binary(code[pc + 1], kinds[code[pc + 3]], locals[code[pc + 3]], kinds[code[pc + 4]], locals[code[pc + 4]]);
+                top--;
+                assign(code[pc + 2], stackKinds[top], stackLocals[top]);
+            }
+            case Opcode.LOAD_OP_CONST -> {
+                constant(code[pc + 3]);
+                top--;
+                binary(code[pc + 1], kinds[code[pc + 2]], locals[code[pc + 2]], stackKinds[top], stackLocals[top]);
+            }
+            case Opcode.LOAD_OP_VARS ->
+                    binary(code[pc + 1], kinds[code[pc + 2]], locals[code[pc + 2]], kinds[code[pc + 3]], locals[code[pc + 3]]);
+            case Opcode.COMPARE_JUMP -> {
+                if (top < 2) throw new Unsupported();
+                top -= 2;
+                condition(code[pc + 1], stackKinds[top], stackLocals[top], stackKinds[top + 1], stackLocals[top + 1],
+                        target(code[pc + 2]), false);
+            }
+            case Opcode.COMPARE_CONST_JUMP -> {
+                if (top < 1) throw new Unsupported();
+                constant(code[pc + 2]);
+                top -= 2;
+                condition(code[pc + 1], stackKinds[top], stackLocals[top], stackKinds[top + 1], stackLocals[top + 1],
+                        target(code[pc + 3]), false);
+            }
+            case Opcode.COMPARE_VAR_CONST_JUMP -> {
+                constant(code[pc + 3]);
+                top--;
+                condition(code[pc + 1], kinds[code[pc + 2]], locals[code[pc + 2]], stackKinds[top], stackLocals[top],
+                        target(code[pc + 4]), false);
+            }
+            case Opcode.COMPARE_VARS_JUMP ->
+                    condition(code[pc + 1], kinds[code[pc + 2]], locals[code[pc + 2]], kinds[code[pc + 3]], locals[code[pc + 3]],
+                            target(code[pc + 4]), false);
+            case Opcode.INCREMENT_COMPARE_JUMP -> {
+                increment(code[pc + 1], code[pc + 2]);
+                int x = code[pc + 1];
+                int a = code[pc + 4];
+                condition(code[pc + 3], kinds[x], locals[x], kinds[a], locals[a], target(code[pc + 5]), true);
+            }
+            case Opcode.INCREMENT_COMPARE_CONST_JUMP -> {
+                increment(code[pc + 1], code[pc + 2]);
+                int x = code[pc + 1];
+                constant(code[pc + 4]);
+                top--;
+                condition(code[pc + 3], kinds[x], locals[x], stackKinds[top], stackLocals[top], target(code[pc + 5]), true);
+            }
+            default -> throw new Unsupported();
+        }
+    }
+
+    // x = x + k.
+    private void increment(int x, int k) {
+        constant(k);
+        top--;
+        binary(Opcode.ADD, kinds[x], locals[x], stackKinds[top], stackLocals[top]);
+        top--;
+        assign(x, stackKinds[top], stackLocals[top]);
+    }
+
+    // Apila a op b en el temporal de la profundidad actual.
+    private void binary(int op, byte aKind, int a, byte bKind, int b) {
+        switch (op) {
+            case Opcode.ADD, Opcode.SUB, Opcode.MUL, Opcode.DIV, Opcode.MOD -> {
+                if (aKind == ValueType.INTEGER && bKind == ValueType.INTEGER) {
+                    int temp = temp(top, ValueType.INTEGER);
+                    method.iconst(op);
+                    method.lload(a);
+                    method.lload(b);
+                    method.invokeStatic("com/compiler/Execution", "exact", "(IJJ)J");
+                    method.lstore(temp);
+                    // Si la cuenta no es exacta el resultado sería un número y no un entero.
+                    ClassFileWriter.Label exact = method.newLabel();
+                    method.lload(temp);
+                    method.lconst(Execution.INEXACT);
+                    method.op(LCMP);
+                    method.jump(IFNE, exact);
+                    exit(resume);
+                    method.mark(exact);
+                    push(ValueType.INTEGER, temp);
+                } else {
+                    loadNumber(aKind, a);
+                    loadNumber(bKind, b);
+                    method.op(switch (op) {
+                        case Opcode.ADD -> DADD;
+                        case Opcode.SUB -> DSUB;
+                        case Opcode.MUL -> DMUL;
+                        case Opcode.DIV -> DDIV;
+                        default -> DREM;
+                    });
+                    int temp = temp(top, ValueType.NUMBER);
+                    method.dstore(temp);
+                    push(ValueType.NUMBER, temp);
+                }
+            }
+            case Opcode.AND, Opcode.OR -> {
+                if (aKind != ValueType.BOOLEAN || bKind != ValueType.BOOLEAN) throw new Unsupported();
+                int temp = temp(top, ValueType.BOOLEAN);
+                method.iload(a);
+                method.iload(b);
+                method.op(op == Opcode.AND ? IAND : IOR);
+                method.istore(temp);
+                push(ValueType.BOOLEAN, temp);
+            }
+            default -> {
+                // El temporal puede ser el mismo local que a: se escribe
+                // después de comparar.
+                int temp = temp(top, ValueType.BOOLEAN);
+                ClassFileWriter.Label no = method.newLabel();
+                ClassFileWriter.Label done = method.newLabel();
+                condition(op, aKind, a, bKind, b, no, false);
+                method.iconst(1);
+                method.istore(temp);
+                method.jump(GOTO, done);
+                method.mark(no);
+                method.iconst(0);
+                method.istore(temp);
+                method.mark(done);
+                push(ValueType.BOOLEAN, temp);
+            }
+        }
+    }
+
+    // Salta a label si (a op b) == when, con la comparación de Execution.compare.
+    private void condition(int op, byte aKind, int a, byte bKind, int b, ClassFileWriter.Label label, boolean when) {
+        int jump = switch (op) {
+            case Opcode.GREATER -> IFGT;
+            case Opcode.GREATER_EQUAL -> IFGE;
+            case Opcode.LESS -> IFLT;
+            case Opcode.LESS_EQUAL -> IFLE;
+            case Opcode.EQUAL_EQUAL -> IFEQ;
+            case Opcode.NOT_EQUAL -> IFNE;
+            default -> throw new Unsupported();
+        };
+        if (aKind == ValueType.BOOLEAN || bKind == ValueType.BOOLEAN) {
+            if (aKind != bKind || (op != Opcode.EQUAL_EQUAL && op != Opcode.NOT_EQUAL)) throw new Unsupported();
+            method.iload(a);
+            method.iload(b);
+            jump += IF_ICMPEQ - IFEQ;
+        } else if (aKind == ValueType.INTEGER && bKind == ValueType.INTEGER) {
+            method.lload(a);
+            method.lload(b);
+            method.op(LCMP);
+        } else if (op == Opcode.EQUAL_EQUAL || op == Opcode.NOT_EQUAL) {
+            // La igualdad entre números es la de Double.equals.
+            loadNumber(aKind, a);
+            method.invokeStatic("java/lang/Double", "doubleToLongBits", "(D)J");
+            loadNumber(bKind, b);
+            method.invokeStatic("java/lang/Double", "doubleToLongBits", "(D)J");
+            method.op(LCMP);
+        } else {
+            // Con NaN, dcmpl da -1 y dcmpg 1: las dos comparaciones dan falso.
+            loadNumber(aKind, a);
+            loadNumber(bKind, b);
+            method.op(op == Opcode.GREATER || op == Opcode.GREATER_EQUAL ? DCMPL : DCMPG);
+        }
+        method.jump(when ? jump : ((jump - IFEQ) ^ 1) + IFEQ, label);
+    }
+
+    // Apila la constante k: entera si el literal lo es, como en Execution.pushConstant.
+    private void constant(int k) {
+        if (bytecode.integral[k]) {
+            int temp = temp(top, ValueType.INTEGER);
+            method.lconst(bytecode.integers[k]);
+            method.lstore(temp);
+            push(ValueType.INTEGER, temp);
+        } else {
+            int temp = temp(top, ValueType.NUMBER);
+            method.dconst(bytecode.numbers[k]);
+            method.dstore(temp);
+            push(ValueType.NUMBER, temp);
+        }
+    }
+
+    // x = valor, si no le cambia el tipo a x.
+    private void assign(int slot, byte kind, int local) {
+        if (kinds[slot] != kind) throw new Unsupported();
+        load(kind, local);
+        store(kind, locals[slot]);
+    }
+
+    private void print(byte kind, int local) {
+        method.aload(OUT);
+        switch (kind) {
+            case ValueType.INTEGER -> {
+                method.lload(local);
+                method.invokeInterface(SINK, "print", "(J)V");
+            }
+            case ValueType.NUMBER -> {
+                method.dload(local);
+                method.invokeInterface(SINK, "print", "(D)V");
+            }
+            case ValueType.BOOLEAN -> {
+                method.iload(local);
+                method.invokeInterface(SINK, "print", "(Z)V");
+            }
+            case ValueType.STRING -> {
+                method.sconst(bytecode.strings[local]);
+                method.invokeInterface(SINK, "print", "(Ljava/lang/String;)V");
+            }
+            default -> throw new Unsupported();
+        }
+    }
+
+    // Sale del método: devuelve las variables y el intérprete sigue en pc.
+    private void exit(int pc) {
+        method.iconst(pc);
+        method.istore(RESUME);
+        method.jump(GOTO, writeBack);
+    }
+
+    // Etiqueta de un destino de salto: la de la instrucción si está en el
+    // ciclo, o una salida al intérprete si no.
+    private ClassFileWriter.Label target(int pc) {
+        if (pc >= start && pc < end) return labels.get(pc);
+        return exits.computeIfAbsent(pc, ignored -> method.newLabel());
+    }
+
+    private void loadNumber(byte kind, int local) {
+        if (kind == ValueType.INTEGER) {
+            method.lload(local);
+            method.op(L2D);
+        } else if (kind == ValueType.NUMBER) {
+            method.dload(local);
+        } else {
+            throw new Unsupported();
+        }
+    }
+
+    private void load(byte kind, int local) {
+        switch (kind) {
+            case ValueType.INTEGER -> method.lload(local);
+            case ValueType.NUMBER -> method.dload(local);
+            case ValueType.BOOLEAN -> method.iload(local);
+            default -> throw new Unsupported();
+        }
+    }
+
+    private void store(byte kind, int local) {
+        switch (kind) {
+            case ValueType.INTEGER -> method.lstore(local);
+            case ValueType.NUMBER -> method.dstore(local);
+            case ValueType.BOOLEAN -> method.istore(local);
+            default -> throw new Unsupported();
+        }
+    }
+
+    private void push(byte kind, int local) {
+        if (top == stackKinds.length) {
+            stackKinds = Arrays.copyOf(stackKinds, top * 2);
+            stackLocals = Arrays.copyOf(stackLocals, top * 2);
+        }
+        stackKinds[top] = kind;
+        stackLocals[top++] = local;
+    }
+
+    private int temp(int depth, byte kind) {
+        return temps.computeIfAbsent(depth * 8 + kind, ignored -> allocate(kind));
+    }
+
+    private int allocate(byte kind) {
+        int local = nextLocal;
+        nextLocal += kind == ValueType.BOOLEAN ? 1 : 2;
+        return local;
+    }
+}
@@ -0,0 +1,403 @@
+package com.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.compiler.Opcode.*;
+
+// Optimizaciones de los ciclos while. Un while queda en el bytecode como
+//
+//   h:  condición, JUMP_IF_FALSE fin
+//       cuerpo
+//       JUMP h
+//   fin:
+//
+// y ciclo es todo el rango de h al JUMP. Hay dos pasos, uno a cada lado del
+// resto de Bytecode.fused():
+//
+//  - hoist, sobre el código genérico: las expresiones invariantes del ciclo se
+//    calculan una vez antes de entrar (en el preencabezado) y se guardan en una
+//    casilla nueva sin nombre, que el ciclo solo lee. Una expresión es
+//    invariante si sus hojas son constantes o variables que no se asignan en
+//    el ciclo. Solo se sacan las que no pueden fallar, según los tipos de
+//    TypeInference (sin null y con el tipo que pide cada operador), porque el
+//    preencabezado se ejecuta aunque el ciclo no dé ninguna vuelta.
+//  - rotate, sobre las superinstrucciones: si el cuerpo termina con el
+//    incremento de la variable de inducción que compara la condición
+//    (INCREMENT i k ... COMPARE_VARS_JUMP op i n), el incremento, el JUMP y la
+//    condición se vuelven un INCREMENT_COMPARE_JUMP que salta directo al
+//    inicio del cuerpo. Cada vuelta despacha dos instrucciones menos.
+//
+// Los ciclos se procesan de afuera hacia adentro: una expresión invariante en
+// dos ciclos anidados sale de los dos.
+public class LoopOptimizer {
+    private final Bytecode input;
+    // Tipos de TypeInference de cada casilla; las casillas nuevas toman el
+    // tipo de su expresión.
+    private int[] kinds;
+    private int hoisted;
+    private int rotated;
+
+    public LoopOptimizer(Bytecode input) {
+        this.input = input;
+    }
+
+    public static Bytecode hoist(Bytecode bytecode) {
+        return new LoopOptimizer(bytecode).hoist();
+    }
+
+    public static Bytecode rotate(Bytecode bytecode) {
+        return new LoopOptimizer(bytecode).rotate();
+    }
+
+    // Expresiones que sacó la última llamada a hoist.
+    public int hoisted() {
+        return hoisted;
+    }
+
+    // Ciclos que rotó la última llamada a rotate.
+    public int rotated() {
+        return rotated;
+    }
+
+    public Bytecode hoist() {
+        TypeInference inference = new TypeInference(input);
+        inference.specialize();
+        kinds = inference.kinds();
+        Bytecode current = input;
+        // Cada vuelta saca las expresiones de un ciclo. Después, en ese ciclo
+        // solo quedan lecturas de las casillas nuevas, que no tienen operador,
+        // así que termina.
+        while (true) {
+            Bytecode next = hoistFirst(current);
+            if (next == null) return current;
+            current = next;
+        }
+    }
+
+    // Saca las expresiones invariantes del primer ciclo que tenga alguna, o
+    // devuelve null si ninguno tiene.
+    private Bytecode hoistFirst(Bytecode bytecode) {
+        int[] code = bytecode.code;
+        boolean[] targets = targets(code);
+        List<int[]> loops = new ArrayList<>();
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (code[pc] == JUMP && code[pc + 1] <= pc && code[pc + 1] >= 0) loops.add(new int[]{code[pc + 1], pc + 2});
+        }
+        // De afuera hacia adentro: por inicio y, con el mismo inicio, el más largo.
+        loops.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(b[1], a[1]));
+        for (int[] loop : loops) {
+            if (!singleEntry(code, loop[0], loop[1])) continue;
+            List<int[]> found = invariants(bytecode, targets, loop[0], loop[1]);
+            if (!found.isEmpty()) return hoistRanges(bytecode, loop[0], loop[1], found);
+        }
+        return null;
+    }
+
+    // Desde afuera del ciclo solo se puede saltar a su inicio.
+    private static boolean singleEntry(int[] code, int start, int end) {
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            int operand = jumpOperand(code[pc]);
+            if (operand == 0 || (pc >= start && pc < end)) continue;
+            int target = code[pc + operand];
+            if (target > start && target < end) return false;
+        }
+        return true;
+    }
+
+    // {inicio, fin, tipo} de las expresiones invariantes más grandes del
+    // ciclo [start, end) que tienen al menos un operador. Simula la pila: para
+    // cada valor guarda dónde empieza su expresión, si es invariante y su tipo
+    // (uno de los de TypeInference, o 0 si no se sabe).
+    private List<int[]> invariants(Bytecode bytecode, boolean[] targets, int start, int end) {
+        int[] code = bytecode.code;
+        boolean[] assigned = new boolean[bytecode.variables.length];
+        for (int pc = start; pc < end; pc += Opcode.length(code[pc])) {
+            if (code[pc] == REFERENCE) assigned[code[pc + 1]] = true;
+        }
+
+        List<int[]> found = new ArrayList<>();
+        int[] starts = new int[16];
+        int[] types = new int[16];
+        boolean[] invariant = new boolean[16];
+        int top = 0;
+        for (int pc = start; pc < end; pc += Opcode.length(code[pc])) {
+            if (targets[pc]) top = 0;
+            if (top + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+                types = Arrays.copyOf(types, types.length * 2);
+                invariant = Arrays.copyOf(invariant, invariant.length * 2);
+            }
+            int opcode = code[pc];
+            int type = 0;
+            boolean unchanged = false;
+            switch (opcode) {
+                case PUSH_NUMBER -> {
+                    type = TypeInference.NUMBER;
+                    unchanged = true;
+                }
+                case PUSH_STRING -> {
+                    type = TypeInference.STRING;
+                    unchanged = true;
+                }
+                case PUSH_TRUE, PUSH_FALSE -> {
+                    type = TypeInference.BOOLEAN;
+                    unchanged = true;
+                }
+                case PUSH_NULL -> unchanged = true;
+                case LOAD -> {
+                    int v = code[pc + 1];
+                    if (!assigned[v] && single(kinds[v])) {
+                        type = kinds[v];
+                        unchanged = true;
+                    }
+                }
+                case REFERENCE -> {}
+                case STORE, POP, PRINT, INPUT, JUMP_IF_FALSE -> {
+                    int pops = opcode == STORE ? 2 : 1;
+                    for (int i = 0; i < pops && top > 0; i++) {
+                        top--;
+                        collect(found, invariant[top], starts[top], pc, types[top]);
+                    }
+                    continue;
+                }
+                case JUMP, PROGRAM -> {
+                    continue;
+                }
+                case NOT -> {
+                    if (top == 0) return List.of();
+                    top--;
+                    if (invariant[top] && types[top] == TypeInference.BOOLEAN) {
+                        top++;
+                    } else {
+                        collect(found, invariant[top], starts[top], pc, types[top]);
+                        push(starts, types, invariant, top, starts[top], 0, false);
+                        top++;
+                    }
+                    continue;
+                }
+                default -> {
+                    if (!Superinstructions.isBinary(opcode) || opcode != generic(opcode)) return List.of();
+                    if (top < 2) return List.of();
+                    int b = --top;
+                    int a = --top;
+                    int result = invariant[a] && invariant[b] ? safe(opcode, types[a], types[b]) : 0;
+                    if (result != 0) {
+                        push(starts, types, invariant, top++, starts[a], result, true);
+                    } else {
+                        collect(found, invariant[a], starts[a], starts[b], types[a]);
+                        collect(found, invariant[b], starts[b], pc, types[b]);
+                        push(starts, types, invariant, top++, starts[a], 0, false);
+                    }
+                    continue;
+                }
+            }
+            push(starts, types, invariant, top++, pc, type, unchanged);
+        }
+        // Quedan los que tienen un operador: una hoja sola no se saca.
+        found.removeIf(range -> range[1] - range[0] == Opcode.length(code[range[0]]));
+        return found;
+    }
+
+    private static void push(int[] starts, int[] types, boolean[] invariant, int index, int start, int type, boolean isInvariant) {
+        starts[index] = start;
+        types[index] = type;
+        invariant[index] = isInvariant;
+    }
+
+    // Un operando invariante que usa algo que no lo es: su expresión, que
+    // termina en end, es de las más grandes.
+    private static void collect(List<int[]> found, boolean invariant, int start, int end, int type) {
+        if (invariant) found.add(new int[]{start, end, type});
+    }
+
+    private static boolean single(int kind) {
+        return kind == TypeInference.NUMBER || kind == TypeInference.BOOLEAN || kind == TypeInference.STRING;
+    }
+
+    // Tipo del resultado de a op b si con esos tipos la operación no puede
+    // fallar; 0 si puede.
+    private static int safe(int op, int a, int b) {
+        if (a == 0 || b == 0) return 0;
+        boolean numbers = a == TypeInference.NUMBER && b == TypeInference.NUMBER;
+        return switch (op) {
+            case ADD -> numbers ? TypeInference.NUMBER : TypeInference.STRING;
+            case SUB, MUL, DIV, MOD -> numbers ? TypeInference.NUMBER : 0;
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> numbers ? TypeInference.BOOLEAN : 0;
+            case EQUAL_EQUAL, NOT_EQUAL -> TypeInference.BOOLEAN;
+            case AND, OR -> a == TypeInference.BOOLEAN && b == TypeInference.BOOLEAN ? TypeInference.BOOLEAN : 0;
+            default -> 0;
+        };
+    }
+
+    // Copia el código poniendo antes del ciclo [start, end) una asignación a
+    // una casilla nueva por cada expresión distinta de ranges, y cambia cada
+    // expresión del ciclo por LOAD de su casilla. Los saltos de afuera al
+    // inicio del ciclo pasan a apuntar al preencabezado.
+    private Bytecode hoistRanges(Bytecode bytecode, int start, int end, List<int[]> ranges) {
+        int[] code = bytecode.code;
+        int variables = bytecode.variables.length;
+        ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+        Map<String, Integer> slots = new HashMap<>();
+        int[] slotOf = new int[ranges.size()];
+        List<int[]> distinct = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            int[] range = ranges.get(i);
+            String key = Arrays.toString(Arrays.copyOfRange(code, range[0], range[1]));
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                slot = variables + distinct.size();
+                slots.put(key, slot);
+                distinct.add(range);
+            }
+            slotOf[i] = slot;
+        }
+        hoisted += ranges.size();
+        kinds = Arrays.copyOf(kinds, variables + distinct.size());
+        for (int i = 0; i < distinct.size(); i++) kinds[variables + i] = distinct.get(i)[2];
+
+        int[] out = new int[code.length * 2 + distinct.size() * 3];
+        int[] lines = new int[out.length];
+        int[] map = new int[code.length + 1];
+        Arrays.fill(map, -1);
+        int size = 0;
+        int preheader = -1;
+        int next = 0;
+        int pc = 0;
+        while (pc <= code.length) {
+            if (pc == start) {
+                preheader = size;
+                for (int i = 0; i < distinct.size(); i++) {
+                    int[] range = distinct.get(i);
+                    int line = bytecode.lines[range[0]];
+                    lines[size] = line;
+                    lines[size + 1] = line;
+                    out[size++] = REFERENCE;
+                    out[size++] = variables + i;
+                    for (int p = range[0]; p < range[1]; p++) {
+                        lines[size] = bytecode.lines[p];
+                        out[size++] = code[p];
+                    }
+                    lines[size] = line;
+                    out[size++] = STORE;
+                }
+            }
+            map[pc] = size;
+            if (pc == code.length) break;
+            if (next < ranges.size() && ranges.get(next)[0] == pc) {
+                int[] range = ranges.get(next);
+                lines[size] = bytecode.lines[pc];
+                lines[size + 1] = bytecode.lines[pc];
+                out[size++] = LOAD;
+                out[size++] = slotOf[next++];
+                pc = range[1];
+                continue;
+            }
+            int length = Opcode.length(code[pc]);
+            for (int i = 0; i < length; i++) {
+                out[size + i] = code[pc + i];
+                lines[size + i] = bytecode.lines[pc + i];
+            }
+            size += length;
+            pc += length;
+        }
+
+        // Los saltos se corrigen con las posiciones originales que quedaron en out.
+        int[] origins = new int[size];
+        Arrays.fill(origins, -1);
+        for (int p = 0; p < code.length; p += Opcode.length(code[p])) {
+            if (map[p] >= 0) origins[map[p]] = p;
+        }
+        for (int p = 0; p < size; p += Opcode.length(out[p])) {
+            int operand = jumpOperand(out[p]);
+            if (operand == 0) continue;
+            int from = origins[p];
+            int target = out[p + operand];
+            boolean outside = from >= 0 && (from < start || from >= end);
+            if (outside && target == start) {
+                out[p + operand] = preheader;
+            } else {
+                out[p + operand] = target >= 0 && target < map.length && map[target] >= 0 ? map[target] : size;
+            }
+        }
+        String[] names = Arrays.copyOf(bytecode.variables, variables + distinct.size());
+        return new Bytecode(Arrays.copyOf(out, size), Arrays.copyOf(lines, size), bytecode.numbers, bytecode.strings, names);
+    }
+
+    public Bytecode rotate() {
+        int[] code = input.code;
+        boolean[] targets = targets(code);
+        // Los incrementos que terminan un ciclo rotable, por pc del INCREMENT.
+        boolean[] rotations = new boolean[code.length];
+        int previous = -1;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            int h = code[pc] == JUMP ? code[pc + 1] : -1;
+            if (h >= 0 && h < pc && previous >= 0 && code[previous] == INCREMENT && !targets[pc]
+                    && (code[h] == COMPARE_VARS_JUMP || code[h] == COMPARE_VAR_CONST_JUMP)
+                    && code[h + 2] == code[previous + 1] && code[h + 4] == pc + 2) {
+                rotations[previous] = true;
+                rotated++;
+            }
+            previous = pc;
+        }
+        if (rotated == 0) return input;
+
+        // Cada rotación cambia 5 posiciones (INCREMENT y JUMP) por 6.
+        int[] out = new int[code.length + rotated];
+        int[] lines = new int[out.length];
+        int[] map = new int[code.length + 1];
+        int size = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            map[pc] = size;
+            if (rotations[pc]) {
+                int jump = pc + 3;
+                int h = code[jump + 1];
+                int increment = input.lines[pc];
+                int condition = input.lines[h];
+                out[size] = code[h] == COMPARE_VARS_JUMP ? INCREMENT_COMPARE_JUMP : INCREMENT_COMPARE_CONST_JUMP;
+                out[size + 1] = code[pc + 1];
+                out[size + 2] = code[pc + 2];
+                out[size + 3] = code[h + 1];
+                out[size + 4] = code[h + 3];
+                // Inicio del cuerpo, en pc originales como los demás destinos.
+                out[size + 5] = h + Opcode.length(code[h]);
+                // El incremento conserva su línea; la comparación, la del while.
+                lines[size] = lines[size + 1] = lines[size + 2] = increment;
+                lines[size + 3] = lines[size + 4] = lines[size + 5] = condition;
+                map[jump] = size;
+                size += 6;
+                pc = jump + 2;
+                continue;
+            }
+            int length = Opcode.length(code[pc]);
+            for (int i = 0; i < length; i++) {
+                out[size + i] = code[pc + i];
+                lines[size + i] = input.lines[pc + i];
+            }
+            size += length;
+            pc += length;
+        }
+        map[code.length] = size;
+
+        for (int p = 0; p < size; p += Opcode.length(out[p])) {
+            int operand = jumpOperand(out[p]);
+            if (operand == 0) continue;
+            int target = out[p + operand];
+            out[p + operand] = target >= 0 && target < map.length ? map[target] : size;
+        }
+        return new Bytecode(Arrays.copyOf(out, size), Arrays.copyOf(lines, size), input.numbers, input.strings, input.variables);
+    }
+
+    private static boolean[] targets(int[] code) {
+        boolean[] targets = new boolean[code.length + 1];
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            int operand = jumpOperand(code[pc]);
+            if (operand > 0) targets[Math.min(Math.max(code[pc + operand], 0), code.length)] = true;
+        }
+        return targets;
+    }
+}
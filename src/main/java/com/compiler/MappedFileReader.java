@@ -0,0 +1,82 @@
+package com.compiler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reader que decodifica un archivo UTF-8 mapeado en memoria. El archivo se mapea
+// por regiones, así que también funciona con archivos de más de 2 GB.
+public class MappedFileReader extends Reader {
+    private static final long REGION = 1L << 26;
+
+    private final FileChannel channel;
+    private final long size;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private MappedByteBuffer region;
+    private long regionStart;
+    private boolean finished;
+    // Segunda mitad de un par sustituto que no cupo en la última lectura, o -1.
+    private int pending = -1;
+    private final char[] pair = new char[2];
+
+    public MappedFileReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.finished = size == 0;
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (pending >= 0) {
+            chars[offset] = (char) pending;
+            pending = -1;
+            return 1;
+        }
+        if (length < 2) {
+            // El decodificador no escribe la mitad de un par sustituto: sin
+            // espacio para los dos se quedaría esperando sin avanzar.
+            int read = read(pair, 0, 2);
+            if (read <= 0) return read;
+            chars[offset] = pair[0];
+            if (read == 2) pending = pair[1];
+            return 1;
+        }
+        CharBuffer out = CharBuffer.wrap(chars, offset, length);
+        while (out.position() == offset && !finished) {
+            // Un caracter UTF-8 ocupa hasta 4 bytes; si quedan menos se vuelve a
+            // mapear desde ahí para no cortarlo entre dos regiones.
+            boolean last = region != null && regionStart + region.limit() >= size;
+            if (region == null || (!last && region.remaining() < 4)) {
+                map(region == null ? 0 : regionStart + region.position());
+                last = regionStart + region.limit() >= size;
+            }
+            decoder.decode(region, out, last);
+            if (last && !region.hasRemaining()) {
+                decoder.flush(out);
+                finished = true;
+            }
+        }
+        int read = out.position() - offset;
+        return read == 0 && finished ? -1 : read;
+    }
+
+    private void map(long position) throws IOException {
+        regionStart = position;
+        region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(REGION, size - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,119 @@
+package com.compiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Contadores e histogramas del proceso (tokens, largo del VCI, instrucciones
+// ejecutadas, tiempos y memoria de cada etapa) para seguir el costo de
+// compilar y ejecutar entre corridas. Solo se registra algo después de
+// enable(); con --metrics <archivo> se escriben como JSON al terminar.
+public final class Metrics {
+    private static volatile boolean enabled = false;
+    private static final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    public static void count(String name, long delta) {
+        if (!enabled) return;
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    public static void record(String name, long value) {
+        if (!enabled) return;
+        histograms.computeIfAbsent(name, key -> new Histogram()).record(value);
+    }
+
+    public static long counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    public static String toJson() {
+        StringBuilder out = new StringBuilder("{\n  \"counters\": {");
+        String separator = "\n";
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            out.append(separator).append("    ");
+            string(out, entry.getKey()).append(": ").append(entry.getValue().sum());
+            separator = ",\n";
+        }
+        out.append(counters.isEmpty() ? "" : "\n  ").append("},\n  \"histograms\": {");
+        separator = "\n";
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            out.append(separator).append("    ");
+            string(out, entry.getKey()).append(": ");
+            entry.getValue().appendJson(out);
+            separator = ",\n";
+        }
+        return out.append(histograms.isEmpty() ? "" : "\n  ").append("}\n}\n").toString();
+    }
+
+    public static void write(Path path) throws IOException {
+        Files.writeString(path, toJson());
+    }
+
+    private static StringBuilder string(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') out.append('\\');
+            out.append(c);
+        }
+        return out.append('"');
+    }
+
+    // Conteo, suma, mínimo, máximo y cubetas por potencia de dos para
+    // aproximar percentiles sin guardar cada valor.
+    static final class Histogram {
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+        private final long[] buckets = new long[65];
+
+        synchronized void record(long value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            buckets[value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value)]++;
+        }
+
+        // Límite superior de la cubeta donde cae el percentil, sin pasar del máximo.
+        private long percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int bucket = 0; bucket < buckets.length; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= rank) {
+                    return bucket == 0 ? 0 : Math.min(max, bucket == 64 ? Long.MAX_VALUE : (1L << bucket) - 1);
+                }
+            }
+            return max;
+        }
+
+        synchronized void appendJson(StringBuilder out) {
+            out.append("{\"count\": ").append(count)
+                    .append(", \"sum\": ").append(sum)
+                    .append(", \"min\": ").append(min)
+                    .append(", \"max\": ").append(max)
+                    .append(", \"mean\": ").append(sum / count)
+                    .append(", \"p50\": ").append(percentile(0.5))
+                    .append(", \"p99\": ").append(percentile(0.99))
+                    .append('}');
+        }
+    }
+}
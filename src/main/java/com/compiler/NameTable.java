@@ -0,0 +1,123 @@
+package com.compiler;
+
+import java.util.Arrays;
+
+import static com.compiler.TokenType.*;
+
+// Guarda una sola vez el texto de cada identificador, palabra reservada, cadena
+// o número y lo identifica con un entero. El texto se copia a un arreglo propio,
+// así que no depende de la ventana del AnalizadorLexico; los String, números y
+// literales de cadena se crean solo cuando se piden y se reutilizan. Es seguro
+// usarla desde varios hilos (ver CompilationPipeline).
+public final class NameTable {
+    private static final String[] KEYWORDS = {"and", "else", "false", "if", "null", "or", "print", "input",
+            "true", "var", "while", "program", "then", "end"};
+    private static final TokenType[] KEYWORD_TYPES = {AND, ELSE, FALSE, IF, NULL, OR, PRINT, INPUT,
+            TRUE, VAR, WHILE, PROGRAM, THEN, END};
+
+    private char[] chars = new char[4096];
+    private int charCount = 0;
+    private int[] starts = new int[256];
+    private int[] lengths = new int[256];
+    private int[] hashes = new int[256];
+    private String[] texts = new String[256];
+    private Object[] literals = new Object[256];
+    private int count = 0;
+    // Tabla hash abierta: id + 1 de cada nombre, 0 si la casilla está libre.
+    private int[] table = new int[512];
+
+    public NameTable() {
+        for (String keyword : KEYWORDS) {
+            intern(keyword);
+        }
+    }
+
+    public int intern(String text) {
+        return intern(text.toCharArray(), 0, text.length());
+    }
+
+    public synchronized int intern(char[] source, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + source[i];
+        }
+        int mask = table.length - 1;
+        int index = mix(hash) & mask;
+        while (table[index] != 0) {
+            int id = table[index] - 1;
+            if (hashes[id] == hash && lengths[id] == length
+                    && Arrays.equals(chars, starts[id], starts[id] + length, source, start, start + length)) {
+                return id;
+            }
+            index = (index + 1) & mask;
+        }
+        return add(source, start, length, hash, index);
+    }
+
+    private int add(char[] source, int start, int length, int hash, int index) {
+        if (count == starts.length) {
+            int capacity = count * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+            literals = Arrays.copyOf(literals, capacity);
+        }
+        if (charCount + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+        }
+        System.arraycopy(source, start, chars, charCount, length);
+        int id = count++;
+        starts[id] = charCount;
+        lengths[id] = length;
+        hashes[id] = hash;
+        charCount += length;
+        table[index] = id + 1;
+        if (count * 2 > table.length) rehash();
+        return id;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < count; id++) {
+            int index = mix(hashes[id]) & mask;
+            while (table[index] != 0) index = (index + 1) & mask;
+            table[index] = id + 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    // Tipo de la palabra reservada con ese id, o IDENTIFIER.
+    public TokenType keyword(int id) {
+        return id < KEYWORD_TYPES.length ? KEYWORD_TYPES[id] : IDENTIFIER;
+    }
+
+    public synchronized String text(int id) {
+        String text = texts[id];
+        if (text == null) {
+            text = new String(chars, starts[id], lengths[id]);
+            texts[id] = text;
+        }
+        return text;
+    }
+
+    // Valor de un número, como Double.
+    public synchronized Double number(int id) {
+        if (!(literals[id] instanceof Double)) literals[id] = Double.parseDouble(text(id));
+        return (Double) literals[id];
+    }
+
+    // Valor de un literal de cadena: el texto sin las comillas.
+    public synchronized String string(int id) {
+        if (!(literals[id] instanceof String)) literals[id] = new String(chars, starts[id] + 1, lengths[id] - 2);
+        return (String) literals[id];
+    }
+}
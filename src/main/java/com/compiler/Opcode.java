@@ -0,0 +1,165 @@
+package com.compiler;
+
+// Códigos de operación del bytecode que interpreta Execution.
+// Cada instrucción ocupa una posición para el código y una por cada operando.
+public final class Opcode {
+    public static final int PUSH_NUMBER = 0;   // operando: índice en la tabla de números
+    public static final int PUSH_STRING = 1;   // operando: índice en la tabla de cadenas
+    public static final int PUSH_TRUE = 2;
+    public static final int PUSH_FALSE = 3;
+    public static final int PUSH_NULL = 4;
+    public static final int LOAD = 5;          // operando: casilla de la variable
+    public static final int REFERENCE = 6;     // operando: casilla (destino de = o input)
+    public static final int STORE = 7;
+    public static final int POP = 8;
+    public static final int ADD = 9;
+    public static final int SUB = 10;
+    public static final int MUL = 11;
+    public static final int DIV = 12;
+    public static final int MOD = 13;
+    public static final int AND = 14;
+    public static final int OR = 15;
+    public static final int NOT = 16;
+    public static final int GREATER = 17;
+    public static final int GREATER_EQUAL = 18;
+    public static final int LESS = 19;
+    public static final int LESS_EQUAL = 20;
+    public static final int EQUAL_EQUAL = 21;
+    public static final int NOT_EQUAL = 22;
+    public static final int PRINT = 23;
+    public static final int INPUT = 24;
+    public static final int PROGRAM = 25;      // operando: índice del nombre en la tabla de cadenas
+    public static final int JUMP = 26;         // operando: dirección destino
+    public static final int JUMP_IF_FALSE = 27; // operando: dirección destino
+
+    // Superinstrucciones: secuencias frecuentes fusionadas por Superinstructions.
+    // No las genera el BytecodeGenerator ni las entiende JvmBackend; solo existen
+    // en el código que ejecuta Execution. op es el opcode del operador binario
+    // y k el índice de un número en la tabla.
+    public static final int INCREMENT = 28;              // x, k: x = x + k
+    public static final int STORE_OP_CONST = 29;         // op, x, a, k: x = a op k
+    public static final int STORE_OP_VARS = 30;          // op, x, a, b: x = a op b
+    public static final int LOAD_OP_CONST = 31;          // op, a, k: apila a op k
+    public static final int LOAD_OP_VARS = 32;           // op, a, b: apila a op b
+    public static final int COMPARE_JUMP = 33;           // op, destino: saca b y a, salta si no a op b
+    public static final int COMPARE_CONST_JUMP = 34;     // op, k, destino: saca a, salta si no a op k
+    public static final int COMPARE_VAR_CONST_JUMP = 35; // op, a, k, destino: salta si no a op k
+    public static final int COMPARE_VARS_JUMP = 36;      // op, a, b, destino: salta si no a op b
+
+    // Operadores especializados por TypeInference cuando los tipos de sus
+    // operandos se conocen al compilar; no revisan tipos. Como las
+    // superinstrucciones, solo existen en el código que ejecuta Execution.
+    public static final int ADD_NUMBERS = 37;
+    public static final int SUB_NUMBERS = 38;
+    public static final int MUL_NUMBERS = 39;
+    public static final int DIV_NUMBERS = 40;
+    public static final int MOD_NUMBERS = 41;
+    public static final int CONCAT = 42;                 // + con algún operando que no es número y ninguno null
+    public static final int AND_BOOLEANS = 43;
+    public static final int OR_BOOLEANS = 44;
+    public static final int NOT_BOOLEAN = 45;
+    public static final int GREATER_NUMBERS = 46;
+    public static final int GREATER_EQUAL_NUMBERS = 47;
+    public static final int LESS_NUMBERS = 48;
+    public static final int LESS_EQUAL_NUMBERS = 49;
+    public static final int EQUAL_NUMBERS = 50;
+    public static final int NOT_EQUAL_NUMBERS = 51;
+
+    // Cadenas de CONCAT juntadas por ConcatChains; n es el número de partes.
+    public static final int CONCAT_N = 52;               // n: saca n valores y apila su concatenación
+    public static final int PRINT_CONCAT = 53;           // n: imprime n valores en orden, sin concatenarlos
+    // PUSH_NUMBER de una constante entera (ValueType.INTEGER).
+    public static final int PUSH_INTEGER = 54;           // k: índice en la tabla de números
+
+    // Fin de un ciclo rotado por LoopOptimizer: el incremento del contador
+    // seguido de la condición del while. A diferencia de COMPARE_*_JUMP,
+    // saltan (al inicio del cuerpo) si la comparación es verdadera.
+    public static final int INCREMENT_COMPARE_JUMP = 55;       // x, k, op, a, destino: x += k, salta si x op a
+    public static final int INCREMENT_COMPARE_CONST_JUMP = 56; // x, k, op, c, destino: x += k, salta si x op c
+
+    static final String[] NAMES = {
+            "PUSH_NUMBER", "PUSH_STRING", "PUSH_TRUE", "PUSH_FALSE", "PUSH_NULL",
+            "LOAD", "REFERENCE", "STORE", "POP",
+            "ADD", "SUB", "MUL", "DIV", "MOD", "AND", "OR", "NOT",
+            "GREATER", "GREATER_EQUAL", "LESS", "LESS_EQUAL", "EQUAL_EQUAL", "NOT_EQUAL",
+            "PRINT", "INPUT", "PROGRAM", "JUMP", "JUMP_IF_FALSE",
+            "INCREMENT", "STORE_OP_CONST", "STORE_OP_VARS", "LOAD_OP_CONST", "LOAD_OP_VARS",
+            "COMPARE_JUMP", "COMPARE_CONST_JUMP", "COMPARE_VAR_CONST_JUMP", "COMPARE_VARS_JUMP",
+            "ADD_NUMBERS", "SUB_NUMBERS", "MUL_NUMBERS", "DIV_NUMBERS", "MOD_NUMBERS", "CONCAT",
+            "AND_BOOLEANS", "OR_BOOLEANS", "NOT_BOOLEAN",
+            "GREATER_NUMBERS", "GREATER_EQUAL_NUMBERS", "LESS_NUMBERS", "LESS_EQUAL_NUMBERS",
+            "EQUAL_NUMBERS", "NOT_EQUAL_NUMBERS",
+            "CONCAT_N", "PRINT_CONCAT",
+            "PUSH_INTEGER",
+            "INCREMENT_COMPARE_JUMP", "INCREMENT_COMPARE_CONST_JUMP"
+    };
+
+    // Operandos de cada instrucción, uno por letra: k índice en la tabla de
+    // números, s en la de cadenas, x casilla de variable, o operador binario,
+    // j dirección de salto y n número de valores.
+    static final char CONSTANT = 'k', STRING = 's', VARIABLE = 'x', OPERATOR = 'o', TARGET = 'j', COUNT = 'n';
+    private static final String[] OPERANDS = {
+            "k", "s", "", "", "",
+            "x", "x", "", "",
+            "", "", "", "", "", "", "", "",
+            "", "", "", "", "", "",
+            "", "", "s", "j", "j",
+            "xk", "oxxk", "oxxx", "oxk", "oxx",
+            "oj", "okj", "oxkj", "oxxj",
+            "", "", "", "", "", "",
+            "", "", "",
+            "", "", "", "",
+            "", "",
+            "n", "n",
+            "k",
+            "xkoxj", "xkokj"
+    };
+
+    private Opcode() {}
+
+    // Número de posiciones que ocupa la instrucción en el arreglo de código.
+    public static int length(int opcode) {
+        return 1 + OPERANDS[opcode].length();
+    }
+
+    // Tipo del operando en la posición index (desde 1) de la instrucción.
+    static char operand(int opcode, int index) {
+        return OPERANDS[opcode].charAt(index - 1);
+    }
+
+    public static boolean isJump(int opcode) {
+        return opcode == JUMP || opcode == JUMP_IF_FALSE;
+    }
+
+    // Posición del operando con la dirección de salto (relativa al opcode), o 0
+    // si la instrucción no salta. Para JUMP y JUMP_IF_FALSE es 1.
+    public static int jumpOperand(int opcode) {
+        return switch (opcode) {
+            case JUMP, JUMP_IF_FALSE -> 1;
+            case COMPARE_JUMP -> 2;
+            case COMPARE_CONST_JUMP -> 3;
+            case COMPARE_VAR_CONST_JUMP, COMPARE_VARS_JUMP -> 4;
+            case INCREMENT_COMPARE_JUMP, INCREMENT_COMPARE_CONST_JUMP -> 5;
+            default -> 0;
+        };
+    }
+
+    // Operador genérico del que salió un operador especializado; los demás se devuelven igual.
+    public static int generic(int opcode) {
+        return switch (opcode) {
+            case ADD_NUMBERS, CONCAT -> ADD;
+            case SUB_NUMBERS, MUL_NUMBERS, DIV_NUMBERS, MOD_NUMBERS -> opcode - SUB_NUMBERS + SUB;
+            case AND_BOOLEANS -> AND;
+            case OR_BOOLEANS -> OR;
+            case NOT_BOOLEAN -> NOT;
+            case PUSH_INTEGER -> PUSH_NUMBER;
+            case GREATER_NUMBERS, GREATER_EQUAL_NUMBERS, LESS_NUMBERS, LESS_EQUAL_NUMBERS, EQUAL_NUMBERS,
+                 NOT_EQUAL_NUMBERS -> opcode - GREATER_NUMBERS + GREATER;
+            default -> opcode;
+        };
+    }
+
+    public static String name(int opcode) {
+        return NAMES[opcode];
+    }
+}
@@ -0,0 +1,94 @@
+package com.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Frecuencias dinámicas de secuencias de opcodes (2 a 4 instrucciones) a partir
+// de los conteos por pc de Execution.profile(). Solo se cuentan
+// secuencias en línea recta: ninguna instrucción salvo la primera es destino de
+// un salto y ninguna salvo la última salta, así que todas se ejecutan tantas
+// veces como la primera. Sirve para decidir qué agregar a Superinstructions.
+public class OpcodeProfile {
+    private static final int MAX_LENGTH = 4;
+    private static final int TOP = 15;
+
+    private final Bytecode bytecode;
+    private final long[] counts;
+
+    public OpcodeProfile(Bytecode bytecode, long[] counts) {
+        this.bytecode = bytecode;
+        this.counts = counts;
+    }
+
+    // Instrucciones despachadas en la ejecución contada.
+    public long dispatches() {
+        long total = 0;
+        for (long count : counts) total += count;
+        return total;
+    }
+
+    // Instrucciones que se habrían despachado con las superinstrucciones.
+    public long fusedDispatches() {
+        Superinstructions superinstructions = new Superinstructions(bytecode);
+        int[] code = superinstructions.rewrite().code;
+        long total = 0;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            total += counts[superinstructions.origin(pc)];
+        }
+        return total;
+    }
+
+    // Conteo de cada secuencia de length opcodes, de la más frecuente a la menos.
+    public List<Map.Entry<String, Long>> ngrams(int length) {
+        int[] code = bytecode.code;
+        boolean[] targets = new boolean[code.length + 1];
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            int operand = Opcode.jumpOperand(code[pc]);
+            if (operand != 0) targets[Math.min(Math.max(code[pc + operand], 0), code.length)] = true;
+        }
+
+        Map<String, Long> frequencies = new HashMap<>();
+        StringBuilder key = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (counts[pc] == 0) continue;
+            key.setLength(0);
+            int n = 0;
+            int previous = -1;
+            for (int p = pc; p < code.length && n < length; p += Opcode.length(code[p])) {
+                if (n > 0 && (targets[p] || Opcode.jumpOperand(previous) != 0)) break;
+                if (n > 0) key.append(' ');
+                key.append(Opcode.name(code[p]));
+                previous = code[p];
+                n++;
+            }
+            if (n == length) frequencies.merge(key.toString(), counts[pc], Long::sum);
+        }
+
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(frequencies.entrySet());
+        sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        return sorted;
+    }
+
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        String newline = System.lineSeparator();
+        long dispatches = dispatches();
+        long fused = fusedDispatches();
+        out.append("Instrucciones despachadas: ").append(dispatches).append(newline);
+        out.append("Con superinstrucciones: ").append(fused);
+        if (fused > 0) out.append(" (").append(String.format("%.2f", (double) dispatches / fused)).append("x menos)");
+        out.append(newline);
+        for (int length = 2; length <= MAX_LENGTH; length++) {
+            out.append(newline).append("Secuencias de ").append(length).append(':').append(newline);
+            List<Map.Entry<String, Long>> ngrams = ngrams(length);
+            for (int i = 0; i < Math.min(TOP, ngrams.size()); i++) {
+                String count = Long.toString(ngrams.get(i).getValue());
+                out.append(" ".repeat(Math.max(0, 12 - count.length()))).append(count)
+                        .append("  ").append(ngrams.get(i).getKey()).append(newline);
+            }
+        }
+        return out.toString();
+    }
+}
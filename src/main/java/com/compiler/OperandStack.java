@@ -0,0 +1,202 @@
+package com.compiler;
+
+import java.util.Arrays;
+
+// Pila de operandos respaldada por arreglos primitivos. Los números, los
+// enteros y los booleanos viven en el arreglo de longs (los números como los
+// bits de su double), de modo que las operaciones aritméticas y lógicas no
+// crean objetos; solo las cadenas usan referencias.
+public class OperandStack {
+    private long[] values = new long[32];
+    private byte[] types = new byte[32];
+    private String[] strings = new String[32];
+    private int top = 0;
+
+    public int size() {
+        return top;
+    }
+
+    public boolean isEmpty() {
+        return top == 0;
+    }
+
+    // Tipo del valor a la profundidad indicada (0 es la cima).
+    public byte type(int depth) {
+        return types[top - 1 - depth];
+    }
+
+    public void pushNumber(double value) {
+        ensureCapacity();
+        types[top] = ValueType.NUMBER;
+        values[top++] = Double.doubleToRawLongBits(value);
+    }
+
+    public void pushInteger(long value) {
+        ensureCapacity();
+        types[top] = ValueType.INTEGER;
+        values[top++] = value;
+    }
+
+    public void pushBoolean(boolean value) {
+        ensureCapacity();
+        types[top] = ValueType.BOOLEAN;
+        values[top++] = value ? 1 : 0;
+    }
+
+    public void pushString(String value) {
+        ensureCapacity();
+        types[top] = ValueType.STRING;
+        strings[top++] = value;
+    }
+
+    public void pushNull() {
+        ensureCapacity();
+        types[top++] = ValueType.NULL;
+    }
+
+    // Referencia a una variable: destino de una asignación o de input.
+    public void pushReference(int index) {
+        ensureCapacity();
+        types[top] = ValueType.REFERENCE;
+        values[top++] = index;
+    }
+
+    // Copia el valor de una variable a la cima, sin crear objetos.
+    public void load(Frame frame, int slot) {
+        ensureCapacity();
+        types[top] = frame.types[slot];
+        values[top] = frame.values[slot];
+        strings[top++] = frame.strings[slot];
+    }
+
+    // Saca la cima y la guarda en la variable indicada.
+    public void store(Frame frame, int slot) {
+        top--;
+        frame.types[slot] = types[top];
+        frame.values[slot] = values[top];
+        frame.strings[slot] = strings[top];
+        strings[top] = null;
+    }
+
+    // Saca un número o un entero, como double.
+    public double popNumber() {
+        int index = --top;
+        return types[index] == ValueType.INTEGER ? (double) values[index] : Double.longBitsToDouble(values[index]);
+    }
+
+    public long popInteger() {
+        return values[--top];
+    }
+
+    public boolean popBoolean() {
+        return values[--top] != 0;
+    }
+
+    public boolean booleanAt(int depth) {
+        return values[top - 1 - depth] != 0;
+    }
+
+    public int referenceAt(int depth) {
+        return (int) values[top - 1 - depth];
+    }
+
+    public int popReference() {
+        return (int) values[--top];
+    }
+
+    public String popString() {
+        String value = strings[--top];
+        strings[top] = null;
+        return value;
+    }
+
+    public void pop() {
+        strings[--top] = null;
+    }
+
+    // Valor de la cima como objeto; solo para rutas que no son críticas.
+    public Object peekValue() {
+        int index = top - 1;
+        return switch (types[index]) {
+            case ValueType.NUMBER -> Double.longBitsToDouble(values[index]);
+            case ValueType.INTEGER -> (double) values[index];
+            case ValueType.BOOLEAN -> values[index] != 0;
+            case ValueType.STRING -> strings[index];
+            default -> null;
+        };
+    }
+
+    // Agrega la representación textual del valor a la profundidad indicada.
+    public void appendTo(StringBuilder builder, int depth) {
+        int index = top - 1 - depth;
+        switch (types[index]) {
+            case ValueType.NUMBER -> builder.append(Double.longBitsToDouble(values[index]));
+            case ValueType.INTEGER -> ValueType.appendInteger(builder, values[index]);
+            case ValueType.BOOLEAN -> builder.append(values[index] != 0);
+            case ValueType.STRING -> builder.append(strings[index]);
+            default -> builder.append((Object) null);
+        }
+    }
+
+    // Reemplaza los count valores de la cima por su concatenación, en orden.
+    // El StringBuilder se dimensiona una vez y los números se agregan sin
+    // crear cadenas intermedias.
+    public void concat(int count) {
+        int first = top - count;
+        int capacity = 0;
+        for (int index = first; index < top; index++) {
+            capacity += types[index] == ValueType.STRING ? strings[index].length() : 24;
+        }
+        StringBuilder builder = new StringBuilder(capacity);
+        for (int depth = count - 1; depth >= 0; depth--) appendTo(builder, depth);
+        drop(count);
+        pushString(builder.toString());
+    }
+
+    // Escribe en out los count valores de la cima, en orden, y los saca.
+    public void print(int count, OutputSink out) {
+        for (int index = top - count; index < top; index++) {
+            switch (types[index]) {
+                case ValueType.NUMBER -> out.print(Double.longBitsToDouble(values[index]));
+                case ValueType.INTEGER -> out.print(values[index]);
+                case ValueType.BOOLEAN -> out.print(values[index] != 0);
+                case ValueType.STRING -> out.print(strings[index]);
+                default -> out.print("null");
+            }
+        }
+        drop(count);
+    }
+
+    // Saca count valores de la cima.
+    public void drop(int count) {
+        for (int i = 0; i < count; i++) strings[--top] = null;
+    }
+
+    // Compara los dos valores de la cima con la semántica de equals de Java.
+    // Un entero y un número se comparan como doubles.
+    public boolean topEquals() {
+        int b = top - 1;
+        int a = top - 2;
+        if (types[a] != types[b]) {
+            if (!ValueType.isNumeric(types[a]) || !ValueType.isNumeric(types[b])) return false;
+            return Double.doubleToLongBits(number(a)) == Double.doubleToLongBits(number(b));
+        }
+        return switch (types[a]) {
+            case ValueType.STRING -> strings[a].equals(strings[b]);
+            case ValueType.NUMBER -> Double.doubleToLongBits(number(a)) == Double.doubleToLongBits(number(b));
+            default -> values[a] == values[b];
+        };
+    }
+
+    private double number(int index) {
+        return types[index] == ValueType.INTEGER ? (double) values[index] : Double.longBitsToDouble(values[index]);
+    }
+
+    private void ensureCapacity() {
+        if (top == types.length) {
+            values = Arrays.copyOf(values, top * 2);
+            types = Arrays.copyOf(types, top * 2);
+            strings = Arrays.copyOf(strings, top * 2);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+
+// Destino de lo que imprime un programa. Execution escribe aquí cada print
+// sin pasar por un PrintStream sincronizado, y llama a flush() antes de cada
+// input y al terminar la ejecución (también si termina con error).
+public interface OutputSink {
+    void print(double value);
+
+    // Un entero; se escribe como el double del mismo valor, con todos sus
+    // dígitos si un double no lo guarda exacto (ValueType.appendInteger).
+    void print(long value);
+
+    void print(boolean value);
+
+    void print(String value);
+
+    void flush();
+
+    // Salida estándar con un búfer de 64 KiB.
+    static OutputSink console() {
+        return new Buffered(System.out, 1 << 16, Charset.forName(System.getProperty("stdout.encoding", Charset.defaultCharset().name())));
+    }
+
+    // Escribe en out cuando el búfer llega a threshold caracteres o en flush().
+    static OutputSink buffered(OutputStream out, int threshold, Charset charset) {
+        return new Buffered(out, threshold, charset);
+    }
+
+    // Guarda todo en memoria; el texto se obtiene con toString().
+    static Capture capture() {
+        return new Capture();
+    }
+
+    // Descarta todo, para medir sin el costo de la salida.
+    static OutputSink discard() {
+        return new OutputSink() {
+            @Override
+            public void print(double value) {
+            }
+
+            @Override
+            public void print(long value) {
+            }
+
+            @Override
+            public void print(boolean value) {
+            }
+
+            @Override
+            public void print(String value) {
+            }
+
+            @Override
+            public void flush() {
+            }
+        };
+    }
+
+    final class Capture implements OutputSink {
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void print(double value) {
+            text.append(value);
+        }
+
+        @Override
+        public void print(long value) {
+            ValueType.appendInteger(text, value);
+        }
+
+        @Override
+        public void print(boolean value) {
+            text.append(value);
+        }
+
+        @Override
+        public void print(String value) {
+            text.append(value);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+
+    final class Buffered implements OutputSink {
+        private final StringBuilder text = new StringBuilder();
+        private final OutputStream out;
+        private final int threshold;
+        private final Charset charset;
+
+        private Buffered(OutputStream out, int threshold, Charset charset) {
+            this.out = out;
+            this.threshold = threshold;
+            this.charset = charset;
+        }
+
+        @Override
+        public void print(double value) {
+            text.append(value);
+            if (text.length() >= threshold) drain();
+        }
+
+        @Override
+        public void print(long value) {
+            ValueType.appendInteger(text, value);
+            if (text.length() >= threshold) drain();
+        }
+
+        @Override
+        public void print(boolean value) {
+            text.append(value);
+            if (text.length() >= threshold) drain();
+        }
+
+        @Override
+        public void print(String value) {
+            text.append(value);
+            if (text.length() >= threshold) drain();
+        }
+
+        @Override
+        public void flush() {
+            drain();
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void drain() {
+            if (text.isEmpty()) return;
+            byte[] bytes = text.toString().getBytes(charset);
+            text.setLength(0);
+            try {
+                out.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Reportes del perfil de una ejecución (Execution.profile()): veces y tiempo
+// acumulado por dirección del bytecode y por línea del código fuente, vueltas
+// de cada ciclo (saltos hacia atrás del END) y el perfil en formato de pilas
+// plegadas ("marco;marco;... valor") que aceptan flamegraph.pl, speedscope y
+// similares. El tiempo de cada instrucción va hasta que empieza la siguiente,
+// así que incluye la espera de input.
+public class Profiler {
+    private static final int TOP = 20;
+
+    private final Bytecode bytecode;
+    private final long[] counts;
+    private final long[] times;
+    // Línea de cada pc; los saltos que vienen de direcciones del VCI no tienen
+    // línea (0) y se cuentan en la de la instrucción anterior.
+    private final int[] lines;
+    // Ciclos como {pc del salto hacia atrás, pc del inicio}, del más externo al más interno.
+    private final List<int[]> loops = new ArrayList<>();
+
+    public Profiler(Bytecode bytecode, long[] counts, long[] times) {
+        this.bytecode = bytecode;
+        this.counts = counts;
+        this.times = times;
+        int[] code = bytecode.code;
+        this.lines = new int[code.length];
+        int previous = 0;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            lines[pc] = bytecode.lines[pc] != 0 ? bytecode.lines[pc] : previous;
+            previous = lines[pc];
+            if (code[pc] == Opcode.JUMP && code[pc + 1] <= pc) loops.add(new int[]{pc, code[pc + 1]});
+        }
+        loops.sort(Comparator.<int[]>comparingInt(loop -> loop[1]).thenComparingInt(loop -> -loop[0]));
+    }
+
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        String newline = System.lineSeparator();
+        int[] code = bytecode.code;
+        long total = 0;
+        long instructions = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            total += times[pc];
+            instructions += counts[pc];
+        }
+        out.append("Instrucciones ejecutadas: ").append(instructions).append(newline);
+        out.append("Tiempo total: ").append(millis(total)).append(" ms").append(newline);
+
+        // Líneas más costosas.
+        Map<Integer, long[]> byLine = new TreeMap<>();
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            long[] line = byLine.computeIfAbsent(lines[pc], key -> new long[2]);
+            line[0] += counts[pc];
+            line[1] += times[pc];
+        }
+        List<Map.Entry<Integer, long[]>> hotLines = new ArrayList<>(byLine.entrySet());
+        hotLines.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+        out.append(newline).append("Líneas:").append(newline);
+        out.append(String.format("%8s %14s %12s %7s%n", "Línea", "Veces", "ms", "%"));
+        for (int i = 0; i < Math.min(TOP, hotLines.size()); i++) {
+            long[] line = hotLines.get(i).getValue();
+            if (line[0] == 0) break;
+            out.append(String.format("%8d %14d %12s %7s%n", hotLines.get(i).getKey(), line[0], millis(line[1]), percent(line[1], total)));
+        }
+
+        // Instrucciones más costosas.
+        Integer[] addresses = starts();
+        Arrays.sort(addresses, (a, b) -> Long.compare(times[b], times[a]));
+        out.append(newline).append("Direcciones:").append(newline);
+        out.append(String.format("%8s %8s %14s %12s %7s  %s%n", "Dir.", "Línea", "Veces", "ms", "%", "Instrucción"));
+        for (int i = 0; i < Math.min(TOP, addresses.length); i++) {
+            int pc = addresses[i];
+            if (counts[pc] == 0) break;
+            out.append(String.format("%8d %8d %14d %12s %7s  %s%n", pc, lines[pc], counts[pc], millis(times[pc]),
+                    percent(times[pc], total), bytecode.instructionAt(pc)));
+        }
+
+        // Ciclos: vueltas (veces que se tomó el salto del END) y tiempo dentro del ciclo.
+        out.append(newline).append("Ciclos:").append(newline);
+        out.append(String.format("%8s %8s %14s %12s %7s%n", "Dir.", "Línea", "Vueltas", "ms", "%"));
+        for (int[] loop : loops) {
+            long time = 0;
+            for (int pc = loop[1]; pc <= loop[0]; pc++) time += times[pc];
+            out.append(String.format("%8d %8d %14d %12s %7s%n", loop[0], lines[loop[1]], counts[loop[0]],
+                    millis(time), percent(time, total)));
+        }
+        return out.toString();
+    }
+
+    // Una fila por pila (programa, ciclos que la contienen, línea, opcode) con
+    // los nanosegundos acumulados.
+    public String folded() {
+        Map<String, Long> stacks = new LinkedHashMap<>();
+        String program = programName();
+        StringBuilder stack = new StringBuilder();
+        for (int pc : starts()) {
+            if (times[pc] == 0) continue;
+            stack.setLength(0);
+            stack.append(program);
+            for (int[] loop : loops) {
+                if (loop[1] <= pc && pc <= loop[0]) stack.append(";while linea ").append(lines[loop[1]]);
+            }
+            stack.append(";linea ").append(lines[pc]).append(';').append(Opcode.name(bytecode.code[pc]));
+            stacks.merge(stack.toString(), times[pc], Long::sum);
+        }
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Long> entry : stacks.entrySet()) {
+            out.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private String programName() {
+        int[] code = bytecode.code;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (code[pc] == Opcode.PROGRAM) return bytecode.strings[code[pc + 1]].replace(' ', '_').replace(';', '_');
+        }
+        return "programa";
+    }
+
+    // pc donde empieza cada instrucción.
+    private Integer[] starts() {
+        List<Integer> starts = new ArrayList<>();
+        int[] code = bytecode.code;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) starts.add(pc);
+        return starts.toArray(new Integer[0]);
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    private static String percent(long part, long total) {
+        return total == 0 ? "0.0" : String.format("%.1f", 100.0 * part / total);
+    }
+}
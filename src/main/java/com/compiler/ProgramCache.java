@@ -0,0 +1,184 @@
+package com.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Caché en disco de programas compilados. La llave es el SHA-256 del código
+// fuente junto con la versión del compilador y las opciones que cambian el
+// resultado. Cada entrada es un archivo que se escribe en un temporal y se
+// mueve de forma atómica, así que varios procesos pueden compartir el
+// directorio: un lector ve la entrada completa o no la ve. Al pasar del tamaño
+// máximo se borran las entradas usadas hace más tiempo (la fecha de
+// modificación se actualiza en cada uso); el borrado se hace con un candado
+// de archivo para que dos procesos no lo hagan a la vez.
+public class ProgramCache {
+    // Cambia cuando cambia el formato de las entradas.
+    static final int FORMAT = 2;
+    static final long DEFAULT_MAX_BYTES = 64L << 20;
+    private static final int MAGIC = 0x56434943;
+    private static final String SUFFIX = ".vcic";
+    private static final Object EVICTING = new Object();
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public ProgramCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".cache", "compilador-vci");
+    }
+
+    // Llave de un archivo fuente; el archivo se lee por partes.
+    public String key(Path source, String options) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update((Compilador.VERSION + '\0' + FORMAT + '\0' + options + '\0').getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Devuelve el programa guardado con esa llave, o null si no está o no se puede leer.
+    public CompiledProgram load(String key) {
+        Path entry = directory.resolve(key + SUFFIX);
+        try {
+            CompiledProgram program;
+            try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+                program = read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), key);
+            }
+            if (program != null) touch(entry);
+            return program;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // Entrada dañada o de otra versión: se vuelve a compilar y se reemplaza.
+            return null;
+        }
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Otro proceso pudo haberla borrado; no afecta a este.
+        }
+    }
+
+    public void store(String key, CompiledProgram program) {
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    write(out, key, program);
+                }
+                Path entry = directory.resolve(key + SUFFIX);
+                try {
+                    Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            evict();
+        } catch (IOException e) {
+            System.err.println("Error writing program cache: " + e.getMessage());
+        }
+    }
+
+    // Borra las entradas menos usadas hasta quedar dentro de maxBytes. El
+    // FileLock solo excluye a otros procesos; dentro de la JVM dos hilos que lo
+    // pidan a la vez fallan, así que aquí se turnan con EVICTING.
+    private void evict() throws IOException {
+        synchronized (EVICTING) {
+            evictLocked();
+        }
+    }
+
+    private void evictLocked() throws IOException {
+        try (FileChannel lockFile = FileChannel.open(directory.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockFile.lock();
+            try {
+                List<Path> entries = new ArrayList<>();
+                Map<Path, BasicFileAttributes> attributes = new LinkedHashMap<>();
+                long total = 0;
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                    for (Path entry : stream) {
+                        try {
+                            BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                            entries.add(entry);
+                            attributes.put(entry, attrs);
+                            total += attrs.size();
+                        } catch (NoSuchFileException e) {
+                            // Borrada por otro proceso.
+                        }
+                    }
+                }
+                if (total <= maxBytes) return;
+                entries.sort((a, b) -> attributes.get(a).lastModifiedTime().compareTo(attributes.get(b).lastModifiedTime()));
+                for (Path entry : entries) {
+                    if (total <= maxBytes) break;
+                    Files.deleteIfExists(entry);
+                    total -= attributes.get(entry).size();
+                }
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private static void write(DataOutputStream out, String key, CompiledProgram program) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeUTF(key);
+        VciFile.write(program, out);
+    }
+
+    // La entrada es el encabezado de la caché seguido del programa en formato .vci.
+    private static CompiledProgram read(ByteBuffer in, String key) throws IOException {
+        if (in.getInt() != MAGIC || in.getInt() != FORMAT) return null;
+        byte[] stored = new byte[in.getShort() & 0xFFFF];
+        in.get(stored);
+        if (!new String(stored, StandardCharsets.UTF_8).equals(key)) return null;
+        return VciFile.read(in);
+    }
+}
@@ -0,0 +1,122 @@
+package com.compiler;
+
+// Código de tres direcciones que ejecuta RegisterMachine. Cada instrucción lee
+// sus operandos de registros y escribe el resultado en otro, en lugar de pasar
+// por la pila de operandos. Los registros son las casillas de un Frame:
+//
+//   [0, variables)          las variables del programa, en la misma casilla
+//   [variables, temporales) las constantes, cargadas antes de empezar
+//   [temporales, size)      los temporales, uno por profundidad de la pila
+//
+// Lo genera RegisterTranslator a partir del bytecode con operadores
+// especializados. op es el opcode del operador binario de Opcode.
+public class RegisterCode {
+    static final int MOVE = 0;                // d, s
+    static final int ARITHMETIC = 1;          // op, d, a, b: d = a op b, con los tipos revisados
+    static final int ARITHMETIC_NUMBERS = 2;  // op, d, a, b: entre números
+    static final int COMPARE = 3;             // op, d, a, b
+    static final int COMPARE_NUMBERS = 4;     // op, d, a, b
+    static final int LOGIC = 5;               // op, d, a, b: and u or, con los tipos revisados
+    static final int AND_BOOLEANS = 6;        // d, a, b
+    static final int OR_BOOLEANS = 7;         // d, a, b
+    static final int CONCAT = 8;              // d, a, b
+    static final int NOT = 9;                 // d, a
+    static final int NOT_BOOLEAN = 10;        // d, a
+    static final int PRINT = 11;              // a
+    static final int INPUT = 12;              // x
+    static final int PROGRAM = 13;            // índice del nombre en la tabla de cadenas
+    static final int JUMP = 14;               // destino
+    static final int JUMP_IF_FALSE = 15;      // a, destino
+    static final int BRANCH = 16;             // op, a, b, destino: salta si no a op b
+    static final int BRANCH_NUMBERS = 17;     // op, a, b, destino
+    // Fin de un while: la condición del ciclo, repetida en lugar del JUMP al
+    // BRANCH del inicio. Al revés que BRANCH, salta (al cuerpo) si a op b.
+    static final int LOOP = 18;               // op, a, b, destino
+    static final int LOOP_NUMBERS = 19;       // op, a, b, destino
+    // La suma, la operación más común (acumuladores y contadores), sin el
+    // switch sobre op de ARITHMETIC; con cadenas concatena como +.
+    static final int ADD = 20;                // d, a, b
+
+    private static final String[] NAMES = {
+            "MOVE", "ARITHMETIC", "ARITHMETIC_NUMBERS", "COMPARE", "COMPARE_NUMBERS", "LOGIC",
+            "AND_BOOLEANS", "OR_BOOLEANS", "CONCAT", "NOT", "NOT_BOOLEAN",
+            "PRINT", "INPUT", "PROGRAM", "JUMP", "JUMP_IF_FALSE", "BRANCH", "BRANCH_NUMBERS",
+            "LOOP", "LOOP_NUMBERS", "ADD"
+    };
+
+    private static final int[] OPERANDS = {
+            2, 4, 4, 4, 4, 4,
+            3, 3, 3, 2, 2,
+            1, 1, 1, 1, 2, 4, 4,
+            4, 4, 3
+    };
+
+    final int[] code;
+    final int[] lines;
+    final String[] strings;
+    // Nombres de las variables, como en Bytecode; los registros que siguen no tienen nombre.
+    final String[] variables;
+    // Registros con las constantes ya cargadas; cada ejecución empieza con una copia.
+    private final Frame constants;
+
+    RegisterCode(int[] code, int[] lines, String[] strings, String[] variables, Frame constants) {
+        this.code = code;
+        this.lines = lines;
+        this.strings = strings;
+        this.variables = variables;
+        this.constants = constants;
+    }
+
+    static int length(int opcode) {
+        return 1 + OPERANDS[opcode];
+    }
+
+    // Posición del operando con el registro destino, o 0 si la instrucción no escribe ninguno.
+    static int destination(int opcode) {
+        return switch (opcode) {
+            case ARITHMETIC, ARITHMETIC_NUMBERS, COMPARE, COMPARE_NUMBERS, LOGIC -> 2;
+            case MOVE, ADD, AND_BOOLEANS, OR_BOOLEANS, CONCAT, NOT, NOT_BOOLEAN -> 1;
+            default -> 0;
+        };
+    }
+
+    // Posición del operando con la dirección de salto, o 0 si la instrucción no salta.
+    static int jumpOperand(int opcode) {
+        return switch (opcode) {
+            case JUMP -> 1;
+            case JUMP_IF_FALSE -> 2;
+            case BRANCH, BRANCH_NUMBERS, LOOP, LOOP_NUMBERS -> 4;
+            default -> 0;
+        };
+    }
+
+    public int registers() {
+        return constants.size();
+    }
+
+    // Registros para una ejecución: las variables en null y las constantes cargadas.
+    Frame newFrame() {
+        Frame frame = new Frame(constants.size());
+        System.arraycopy(constants.values, 0, frame.values, 0, constants.size());
+        System.arraycopy(constants.types, 0, frame.types, 0, constants.size());
+        System.arraycopy(constants.strings, 0, frame.strings, 0, constants.size());
+        return frame;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        int pc = 0;
+        while (pc < code.length) {
+            int opcode = code[pc];
+            builder.append(String.format("%5d  %-19s", pc, NAMES[opcode]));
+            for (int operand = 1; operand < length(opcode); operand++) {
+                if (operand > 1) builder.append(' ');
+                builder.append(code[pc + operand]);
+            }
+            builder.append(System.lineSeparator());
+            pc += length(opcode);
+        }
+        return builder.toString();
+    }
+}
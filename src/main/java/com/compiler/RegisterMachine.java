@@ -0,0 +1,222 @@
+package com.compiler;
+
+import static com.compiler.RegisterCode.*;
+
+// Intérprete de RegisterCode, la alternativa a la pila de Execution. Los
+// casos rápidos (números, enteros y booleanos) operan directo sobre los
+// registros; los demás copian los operandos a la pila de Execution y usan el
+// mismo binary, así que los errores y los casos raros (concatenación, null,
+// and/or que se deciden por el operando izquierdo) son exactamente los de la
+// pila.
+class RegisterMachine {
+    private final Execution execution;
+    private final OperandStack stack;
+    private final FunctionTable functionTable;
+    private final OutputSink out;
+    private long dispatches;
+
+    RegisterMachine(Execution execution, OperandStack stack, FunctionTable functionTable, OutputSink out) {
+        this.execution = execution;
+        this.stack = stack;
+        this.functionTable = functionTable;
+        this.out = out;
+    }
+
+    // Instrucciones despachadas hasta ahora, aunque la ejecución haya terminado con un error.
+    long dispatches() {
+        return dispatches;
+    }
+
+    void run(RegisterCode program, Frame frame) {
+        int[] code = program.code;
+        int[] lines = program.lines;
+        long[] values = frame.values;
+        byte[] types = frame.types;
+        long dispatched = 0;
+        int pc = 0;
+        try {
+            while (pc < code.length) {
+                dispatched++;
+                switch (code[pc]) {
+                    case MOVE -> {
+                        int d = code[pc + 1];
+                        int s = code[pc + 2];
+                        types[d] = types[s];
+                        values[d] = values[s];
+                        frame.strings[d] = frame.strings[s];
+                        pc += 3;
+                    }
+                    case ADD -> {
+                        int a = code[pc + 2];
+                        int b = code[pc + 3];
+                        long x = values[a];
+                        long y = values[b];
+                        long r = x + y;
+                        if (types[a] == ValueType.INTEGER && types[b] == ValueType.INTEGER && ((x ^ r) & (y ^ r)) >= 0) {
+                            integer(frame, code[pc + 1], r);
+                        } else if (ValueType.isNumeric(types[a]) && ValueType.isNumeric(types[b])) {
+                            number(frame, code[pc + 1], frame.number(a) + frame.number(b));
+                        } else {
+                            binary(frame, Opcode.ADD, code[pc + 1], a, b, lines[pc]);
+                        }
+                        pc += 4;
+                    }
+                    case ARITHMETIC -> {
+                        int op = code[pc + 1];
+                        int a = code[pc + 3];
+                        int b = code[pc + 4];
+                        long r;
+                        if (types[a] == ValueType.INTEGER && types[b] == ValueType.INTEGER
+                                && (r = Execution.exact(op, values[a], values[b])) != Execution.INEXACT) {
+                            integer(frame, code[pc + 2], r);
+                        } else if (ValueType.isNumeric(types[a]) && ValueType.isNumeric(types[b])) {
+                            number(frame, code[pc + 2], Execution.arithmetic(op, frame.number(a), frame.number(b)));
+                        } else {
+                            binary(frame, op, code[pc + 2], a, b, lines[pc]);
+                        }
+                        pc += 5;
+                    }
+                    case ARITHMETIC_NUMBERS -> {
+                        int op = code[pc + 1];
+                        int a = code[pc + 3];
+                        int b = code[pc + 4];
+                        long r;
+                        if (types[a] == ValueType.INTEGER && types[b] == ValueType.INTEGER
+                                && (r = Execution.exact(op, values[a], values[b])) != Execution.INEXACT) {
+                            integer(frame, code[pc + 2], r);
+                        } else {
+                            number(frame, code[pc + 2], Execution.arithmetic(op, frame.number(a), frame.number(b)));
+                        }
+                        pc += 5;
+                    }
+                    case COMPARE -> {
+                        bool(frame, code[pc + 2], compare(frame, code[pc + 1], code[pc + 3], code[pc + 4], lines[pc]));
+                        pc += 5;
+                    }
+                    case COMPARE_NUMBERS -> {
+                        bool(frame, code[pc + 2], compareNumbers(frame, code[pc + 1], code[pc + 3], code[pc + 4]));
+                        pc += 5;
+                    }
+                    case LOGIC -> {
+                        int a = code[pc + 3];
+                        int b = code[pc + 4];
+                        if (types[a] == ValueType.BOOLEAN && types[b] == ValueType.BOOLEAN) {
+                            boolean left = values[a] != 0;
+                            boolean right = values[b] != 0;
+                            bool(frame, code[pc + 2], code[pc + 1] == Opcode.AND ? left && right : left || right);
+                        } else {
+                            binary(frame, code[pc + 1], code[pc + 2], a, b, lines[pc]);
+                        }
+                        pc += 5;
+                    }
+                    case AND_BOOLEANS -> {
+                        bool(frame, code[pc + 1], values[code[pc + 2]] != 0 && values[code[pc + 3]] != 0);
+                        pc += 4;
+                    }
+                    case OR_BOOLEANS -> {
+                        bool(frame, code[pc + 1], values[code[pc + 2]] != 0 || values[code[pc + 3]] != 0);
+                        pc += 4;
+                    }
+                    case CONCAT -> {
+                        stack.load(frame, code[pc + 2]);
+                        stack.load(frame, code[pc + 3]);
+                        stack.concat(2);
+                        stack.store(frame, code[pc + 1]);
+                        pc += 4;
+                    }
+                    case NOT -> {
+                        if (types[code[pc + 2]] != ValueType.BOOLEAN) {
+                            throw new RuntimeError(lines[pc], "El operando debe ser booleano.");
+                        }
+                        bool(frame, code[pc + 1], values[code[pc + 2]] == 0);
+                        pc += 3;
+                    }
+                    case NOT_BOOLEAN -> {
+                        bool(frame, code[pc + 1], values[code[pc + 2]] == 0);
+                        pc += 3;
+                    }
+                    case PRINT -> {
+                        int a = code[pc + 1];
+                        switch (types[a]) {
+                            case ValueType.NUMBER -> out.print(Double.longBitsToDouble(values[a]));
+                            case ValueType.INTEGER -> out.print(values[a]);
+                            case ValueType.BOOLEAN -> out.print(values[a] != 0);
+                            case ValueType.STRING -> out.print(frame.strings[a]);
+                            default -> out.print("null");
+                        }
+                        pc += 2;
+                    }
+                    case INPUT -> {
+                        stack.pushReference(code[pc + 1]);
+                        execution.processInput(lines[pc]);
+                        pc += 2;
+                    }
+                    case PROGRAM -> {
+                        String name = program.strings[code[pc + 1]];
+                        functionTable.put(name, new SymbolTable.Symbol(name, "IDENTIFIER", new SymbolTable.Value(name, null, lines[pc])));
+                        pc += 2;
+                    }
+                    case JUMP -> pc = code[pc + 1];
+                    case JUMP_IF_FALSE -> {
+                        int a = code[pc + 1];
+                        if (types[a] != ValueType.BOOLEAN) {
+                            throw new RuntimeError(lines[pc], "La condición debe ser booleana.");
+                        }
+                        pc = values[a] != 0 ? pc + 3 : code[pc + 2];
+                    }
+                    case BRANCH -> pc = compare(frame, code[pc + 1], code[pc + 2], code[pc + 3], lines[pc]) ? pc + 5 : code[pc + 4];
+                    case BRANCH_NUMBERS -> pc = compareNumbers(frame, code[pc + 1], code[pc + 2], code[pc + 3]) ? pc + 5 : code[pc + 4];
+                    case LOOP -> pc = compare(frame, code[pc + 1], code[pc + 2], code[pc + 3], lines[pc]) ? code[pc + 4] : pc + 5;
+                    case LOOP_NUMBERS -> pc = compareNumbers(frame, code[pc + 1], code[pc + 2], code[pc + 3]) ? code[pc + 4] : pc + 5;
+                    default -> throw new RuntimeError(lines[pc], "Instrucción desconocida: " + code[pc]);
+                }
+            }
+        } finally {
+            dispatches = dispatched;
+        }
+    }
+
+    // a op b con la comparación de la pila: rápida entre números, con binary si no.
+    private boolean compare(Frame frame, int op, int a, int b, int line) {
+        if (ValueType.isNumeric(frame.types[a]) && ValueType.isNumeric(frame.types[b])) {
+            return compareNumbers(frame, op, a, b);
+        }
+        stack.load(frame, a);
+        stack.load(frame, b);
+        execution.binary(op, line);
+        return stack.popBoolean();
+    }
+
+    private static boolean compareNumbers(Frame frame, int op, int a, int b) {
+        if (frame.types[a] == ValueType.INTEGER && frame.types[b] == ValueType.INTEGER) {
+            return Execution.compare(op, frame.values[a], frame.values[b]);
+        }
+        return Execution.compare(op, frame.number(a), frame.number(b));
+    }
+
+    // Escriben un resultado en el registro d. A diferencia de los set de Frame
+    // no borran la cadena que tenía d: ya no se lee porque el tipo dejó de ser
+    // STRING, y así cada resultado escribe solo dos arreglos primitivos.
+    private static void integer(Frame frame, int d, long value) {
+        frame.types[d] = ValueType.INTEGER;
+        frame.values[d] = value;
+    }
+
+    private static void number(Frame frame, int d, double value) {
+        frame.types[d] = ValueType.NUMBER;
+        frame.values[d] = Double.doubleToRawLongBits(value);
+    }
+
+    private static void bool(Frame frame, int d, boolean value) {
+        frame.types[d] = ValueType.BOOLEAN;
+        frame.values[d] = value ? 1 : 0;
+    }
+
+    // d = a op b pasando por la pila de Execution.
+    private void binary(Frame frame, int op, int d, int a, int b, int line) {
+        stack.load(frame, a);
+        stack.load(frame, b);
+        execution.binary(op, line);
+        stack.store(frame, d);
+    }
+}
@@ -0,0 +1,266 @@
+package com.compiler;
+
+import java.util.Arrays;
+
+import static com.compiler.Opcode.*;
+
+// Traduce el bytecode de pila a RegisterCode. Se simula la pila guardando,
+// en lugar de cada valor, el registro donde está:
+//
+//  - LOAD x y las constantes no generan instrucciones; apilan el registro de
+//    la variable o de la constante y el operador que las usa las lee de ahí.
+//  - Un operador lee los registros de sus operandos y escribe en el temporal
+//    de la profundidad que ocupa su resultado.
+//  - STORE se vuelve MOVE x, valor, o, si el valor lo acaba de calcular la
+//    instrucción anterior, esa instrucción escribe directo en x. Así a = b + c
+//    es una sola instrucción en lugar de cinco.
+//  - Un operador de comparación seguido de JUMP_IF_FALSE se vuelve BRANCH.
+//  - El JUMP del final de un while que empieza con BRANCH se vuelve LOOP, con
+//    la misma condición, que salta directo al cuerpo; cada vuelta despacha
+//    una instrucción menos.
+//
+// Como las lecturas de variables se difieren, antes de que STORE o INPUT
+// cambien x, los x que siguen en la pila se copian a su temporal.
+//
+// Si el código no se puede traducir (la pila no está vacía en un salto o en
+// su destino, un destino de asignación inválido, un opcode que no se conoce)
+// translate devuelve null y el programa se ejecuta con la pila, que además
+// reporta esos errores igual que siempre.
+public class RegisterTranslator {
+    private final Bytecode input;
+    // Pila simulada: registro de cada valor, o -1 - x para la referencia a x.
+    private int[] stack = new int[16];
+    private int top;
+    private int depth;
+    // Primer temporal.
+    private int temps;
+    private int[] code = new int[64];
+    private int[] lines = new int[64];
+    private int size;
+    // Inicio de la última instrucción generada, o -1.
+    private int last = -1;
+
+    public RegisterTranslator(Bytecode input) {
+        this.input = input;
+    }
+
+    public static RegisterCode translate(Bytecode bytecode) {
+        return new RegisterTranslator(bytecode).translate();
+    }
+
+    public RegisterCode translate() {
+        int[] source = input.code;
+        boolean[] targets = new boolean[source.length + 1];
+        for (int pc = 0; pc < source.length; pc += Opcode.length(source[pc])) {
+            int operand = Opcode.jumpOperand(source[pc]);
+            if (operand > 0) targets[target(source[pc + operand])] = true;
+        }
+
+        // Un registro por constante usada, después de las variables.
+        int next = input.variables.length;
+        int[] numberRegisters = new int[input.numbers.length];
+        int[] stringRegisters = new int[input.strings.length];
+        Arrays.fill(numberRegisters, -1);
+        Arrays.fill(stringRegisters, -1);
+        int[] literals = {-1, -1, -1};
+        for (int pc = 0; pc < source.length; pc += Opcode.length(source[pc])) {
+            switch (source[pc]) {
+                case PUSH_NUMBER, PUSH_INTEGER -> {
+                    if (numberRegisters[source[pc + 1]] < 0) numberRegisters[source[pc + 1]] = next++;
+                }
+                case PUSH_STRING -> {
+                    if (stringRegisters[source[pc + 1]] < 0) stringRegisters[source[pc + 1]] = next++;
+                }
+                case PUSH_TRUE, PUSH_FALSE, PUSH_NULL -> {
+                    if (literals[source[pc] - PUSH_TRUE] < 0) literals[source[pc] - PUSH_TRUE] = next++;
+                }
+                default -> {
+                }
+            }
+        }
+        temps = next;
+
+        int[] addresses = new int[source.length + 1];
+        for (int pc = 0; pc < source.length; pc += Opcode.length(source[pc])) {
+            if (targets[pc] && top > 0) return null;
+            addresses[pc] = size;
+            int opcode = source[pc];
+            int line = input.lines[pc];
+            switch (opcode) {
+                case PUSH_NUMBER, PUSH_INTEGER -> push(numberRegisters[source[pc + 1]]);
+                case PUSH_STRING -> push(stringRegisters[source[pc + 1]]);
+                case PUSH_TRUE, PUSH_FALSE, PUSH_NULL -> push(literals[opcode - PUSH_TRUE]);
+                case LOAD -> push(source[pc + 1]);
+                case REFERENCE -> push(-1 - source[pc + 1]);
+                case STORE -> {
+                    if (top < 2 || stack[top - 2] >= 0 || stack[top - 1] < 0) return null;
+                    int value = stack[top - 1];
+                    int x = -1 - stack[top - 2];
+                    top -= 2;
+                    preserve(x, line);
+                    if (value >= temps && last >= 0 && RegisterCode.destination(code[last]) > 0
+                            && code[last + RegisterCode.destination(code[last])] == value) {
+                        code[last + RegisterCode.destination(code[last])] = x;
+                    } else if (value != x) {
+                        emit(line, RegisterCode.MOVE, x, value);
+                    }
+                }
+                case POP -> {
+                    if (top == 0) return null;
+                    top--;
+                }
+                case Opcode.ADD, ADD_NUMBERS -> {
+                    if (top < 2 || stack[top - 1] < 0 || stack[top - 2] < 0) return null;
+                    int b = stack[--top];
+                    int a = stack[--top];
+                    emit(line, RegisterCode.ADD, temps + top, a, b);
+                    push(temps + top);
+                }
+                case SUB, MUL, DIV, MOD -> {
+                    if (!binary(RegisterCode.ARITHMETIC, opcode, line)) return null;
+                }
+                case SUB_NUMBERS, MUL_NUMBERS, DIV_NUMBERS, MOD_NUMBERS -> {
+                    if (!binary(RegisterCode.ARITHMETIC_NUMBERS, generic(opcode), line)) return null;
+                }
+                case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL, EQUAL_EQUAL, NOT_EQUAL -> {
+                    if (!binary(RegisterCode.COMPARE, opcode, line)) return null;
+                }
+                case GREATER_NUMBERS, GREATER_EQUAL_NUMBERS, LESS_NUMBERS, LESS_EQUAL_NUMBERS, EQUAL_NUMBERS,
+                     NOT_EQUAL_NUMBERS -> {
+                    if (!binary(RegisterCode.COMPARE_NUMBERS, generic(opcode), line)) return null;
+                }
+                case AND, OR -> {
+                    if (!binary(RegisterCode.LOGIC, opcode, line)) return null;
+                }
+                case AND_BOOLEANS, OR_BOOLEANS, Opcode.CONCAT -> {
+                    if (top < 2 || stack[top - 1] < 0 || stack[top - 2] < 0) return null;
+                    int b = stack[--top];
+                    int a = stack[--top];
+                    int register = opcode == Opcode.CONCAT ? RegisterCode.CONCAT
+                            : opcode == AND_BOOLEANS ? RegisterCode.AND_BOOLEANS : RegisterCode.OR_BOOLEANS;
+                    emit(line, register, temps + top, a, b);
+                    push(temps + top);
+                }
+                case NOT, NOT_BOOLEAN -> {
+                    if (top < 1 || stack[top - 1] < 0) return null;
+                    int a = stack[--top];
+                    emit(line, opcode == NOT ? RegisterCode.NOT : RegisterCode.NOT_BOOLEAN, temps + top, a);
+                    push(temps + top);
+                }
+                case PRINT -> {
+                    if (top < 1 || stack[top - 1] < 0) return null;
+                    emit(line, RegisterCode.PRINT, stack[--top]);
+                }
+                case INPUT -> {
+                    if (top < 1 || stack[top - 1] >= 0) return null;
+                    int x = -1 - stack[--top];
+                    preserve(x, line);
+                    emit(line, RegisterCode.INPUT, x);
+                }
+                case PROGRAM -> emit(line, RegisterCode.PROGRAM, source[pc + 1]);
+                case JUMP -> {
+                    if (top > 0) return null;
+                    int target = target(source[pc + 1]);
+                    int branch = target < pc ? addresses[target] : -1;
+                    if (branch >= 0 && branch < size && (code[branch] == RegisterCode.BRANCH || code[branch] == RegisterCode.BRANCH_NUMBERS)
+                            && code[branch + 4] == pc + Opcode.length(JUMP)) {
+                        // El BRANCH sale justo después de este JUMP: es un while.
+                        // El destino ya es una dirección de RegisterCode.
+                        int loop = code[branch] == RegisterCode.BRANCH ? RegisterCode.LOOP : RegisterCode.LOOP_NUMBERS;
+                        emit(lines[branch], loop, code[branch + 1], code[branch + 2], code[branch + 3], -1 - (branch + 5));
+                    } else {
+                        emit(line, RegisterCode.JUMP, source[pc + 1]);
+                    }
+                }
+                case JUMP_IF_FALSE -> {
+                    if (top != 1 || stack[0] < 0) return null;
+                    int condition = stack[--top];
+                    int opcodeOfLast = last >= 0 ? code[last] : -1;
+                    if ((opcodeOfLast == RegisterCode.COMPARE || opcodeOfLast == RegisterCode.COMPARE_NUMBERS)
+                            && condition >= temps && code[last + 2] == condition) {
+                        // op, d, a, b queda como op, a, b, destino; la línea sigue siendo la de la comparación.
+                        code[last] = opcodeOfLast == RegisterCode.COMPARE ? RegisterCode.BRANCH : RegisterCode.BRANCH_NUMBERS;
+                        code[last + 2] = code[last + 3];
+                        code[last + 3] = code[last + 4];
+                        code[last + 4] = source[pc + 1];
+                    } else {
+                        emit(line, RegisterCode.JUMP_IF_FALSE, condition, source[pc + 1]);
+                    }
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        if (top > 0) return null;
+        addresses[source.length] = size;
+
+        int[] result = Arrays.copyOf(code, size);
+        for (int pc = 0; pc < size; pc += RegisterCode.length(result[pc])) {
+            int operand = RegisterCode.jumpOperand(result[pc]);
+            if (operand == 0) continue;
+            // Los LOOP guardan su destino, ya traducido, como -1 - destino.
+            int address = result[pc + operand];
+            result[pc + operand] = address < 0 ? -1 - address : addresses[target(address)];
+        }
+
+        Frame constants = new Frame(temps + depth);
+        for (int k = 0; k < numberRegisters.length; k++) {
+            if (numberRegisters[k] < 0) continue;
+            if (input.integral[k]) {
+                constants.setInteger(numberRegisters[k], input.integers[k]);
+            } else {
+                constants.setNumber(numberRegisters[k], input.numbers[k]);
+            }
+        }
+        for (int s = 0; s < stringRegisters.length; s++) {
+            if (stringRegisters[s] >= 0) constants.setString(stringRegisters[s], input.strings[s]);
+        }
+        if (literals[0] >= 0) constants.setBoolean(literals[0], true);
+        if (literals[1] >= 0) constants.setBoolean(literals[1], false);
+        return new RegisterCode(result, Arrays.copyOf(lines, size), input.strings, input.variables, constants);
+    }
+
+    // Destino de un salto, ajustado al código como en ConcatChains.
+    private int target(int address) {
+        return Math.min(Math.max(address, 0), input.code.length);
+    }
+
+    // Operador binario con op en su primer operando.
+    private boolean binary(int register, int op, int line) {
+        if (top < 2 || stack[top - 1] < 0 || stack[top - 2] < 0) return false;
+        int b = stack[--top];
+        int a = stack[--top];
+        emit(line, register, op, temps + top, a, b);
+        push(temps + top);
+        return true;
+    }
+
+    // Copia a su temporal las lecturas de x que siguen en la pila, antes de cambiar x.
+    private void preserve(int x, int line) {
+        for (int i = 0; i < top; i++) {
+            if (stack[i] == x) {
+                emit(line, RegisterCode.MOVE, temps + i, x);
+                stack[i] = temps + i;
+            }
+        }
+    }
+
+    private void push(int register) {
+        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+        stack[top++] = register;
+        depth = Math.max(depth, top);
+    }
+
+    private void emit(int line, int... words) {
+        if (size + words.length > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + words.length));
+            lines = Arrays.copyOf(lines, code.length);
+        }
+        last = size;
+        for (int word : words) {
+            lines[size] = line;
+            code[size++] = word;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.compiler;
+
+public class RuntimeError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    final int line;
+
+    public RuntimeError(int line, String message) {
+        super(message);
+        this.line = line;
+    }
+}
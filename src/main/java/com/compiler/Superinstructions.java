@@ -0,0 +1,157 @@
+package com.compiler;
+
+import java.util.Arrays;
+
+import static com.compiler.Opcode.*;
+
+// Reemplaza en el bytecode las secuencias más frecuentes en los ciclos por una
+// sola instrucción (ver las superinstrucciones de Opcode), para que Execution
+// despache menos veces por iteración. Catálogo, en orden de preferencia:
+//
+//   REFERENCE x, LOAD x, PUSH_NUMBER k, ADD, STORE   -> INCREMENT x k
+//   REFERENCE x, LOAD a, PUSH_NUMBER k, op, STORE    -> STORE_OP_CONST op x a k
+//   REFERENCE x, LOAD a, LOAD b, op, STORE           -> STORE_OP_VARS op x a b
+//   LOAD a, LOAD b, cmp, JUMP_IF_FALSE t             -> COMPARE_VARS_JUMP cmp a b t
+//   LOAD a, PUSH_NUMBER k, cmp, JUMP_IF_FALSE t      -> COMPARE_VAR_CONST_JUMP cmp a k t
+//   LOAD a, LOAD b, op                               -> LOAD_OP_VARS op a b
+//   LOAD a, PUSH_NUMBER k, op                        -> LOAD_OP_CONST op a k
+//   PUSH_NUMBER k, cmp, JUMP_IF_FALSE t              -> COMPARE_CONST_JUMP cmp k t
+//   cmp, JUMP_IF_FALSE t                             -> COMPARE_JUMP cmp t
+//
+// Los operadores especializados por TypeInference se fusionan como su
+// operador genérico; la superinstrucción revisa los tipos igual que siempre.
+//
+// Una secuencia solo se fusiona si ninguna de sus instrucciones, salvo la
+// primera, es destino de un salto. La superinstrucción toma la línea del
+// operador, que es la única que puede fallar.
+public class Superinstructions {
+    private final Bytecode input;
+    private boolean[] targets;
+    // Para cada instrucción del código nuevo, el pc de la primera instrucción
+    // del código original que reemplaza.
+    private int[] origins;
+
+    public Superinstructions(Bytecode input) {
+        this.input = input;
+    }
+
+    public static Bytecode rewrite(Bytecode bytecode) {
+        return new Superinstructions(bytecode).rewrite();
+    }
+
+    public Bytecode rewrite() {
+        int[] code = input.code;
+        targets = new boolean[code.length + 1];
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (isJump(code[pc])) targets[Math.min(Math.max(code[pc + 1], 0), code.length)] = true;
+        }
+
+        int[] out = new int[code.length];
+        int[] lines = new int[code.length];
+        int[] map = new int[code.length + 1];
+        origins = new int[code.length];
+        int size = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            int[] fused = match(code, pc);
+            int length = fused != null ? fused[0] : Opcode.length(code[pc]);
+            // Solo importa el destino de la primera; las demás no son destino de ningún salto.
+            for (int p = pc; p < pc + length; p++) map[p] = size;
+            origins[size] = pc;
+            if (fused != null) {
+                for (int i = 2; i < fused.length; i++) {
+                    lines[size + i - 2] = input.lines[fused[1]];
+                    out[size + i - 2] = fused[i];
+                }
+                size += fused.length - 2;
+            } else {
+                for (int i = 0; i < length; i++) {
+                    out[size + i] = code[pc + i];
+                    lines[size + i] = input.lines[pc + i];
+                }
+                size += length;
+            }
+            pc += length;
+        }
+        map[code.length] = size;
+
+        for (int p = 0; p < size; p += Opcode.length(out[p])) {
+            int operand = jumpOperand(out[p]);
+            if (operand == 0) continue;
+            int target = out[p + operand];
+            out[p + operand] = target >= 0 && target < map.length ? map[target] : size;
+        }
+        origins = Arrays.copyOf(origins, size);
+        return new Bytecode(Arrays.copyOf(out, size), Arrays.copyOf(lines, size), input.numbers, input.strings, input.variables);
+    }
+
+    // pc en el código original de la primera instrucción reemplazada por la
+    // instrucción que empieza en pc en el código nuevo.
+    public int origin(int pc) {
+        return origins[pc];
+    }
+
+    // Si en pc empieza una secuencia del catálogo devuelve {posiciones que
+    // ocupa en el código original, pc del operador, superinstrucción con sus
+    // operandos...}; si no, null. Las direcciones de salto quedan en pc
+    // originales y se corrigen al final.
+    private int[] match(int[] code, int pc) {
+        int[] at = new int[5];
+        int n = 0;
+        for (int p = pc; p < code.length && n < at.length; p += Opcode.length(code[p])) {
+            if (n > 0 && targets[p]) break;
+            at[n++] = p;
+        }
+        int length;
+
+        if (n >= 5 && code[at[0]] == REFERENCE && code[at[1]] == LOAD && code[at[4]] == STORE && isBinary(code[at[3]])) {
+            length = at[4] + 1 - pc;
+            int x = code[at[0] + 1];
+            int a = code[at[1] + 1];
+            int op = generic(code[at[3]]);
+            if (generic(code[at[2]]) == PUSH_NUMBER) {
+                int k = code[at[2] + 1];
+                if (op == ADD && x == a) return new int[]{length, at[3], INCREMENT, x, k};
+                return new int[]{length, at[3], STORE_OP_CONST, op, x, a, k};
+            }
+            if (code[at[2]] == LOAD) {
+                return new int[]{length, at[3], STORE_OP_VARS, op, x, a, code[at[2] + 1]};
+            }
+        }
+        if (n >= 4 && code[at[0]] == LOAD && isComparison(code[at[2]]) && code[at[3]] == JUMP_IF_FALSE) {
+            length = at[3] + 2 - pc;
+            int a = code[at[0] + 1];
+            int op = generic(code[at[2]]);
+            int target = code[at[3] + 1];
+            if (code[at[1]] == LOAD) return new int[]{length, at[2], COMPARE_VARS_JUMP, op, a, code[at[1] + 1], target};
+            if (generic(code[at[1]]) == PUSH_NUMBER) return new int[]{length, at[2], COMPARE_VAR_CONST_JUMP, op, a, code[at[1] + 1], target};
+        }
+        if (n >= 3 && code[at[0]] == LOAD && isBinary(code[at[2]])) {
+            length = at[2] + 1 - pc;
+            int a = code[at[0] + 1];
+            int op = generic(code[at[2]]);
+            if (code[at[1]] == LOAD) return new int[]{length, at[2], LOAD_OP_VARS, op, a, code[at[1] + 1]};
+            if (generic(code[at[1]]) == PUSH_NUMBER) return new int[]{length, at[2], LOAD_OP_CONST, op, a, code[at[1] + 1]};
+        }
+        if (n >= 3 && generic(code[at[0]]) == PUSH_NUMBER && isComparison(code[at[1]]) && code[at[2]] == JUMP_IF_FALSE) {
+            length = at[2] + 2 - pc;
+            return new int[]{length, at[1], COMPARE_CONST_JUMP, generic(code[at[1]]), code[at[0] + 1], code[at[2] + 1]};
+        }
+        if (n >= 2 && isComparison(code[at[0]]) && code[at[1]] == JUMP_IF_FALSE) {
+            length = at[1] + 2 - pc;
+            return new int[]{length, at[0], COMPARE_JUMP, generic(code[at[0]]), code[at[1] + 1]};
+        }
+        return null;
+    }
+
+    // Los operadores especializados por TypeInference cuentan como su genérico.
+    static boolean isBinary(int opcode) {
+        int op = generic(opcode);
+        return op >= ADD && op <= OR || isComparison(op);
+    }
+
+    static boolean isComparison(int opcode) {
+        int op = generic(opcode);
+        return op >= GREATER && op <= NOT_EQUAL;
+    }
+}
@@ -6,6 +6,17 @@ import java.util.Map;
 public class SymbolTable {
     private final Map<String, Symbol> table = new HashMap<>();
 
+    public SymbolTable() {
+    }
+
+    // Copia para que cada ejecución de un mismo programa tenga su propia tabla.
+    // Se copia una por una para que el orden de la tabla (el del reporte) sea el mismo.
+    public SymbolTable(SymbolTable other) {
+        for (Map.Entry<String, Symbol> entry : other.table.entrySet()) {
+            table.put(entry.getKey(), entry.getValue());
+        }
+    }
+
     public void put(String name, Symbol symbol) {
         table.put(name, symbol);
     }
@@ -0,0 +1,220 @@
+package com.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.compiler.TokenType.*;
+
+// Tokens guardados por columnas en lugar de un objeto Token por lexema: tipo,
+// línea, nombre en la NameTable (identificadores, palabras reservadas, cadenas y
+// números), valor numérico y casilla de la variable. Los lexemas de operadores,
+// signos y palabras reservadas no se guardan porque dependen solo del tipo.
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    final NameTable names;
+    private byte[] types;
+    private int[] lines;
+    private int[] nameIds;
+    private double[] numbers;
+    private int[] slots;
+    private int size = 0;
+
+    public TokenBuffer(NameTable names) {
+        this(names, 1024);
+    }
+
+    public TokenBuffer(NameTable names, int capacity) {
+        this.names = names;
+        this.types = new byte[capacity];
+        this.lines = new int[capacity];
+        this.nameIds = new int[capacity];
+        this.numbers = new double[capacity];
+        this.slots = new int[capacity];
+    }
+
+    // Convierte una lista de tokens, conservando la casilla de cada identificador.
+    public static TokenBuffer of(List<Token> tokens) {
+        TokenBuffer buffer = new TokenBuffer(new NameTable(), Math.max(tokens.size(), 16));
+        for (Token token : tokens) {
+            int name = token.lexeme.equals(fixedLexeme(token.type)) ? -1 : buffer.names.intern(token.lexeme);
+            double number = 0;
+            if (token.literal instanceof Double value) number = value;
+            else if (token.type == ADDRESS) number = Double.parseDouble(token.lexeme);
+            int row = buffer.add(token.type, token.line, name, number);
+            buffer.slots[row] = token.identifier;
+        }
+        return buffer;
+    }
+
+    public int add(TokenType type, int line, int name, double number) {
+        if (size == types.length) grow();
+        types[size] = (byte) type.ordinal();
+        lines[size] = line;
+        nameIds[size] = name;
+        numbers[size] = number;
+        slots[size] = type == IDENTIFIER ? -2 : -1;
+        return size++;
+    }
+
+    // Copia una fila de otro buffer que use la misma NameTable.
+    public int add(TokenBuffer other, int row) {
+        int index = add(other.type(row), other.lines[row], other.nameIds[row], other.numbers[row]);
+        slots[index] = other.slots[row];
+        return index;
+    }
+
+    // Copia las filas [from, to) de otro buffer que use la misma NameTable.
+    public void addAll(TokenBuffer other, int from, int to) {
+        int count = to - from;
+        while (size + count > types.length) grow();
+        System.arraycopy(other.types, from, types, size, count);
+        System.arraycopy(other.lines, from, lines, size, count);
+        System.arraycopy(other.nameIds, from, nameIds, size, count);
+        System.arraycopy(other.numbers, from, numbers, size, count);
+        System.arraycopy(other.slots, from, slots, size, count);
+        size += count;
+    }
+
+    public void set(int row, TokenType type, int line, int name, double number) {
+        types[row] = (byte) type.ordinal();
+        lines[row] = line;
+        nameIds[row] = name;
+        numbers[row] = number;
+        slots[row] = type == IDENTIFIER ? -2 : -1;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, types.length * 2);
+        types = Arrays.copyOf(types, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        numbers = Arrays.copyOf(numbers, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+    }
+
+    // Suma lineOffset a las líneas de las filas desde from (las que no tienen
+    // línea se quedan en 0) y addressOffset a sus direcciones de salto.
+    public void relocate(int from, int lineOffset, int addressOffset) {
+        byte address = (byte) ADDRESS.ordinal();
+        for (int row = from; row < size; row++) {
+            if (lines[row] > 0) lines[row] += lineOffset;
+            if (types[row] == address) numbers[row] += addressOffset;
+        }
+    }
+
+    // Descarta las filas anteriores a from y mueve las demás al inicio.
+    public void retain(int from) {
+        int remaining = size - from;
+        System.arraycopy(types, from, types, 0, remaining);
+        System.arraycopy(lines, from, lines, 0, remaining);
+        System.arraycopy(nameIds, from, nameIds, 0, remaining);
+        System.arraycopy(numbers, from, numbers, 0, remaining);
+        System.arraycopy(slots, from, slots, 0, remaining);
+        size = remaining;
+    }
+
+    // Descarta las filas desde size en adelante.
+    public void truncate(int size) {
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int row) {
+        return TYPES[types[row]];
+    }
+
+    public int line(int row) {
+        return lines[row];
+    }
+
+    public int name(int row) {
+        return nameIds[row];
+    }
+
+    public double number(int row) {
+        return numbers[row];
+    }
+
+    public int slot(int row) {
+        return slots[row];
+    }
+
+    public void setSlot(int row, int slot) {
+        slots[row] = slot;
+    }
+
+    public String lexeme(int row) {
+        if (nameIds[row] >= 0) return names.text(nameIds[row]);
+        if (type(row) == ADDRESS) return String.valueOf((int) numbers[row]);
+        return fixedLexeme(type(row));
+    }
+
+    public Object literal(int row) {
+        return switch (type(row)) {
+            case NUMBER -> numbers[row];
+            case STRING -> names.string(nameIds[row]);
+            default -> null;
+        };
+    }
+
+    // Crea el Token de una fila, para mensajes de error y reportes.
+    public Token token(int row) {
+        Token token = new Token(type(row), lexeme(row), literal(row), lines[row]);
+        token.identifier = slots[row];
+        return token;
+    }
+
+    public List<Token> toTokens() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            tokens.add(token(row));
+        }
+        return tokens;
+    }
+
+    // Lexema de los signos, operadores y palabras reservadas, que depende solo del tipo.
+    static String fixedLexeme(TokenType type) {
+        return switch (type) {
+            case LEFT_PAREN -> "(";
+            case RIGHT_PAREN -> ")";
+            case COMMA -> ",";
+            case DOT -> ".";
+            case MINUS -> "-";
+            case PLUS -> "+";
+            case SEMICOLON -> ";";
+            case MUL -> "*";
+            case DIV -> "/";
+            case MOD -> "%";
+            case LEFT_BRACE -> "{";
+            case RIGHT_BRACE -> "}";
+            case NOT -> "!";
+            case NOT_EQUAL -> "!=";
+            case EQUAL -> "=";
+            case EQUAL_EQUAL -> "==";
+            case GREATER -> ">";
+            case GREATER_EQUAL -> ">=";
+            case LESS -> "<";
+            case LESS_EQUAL -> "<=";
+            case AND -> "and";
+            case OR -> "or";
+            case ELSE -> "else";
+            case FALSE -> "false";
+            case IF -> "if";
+            case NULL -> "null";
+            case PRINT -> "print";
+            case INPUT -> "input";
+            case TRUE -> "true";
+            case VAR -> "var";
+            case WHILE -> "while";
+            case PROGRAM -> "program";
+            case THEN -> "then";
+            case END -> "end";
+            default -> "";
+        };
+    }
+}
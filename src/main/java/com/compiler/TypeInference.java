@@ -0,0 +1,369 @@
+package com.compiler;
+
+import java.util.Arrays;
+
+import static com.compiler.Opcode.*;
+
+// Inferencia de tipos sobre el bytecode. El tipo de cada variable es la unión
+// de los tipos de todas sus asignaciones (input puede dar número o cadena) y
+// además puede ser null si no hay una asignación que se ejecute siempre antes
+// de cualquier lectura. Con eso se simula la pila con tipos estáticos y cada
+// operador cuyos operandos tienen un solo tipo posible se reemplaza por su
+// versión especializada (ver Opcode), que no revisa tipos al ejecutarse. Los
+// operadores que pueden recibir cualquier tipo (por ejemplo después de input)
+// se quedan con la instrucción genérica.
+//
+// El código nuevo tiene las mismas posiciones que el original, así que las
+// direcciones de salto y las líneas no cambian.
+public class TypeInference {
+    // Tipos posibles de un valor, como conjunto de bits. 0 es "todavía no se sabe".
+    static final int NULL = 1;
+    static final int NUMBER = 2;
+    static final int BOOLEAN = 4;
+    static final int STRING = 8;
+    static final int REFERENCE = 16;
+    static final int ANY = NULL | NUMBER | BOOLEAN | STRING;
+
+    private final Bytecode input;
+    private final int[] code;
+    private final int[] kinds;
+    private final boolean[] targets;
+    private boolean changed;
+    private int specialized;
+
+    public TypeInference(Bytecode input) {
+        this.input = input;
+        this.code = input.code;
+        this.kinds = new int[input.variables.length];
+        this.targets = new boolean[code.length + 1];
+    }
+
+    public static Bytecode specialize(Bytecode bytecode) {
+        return new TypeInference(bytecode).specialize();
+    }
+
+    public Bytecode specialize() {
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (isJump(code[pc])) targets[Math.min(Math.max(code[pc + 1], 0), code.length)] = true;
+        }
+        boolean[] assigned = definitelyAssigned();
+        for (int v = 0; v < kinds.length; v++) kinds[v] = assigned[v] ? 0 : NULL;
+        do {
+            changed = false;
+            simulate(null);
+        } while (changed);
+        for (int v = 0; v < kinds.length; v++) {
+            if (kinds[v] == 0) kinds[v] = ANY;
+        }
+        int[] out = code.clone();
+        simulate(out);
+        if (specialized == 0) return input;
+        return new Bytecode(out, input.lines, input.numbers, input.strings, input.variables);
+    }
+
+    // Cuántos operadores se especializaron.
+    public int specialized() {
+        return specialized;
+    }
+
+    // Tipos posibles de cada variable, después de specialize().
+    public int[] kinds() {
+        return kinds;
+    }
+
+    // Recorre el código simulando la pila con tipos. Sin out solo amplía los
+    // tipos de las variables; con out escribe ahí las instrucciones especializadas.
+    private void simulate(int[] out) {
+        int[] stack = new int[16];
+        int[] slots = new int[16];
+        int top = 0;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (targets[pc]) top = 0;
+            if (top + 1 >= stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                slots = Arrays.copyOf(slots, slots.length * 2);
+            }
+            int opcode = generic(code[pc]);
+            int result = -1;
+            switch (opcode) {
+                case PUSH_NUMBER -> {
+                    // Las constantes enteras se apilan ya como ValueType.INTEGER.
+                    if (input.integral[code[pc + 1]] && code[pc] != PUSH_INTEGER) replace(out, pc, PUSH_INTEGER);
+                    result = NUMBER;
+                }
+                case PUSH_STRING -> result = STRING;
+                case PUSH_TRUE, PUSH_FALSE -> result = BOOLEAN;
+                case PUSH_NULL -> result = NULL;
+                case LOAD -> result = kinds[code[pc + 1]];
+                case Opcode.REFERENCE -> {
+                    stack[top] = REFERENCE;
+                    slots[top++] = code[pc + 1];
+                }
+                case STORE -> {
+                    int value = top > 0 ? stack[--top] : ANY;
+                    if (top > 0 && stack[--top] == REFERENCE) widen(slots[top], value);
+                }
+                case INPUT -> {
+                    if (top > 0 && stack[--top] == REFERENCE) widen(slots[top], NUMBER | STRING);
+                }
+                case POP, PRINT -> {
+                    if (top > 0) top--;
+                }
+                case NOT -> {
+                    int a = top > 0 ? stack[--top] : ANY;
+                    if (a == BOOLEAN) replace(out, pc, NOT_BOOLEAN);
+                    result = BOOLEAN;
+                }
+                case JUMP_IF_FALSE, JUMP -> top = 0;
+                default -> {
+                    if (!Superinstructions.isBinary(opcode)) break;
+                    int b = top > 0 ? stack[--top] : ANY;
+                    int a = top > 0 ? stack[--top] : ANY;
+                    result = binary(out, pc, opcode, a, b);
+                }
+            }
+            if (result >= 0) {
+                stack[top] = result;
+                slots[top++] = -1;
+            }
+        }
+    }
+
+    // Tipo del resultado de a op b; si los tipos lo permiten especializa el operador.
+    private int binary(int[] out, int pc, int op, int a, int b) {
+        switch (op) {
+            case ADD -> {
+                if (a == 0 || b == 0) return 0;
+                if (a == NUMBER && b == NUMBER) {
+                    replace(out, pc, ADD_NUMBERS);
+                    return NUMBER;
+                }
+                // Sin null, si alguno no puede ser número siempre se concatena.
+                boolean present = ((a | b) & (NULL | REFERENCE)) == 0;
+                if (present && ((a & NUMBER) == 0 || (b & NUMBER) == 0)) {
+                    replace(out, pc, CONCAT);
+                    return STRING;
+                }
+                return NUMBER | STRING;
+            }
+            case SUB, MUL, DIV, MOD -> {
+                if (a == NUMBER && b == NUMBER) replace(out, pc, op - SUB + SUB_NUMBERS);
+                return NUMBER;
+            }
+            case AND, OR -> {
+                if (a == BOOLEAN && b == BOOLEAN) replace(out, pc, op == AND ? AND_BOOLEANS : OR_BOOLEANS);
+                return BOOLEAN;
+            }
+            default -> {
+                if (a == NUMBER && b == NUMBER) replace(out, pc, op - GREATER + GREATER_NUMBERS);
+                return BOOLEAN;
+            }
+        }
+    }
+
+    private void replace(int[] out, int pc, int opcode) {
+        if (out == null) return;
+        out[pc] = opcode;
+        specialized++;
+    }
+
+    private void widen(int v, int kind) {
+        int joined = kinds[v] | kind;
+        if (joined != kinds[v]) {
+            kinds[v] = joined;
+            changed = true;
+        }
+    }
+
+    // Una variable no puede ser null si su primera asignación (en el orden
+    // del código) domina todas sus lecturas: todo camino desde el inicio hasta
+    // una lectura pasa antes por esa asignación.
+    private boolean[] definitelyAssigned() {
+        int variables = kinds.length;
+        int[] firstStore = new int[variables];
+        Arrays.fill(firstStore, -1);
+        int[] references = new int[16];
+        int top = 0;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (targets[pc]) top = 0;
+            switch (code[pc]) {
+                case Opcode.REFERENCE -> {
+                    if (top == references.length) references = Arrays.copyOf(references, top * 2);
+                    references[top++] = code[pc + 1];
+                }
+                case STORE, INPUT -> {
+                    if (top > 0) {
+                        int v = references[--top];
+                        if (firstStore[v] < 0) firstStore[v] = pc;
+                    }
+                }
+                case JUMP, JUMP_IF_FALSE -> top = 0;
+                default -> {}
+            }
+        }
+
+        Dominators dominators = new Dominators();
+        boolean[] assigned = new boolean[variables];
+        for (int v = 0; v < variables; v++) assigned[v] = firstStore[v] >= 0;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            if (code[pc] != LOAD) continue;
+            int v = code[pc + 1];
+            if (assigned[v] && !dominators.dominates(firstStore[v], pc)) assigned[v] = false;
+        }
+        return assigned;
+    }
+
+    // Árbol de dominadores de los bloques básicos del código (algoritmo de
+    // Cooper, Harvey y Kennedy sobre el orden posterior inverso).
+    private final class Dominators {
+        private final int[] blockOf = new int[code.length];
+        private final int[] idom;
+        // Orden de entrada y salida de cada bloque en el árbol de dominadores.
+        private final int[] enter;
+        private final int[] exit;
+
+        Dominators() {
+            boolean[] leaders = new boolean[code.length + 1];
+            leaders[0] = true;
+            for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+                if (targets[pc]) leaders[pc] = true;
+                if (isJump(code[pc])) leaders[pc + Opcode.length(code[pc])] = true;
+            }
+            int blocks = 0;
+            int[] starts = new int[16];
+            for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+                if (leaders[pc]) {
+                    if (blocks == starts.length) starts = Arrays.copyOf(starts, blocks * 2);
+                    starts[blocks++] = pc;
+                }
+                blockOf[pc] = blocks - 1;
+            }
+
+            // Sucesores: a lo más el destino del salto y la siguiente instrucción.
+            int[] jump = new int[blocks];
+            int[] next = new int[blocks];
+            for (int block = 0; block < blocks; block++) {
+                int end = block + 1 < blocks ? starts[block + 1] : code.length;
+                int last = starts[block];
+                while (last + Opcode.length(code[last]) < end) last += Opcode.length(code[last]);
+                int target = isJump(code[last]) ? code[last + 1] : -1;
+                jump[block] = target >= 0 && target < code.length ? blockOf[target] : -1;
+                next[block] = code[last] != JUMP && end < code.length ? block + 1 : -1;
+            }
+
+            // Orden posterior con una pila explícita.
+            int[] order = new int[blocks];
+            int[] position = new int[blocks];
+            Arrays.fill(position, -1);
+            // Un bloque puede quedar pendiente una vez por cada arista que llega a él.
+            int[] pending = new int[2 * blocks + 1];
+            byte[] visited = new byte[blocks];
+            int count = 0;
+            int depth = 0;
+            pending[depth++] = 0;
+            while (depth > 0) {
+                int block = pending[depth - 1];
+                if (visited[block] == 0) {
+                    visited[block] = 1;
+                    if (next[block] >= 0 && visited[next[block]] == 0) pending[depth++] = next[block];
+                    if (jump[block] >= 0 && visited[jump[block]] == 0) pending[depth++] = jump[block];
+                } else {
+                    depth--;
+                    if (visited[block] == 1) {
+                        visited[block] = 2;
+                        position[block] = count;
+                        order[count++] = block;
+                    }
+                }
+            }
+
+            // Predecesores alcanzables de cada bloque.
+            int[] predecessorCount = new int[blocks + 1];
+            for (int block = 0; block < blocks; block++) {
+                if (position[block] < 0) continue;
+                if (jump[block] >= 0) predecessorCount[jump[block] + 1]++;
+                if (next[block] >= 0) predecessorCount[next[block] + 1]++;
+            }
+            for (int block = 0; block < blocks; block++) predecessorCount[block + 1] += predecessorCount[block];
+            int[] predecessors = new int[predecessorCount[blocks]];
+            int[] filled = Arrays.copyOf(predecessorCount, blocks);
+            for (int block = 0; block < blocks; block++) {
+                if (position[block] < 0) continue;
+                if (jump[block] >= 0) predecessors[filled[jump[block]]++] = block;
+                if (next[block] >= 0) predecessors[filled[next[block]]++] = block;
+            }
+
+            idom = new int[blocks];
+            Arrays.fill(idom, -1);
+            idom[0] = 0;
+            boolean changing = true;
+            while (changing) {
+                changing = false;
+                for (int i = count - 2; i >= 0; i--) {
+                    int block = order[i];
+                    int dominator = -1;
+                    for (int p = predecessorCount[block]; p < predecessorCount[block + 1]; p++) {
+                        int predecessor = predecessors[p];
+                        if (idom[predecessor] < 0) continue;
+                        dominator = dominator < 0 ? predecessor : intersect(predecessor, dominator, position);
+                    }
+                    if (dominator != idom[block]) {
+                        idom[block] = dominator;
+                        changing = true;
+                    }
+                }
+            }
+
+            // Numeración del árbol para responder "a domina a b" en tiempo constante.
+            int[] childCount = new int[blocks + 1];
+            for (int block = 1; block < blocks; block++) {
+                if (idom[block] >= 0) childCount[idom[block] + 1]++;
+            }
+            for (int block = 0; block < blocks; block++) childCount[block + 1] += childCount[block];
+            int[] children = new int[childCount[blocks]];
+            filled = Arrays.copyOf(childCount, blocks);
+            for (int block = 1; block < blocks; block++) {
+                if (idom[block] >= 0) children[filled[idom[block]]++] = block;
+            }
+            enter = new int[blocks];
+            exit = new int[blocks];
+            int[] child = new int[blocks];
+            int clock = 0;
+            depth = 0;
+            pending[depth++] = 0;
+            enter[0] = clock++;
+            child[0] = childCount[0];
+            while (depth > 0) {
+                int block = pending[depth - 1];
+                if (child[block] < childCount[block + 1]) {
+                    int dominated = children[child[block]++];
+                    enter[dominated] = clock++;
+                    child[dominated] = childCount[dominated];
+                    pending[depth++] = dominated;
+                } else {
+                    exit[block] = clock++;
+                    depth--;
+                }
+            }
+        }
+
+        private int intersect(int a, int b, int[] position) {
+            while (a != b) {
+                while (position[a] < position[b]) a = idom[a];
+                while (position[b] < position[a]) b = idom[b];
+            }
+            return a;
+        }
+
+        // Si la instrucción en from se ejecuta siempre antes que la de to.
+        // Una instrucción inalcanzable queda dominada por cualquiera.
+        boolean dominates(int from, int to) {
+            int a = blockOf[from];
+            int b = blockOf[to];
+            if (idom[b] < 0) return true;
+            if (idom[a] < 0) return false;
+            if (a == b) return from < to;
+            return enter[a] < enter[b] && exit[b] < exit[a];
+        }
+    }
+}
@@ -2,158 +2,303 @@ package com.compiler;
 import java.util.*;
 import static com.compiler.TokenType.*;
 
-public class VCI {
-    private final List<Token> tokens;
-    private final List<Token> VCI = new ArrayList<>();
-    private final Stack<Token> operatorStack = new Stack<>();
-    private final Stack<Token> statementStack = new Stack<>();
-    private final Stack<Integer> addressStack = new Stack<>();
-    private final Map<String, Integer> operatorPrecedence = new HashMap<>();
-
-    private void initializeOperatorPrecedence() {
-        operatorPrecedence.put("*", 60);
-        operatorPrecedence.put("/", 60);
-        operatorPrecedence.put("%", 60);
-        operatorPrecedence.put("+", 50);
-        operatorPrecedence.put("-", 50);
-        operatorPrecedence.put(">", 40);
-        operatorPrecedence.put(">=", 40);
-        operatorPrecedence.put("<", 40);
-        operatorPrecedence.put("<=", 40);
-        operatorPrecedence.put("==", 40);
-        operatorPrecedence.put("!=", 40);
-        operatorPrecedence.put("not", 30);
-        operatorPrecedence.put("and", 20);
-        operatorPrecedence.put("or", 10);
-        operatorPrecedence.put("=", 0);
+public final class VCI {
+    // Tokens que necesita ver después del actual (} else {).
+    private static final int LOOKAHEAD = 2;
+    private final NameTable names;
+    private final TokenBuffer VCI;
+    // Operadores, prints e inputs pendientes; se copian del buffer de entrada
+    // porque sus filas pueden reutilizarse antes de que se emitan.
+    private final TokenBuffer operatorStack;
+    private final TokenBuffer printTokens;
+    private final TokenBuffer inputTokens;
+    private boolean isIfBlock = false;
+    private boolean isWhileBlock = false;
+    private final int ifName;
+    private final int whileName;
+    private final int elseName;
+    private final int endName;
+    private List<Token> tokens;
+    // if, else y while abiertos (ordinal del TokenType) y, para cada uno, las
+    // filas que faltan por completar: el EMPTY que se vuelve la dirección de
+    // salto cuando se conoce y el inicio de cada while. Todo en O(1) por token.
+    private final IntStack statementStack = new IntStack();
+    private final IntStack addressStack = new IntStack();
+    // Primera fila del VCI con cada nombre (-1 si no aparece), para resolver
+    // las direcciones de los programas sin recorrer el VCI.
+    private int[] firstRows = new int[0];
+    // Precedencia de cada operador por ordinal de TokenType; -1 si no es operador.
+    // NOT no es operador del VCI: nunca se emite.
+    private static final int[] PRECEDENCE = new int[TokenType.values().length];
+
+    static {
+        Arrays.fill(PRECEDENCE, -1);
+        PRECEDENCE[MUL.ordinal()] = 60;
+        PRECEDENCE[DIV.ordinal()] = 60;
+        PRECEDENCE[MOD.ordinal()] = 60;
+        PRECEDENCE[PLUS.ordinal()] = 50;
+        PRECEDENCE[MINUS.ordinal()] = 50;
+        PRECEDENCE[GREATER.ordinal()] = 40;
+        PRECEDENCE[GREATER_EQUAL.ordinal()] = 40;
+        PRECEDENCE[LESS.ordinal()] = 40;
+        PRECEDENCE[LESS_EQUAL.ordinal()] = 40;
+        PRECEDENCE[EQUAL_EQUAL.ordinal()] = 40;
+        PRECEDENCE[NOT_EQUAL.ordinal()] = 40;
+        PRECEDENCE[AND.ordinal()] = 20;
+        PRECEDENCE[OR.ordinal()] = 10;
+        PRECEDENCE[EQUAL.ordinal()] = 0;
     }
 
     public VCI(List<Token> tokens) {
-        this.tokens = tokens;
-        initializeOperatorPrecedence();
-        processTokens();
-    }
-
-    private void processTokens() {
-        List<Token> printTokens = new ArrayList<>();
-        List<Token> inputTokens = new ArrayList<>();
-        boolean isIfBlock = false;
-        boolean isWhileBlock = false;
-        for (int i = 0; i < tokens.size(); i++) {
-            Token token = tokens.get(i);
-            if (token.type == IDENTIFIER || token.type == NUMBER || token.type == STRING) {
-                VCI.add(token);
-            } else if (token.lexeme.equals("(")) {
-                operatorStack.push(token);
-            } else if (token.lexeme.equals(")")) {
-                while (!operatorStack.isEmpty() && !operatorStack.peek().lexeme.equals("(")) {
-                    VCI.add(operatorStack.pop());
-                }
-                if (!operatorStack.isEmpty() && operatorStack.peek().lexeme.equals("(")) {
-                    operatorStack.pop();
-                }
-            } else if (operatorPrecedence.containsKey(token.lexeme)) {
-                while (!operatorStack.isEmpty() && operatorPrecedence.containsKey(operatorStack.peek().lexeme) &&
-                        operatorPrecedence.get(token.lexeme) <= operatorPrecedence.get(operatorStack.peek().lexeme)) {
-                    VCI.add(operatorStack.pop());
-                }
-                operatorStack.push(token);
-            } else if (token.type == SEMICOLON) {
-                if(!printTokens.isEmpty()){
-                    VCI.addAll(printTokens);
-                    printTokens.clear();
-                }
-                if(!inputTokens.isEmpty()){
-                    VCI.addAll(inputTokens);
-                    inputTokens.clear();
+        this(TokenBuffer.of(tokens));
+    }
+
+    private VCI(TokenBuffer buffer) {
+        this(buffer.names);
+        generate(buffer, 0, buffer.size(), true);
+        finish();
+    }
+
+    // Generador incremental sobre un TokenBuffer que use la NameTable names:
+    // ver generate(TokenBuffer, int, int, boolean).
+    public VCI(NameTable names) {
+        this.names = names;
+        this.VCI = new TokenBuffer(names);
+        this.operatorStack = new TokenBuffer(names, 64);
+        this.printTokens = new TokenBuffer(names, 16);
+        this.inputTokens = new TokenBuffer(names, 16);
+        this.ifName = names.intern("IF");
+        this.whileName = names.intern("WHILE");
+        this.elseName = names.intern("ELSE");
+        this.endName = names.intern("END");
+    }
+
+    // Procesa las filas desde from hasta limit mientras tengan sus tokens
+    // siguientes en el buffer (o todas si last) y devuelve la primera que falta.
+    public int generate(TokenBuffer buffer, int from, int limit, boolean last) {
+        int i = from;
+        while (i < limit && (last || i + LOOKAHEAD < buffer.size())) {
+            i = step(buffer, i);
+        }
+        return Math.min(i, buffer.size());
+    }
+
+    public void finish() {
+        while (operatorStack.size() > 0) {
+            pop(operatorStack);
+        }
+
+        addAll(printTokens);
+        addAll(inputTokens);
+    }
+
+    // Las banderas de if y while, lo único que pasa de una sentencia a la
+    // siguiente cuando clean(); IncrementalCompilation genera cada sentencia
+    // con su propio VCI a partir de ellas.
+    int state() {
+        return (isIfBlock ? 1 : 0) | (isWhileBlock ? 2 : 0);
+    }
+
+    void restore(int state) {
+        isIfBlock = (state & 1) != 0;
+        isWhileBlock = (state & 2) != 0;
+    }
+
+    // Si no quedan bloques abiertos ni operadores, prints o inputs pendientes.
+    boolean clean() {
+        return statementStack.isEmpty() && addressStack.isEmpty() && operatorStack.size() == 0
+                && printTokens.size() == 0 && inputTokens.size() == 0;
+    }
+
+    private void pop(TokenBuffer stack) {
+        VCI.add(stack, stack.size() - 1);
+        stack.truncate(stack.size() - 1);
+    }
+
+    private void addAll(TokenBuffer pending) {
+        for (int row = 0; row < pending.size(); row++) {
+            VCI.add(pending, row);
+        }
+        pending.truncate(0);
+    }
+
+    private TokenType top() {
+        return operatorStack.type(operatorStack.size() - 1);
+    }
+
+    // Agrega un token generado (IF, WHILE, ELSE, END), que se escribe en mayúsculas.
+    private void add(TokenType type) {
+        int name = switch (type) {
+            case IF -> ifName;
+            case WHILE -> whileName;
+            case ELSE -> elseName;
+            default -> endName;
+        };
+        record(name);
+        VCI.add(type, 0, name, 0);
+    }
+
+    // Agrega una fila de la entrada que tiene nombre propio (operando o nombre de programa).
+    private void append(TokenBuffer buffer, int row) {
+        record(buffer.name(row));
+        VCI.add(buffer, row);
+    }
+
+    private void record(int name) {
+        if (name < 0) return;
+        if (name >= firstRows.length) {
+            int length = firstRows.length;
+            firstRows = Arrays.copyOf(firstRows, Math.max(name + 1, length * 2));
+            Arrays.fill(firstRows, length, firstRows.length, -1);
+        }
+        if (firstRows[name] < 0) firstRows[name] = VCI.size();
+    }
+
+    private void setAddress(int row, int address) {
+        VCI.set(row, ADDRESS, 0, -1, address);
+    }
+
+    private int step(TokenBuffer buffer, int i) {
+        TokenType type = buffer.type(i);
+        int precedence = PRECEDENCE[type.ordinal()];
+        if (type == IDENTIFIER || type == NUMBER || type == STRING) {
+            append(buffer, i);
+        } else if (type == LEFT_PAREN) {
+            operatorStack.add(buffer, i);
+        } else if (type == RIGHT_PAREN) {
+            while (operatorStack.size() > 0 && top() != LEFT_PAREN) {
+                pop(operatorStack);
+            }
+            if (operatorStack.size() > 0 && top() == LEFT_PAREN) {
+                operatorStack.truncate(operatorStack.size() - 1);
+            }
+        } else if (precedence >= 0) {
+            while (operatorStack.size() > 0 && PRECEDENCE[top().ordinal()] >= 0 &&
+                    precedence <= PRECEDENCE[top().ordinal()]) {
+                pop(operatorStack);
+            }
+            operatorStack.add(buffer, i);
+        } else if (type == SEMICOLON) {
+            addAll(printTokens);
+            addAll(inputTokens);
+            while (operatorStack.size() > 0) {
+                pop(operatorStack);
+            }
+        } else if (type == PRINT) {
+            printTokens.add(buffer, i);
+        } else if (type == INPUT) {
+            inputTokens.add(buffer, i);
+        } else if (type == PROGRAM) {
+            int program = i;
+            if (i + 1 < buffer.size() && buffer.type(i + 1) == IDENTIFIER) {
+                append(buffer, ++i);
+            }
+            VCI.add(buffer, program);
+        } else if (type == IF){
+            statementStack.push(IF.ordinal());
+            isIfBlock = true;
+        } else if (type == LEFT_BRACE){
+            if (isIfBlock) {
+                if(isWhileBlock) isWhileBlock = false;
+                while (operatorStack.size() > 0) {
+                    pop(operatorStack);
                 }
-                while (!operatorStack.isEmpty()) {
-                    VCI.add(operatorStack.pop());
+                VCI.add(EMPTY, 0, -1, 0);
+                addressStack.push(VCI.size() - 1);
+                add(IF);
+            }
+            if(isWhileBlock){
+                while (operatorStack.size() > 0) {
+                    pop(operatorStack);
                 }
-            } else if (token.type == PRINT) {
-                printTokens.add(token);
-            } else if (token.type == INPUT) {
-                inputTokens.add(token);
-            } else if (token.type == PROGRAM) {
-                if (i + 1 < tokens.size() && tokens.get(i + 1).type == IDENTIFIER) {
-                    VCI.add(tokens.get(i + 1));
+                VCI.add(EMPTY, 0, -1, 0);
+                addressStack.push(VCI.size()-1);
+                add(WHILE);
+            }
+            isWhileBlock = true;
+        }else if (type == RIGHT_BRACE){
+            if (!statementStack.isEmpty() && statementStack.peek() == IF.ordinal()){
+                statementStack.pop();
+                if (i + 1 < buffer.size() && buffer.type(i + 1) == ELSE){
+                    statementStack.push(ELSE.ordinal());
                     i++;
-                }
-                VCI.add(token);
-            } else if (token.type == IF){
-                statementStack.push(token);
-                isIfBlock = true;
-            } else if (token.type == LEFT_BRACE){
-                if (isIfBlock) {
-                    if(isWhileBlock) isWhileBlock = false;
-                    while (!operatorStack.isEmpty()) {
-                        VCI.add(operatorStack.pop());
-                    }
-                    Token emptyToken = new Token(EMPTY, "", null, 0);
-                    VCI.add(emptyToken);
-                    addressStack.push(VCI.indexOf(emptyToken));
-                    VCI.add(new Token(IF, "IF", null, 0));
-                }
-                if(isWhileBlock){
-                    while (!operatorStack.isEmpty()) {
-                        VCI.add(operatorStack.pop());
-                    }
-                    Token emptyToken = new Token(EMPTY, "", null, 0);
-                    VCI.add(emptyToken);
-                    addressStack.push(VCI.size()-1);
-                    VCI.add(new Token(WHILE, "WHILE", null, 0));
-                }
-                isWhileBlock = true;
-            }else if (token.type == RIGHT_BRACE){
-                if (!statementStack.isEmpty() && statementStack.peek().type == IF){
-                    statementStack.pop();
-                    if (tokens.get(i+1) != null && tokens.get(i+1).type == ELSE){
-                        statementStack.push(tokens.get(i+1));
-                        i++;
-                        int address = addressStack.pop();
-                        VCI.set(address, new Token(ADDRESS, String.valueOf(VCI.size() + 2), null, 0));
-                        Token emptyToken = new Token(EMPTY, "", null, 0);
-                        VCI.add(emptyToken);
-                        addressStack.push(VCI.indexOf(emptyToken));
-                        VCI.add(new Token(ELSE, "ELSE", null, 0));
-                        i++;
-                        isIfBlock = false;
-                    }else{
-                        int address = addressStack.pop();
-                        VCI.set(address, new Token(ADDRESS, String.valueOf(VCI.size()), null, 0));
-                    }
-                } else if (!statementStack.isEmpty() && statementStack.peek().type == ELSE){
-                    statementStack.pop();
                     int address = addressStack.pop();
-                    VCI.set(address, new Token(ADDRESS, String.valueOf(VCI.size()), null, 0));
-                } else if (!statementStack.isEmpty() && statementStack.peek().type == WHILE){
-                    statementStack.pop();
+                    setAddress(address, VCI.size() + 2);
+                    VCI.add(EMPTY, 0, -1, 0);
+                    addressStack.push(VCI.size() - 1);
+                    add(ELSE);
+                    i++;
+                    isIfBlock = false;
+                }else{
                     int address = addressStack.pop();
-                    VCI.set(address, new Token(ADDRESS,  String.valueOf(VCI.size()+2), null, 0));
-                    address = addressStack.pop();
-                    VCI.add(new Token(ADDRESS, String.valueOf(address), null, 0));
-                    VCI.add(new Token(END, "END", null, 0));
-                    isWhileBlock = false;
-
+                    setAddress(address, VCI.size());
                 }
-            } else if (token.type == WHILE) {
-                statementStack.push(token);
-                addressStack.push(VCI.size());
-                isWhileBlock = true;
-            } else if (token.type == TRUE || token.type == FALSE || token.type == NULL) {
-                VCI.add(token);
+            } else if (!statementStack.isEmpty() && statementStack.peek() == ELSE.ordinal()){
+                statementStack.pop();
+                int address = addressStack.pop();
+                setAddress(address, VCI.size());
+            } else if (!statementStack.isEmpty() && statementStack.peek() == WHILE.ordinal()){
+                statementStack.pop();
+                int address = addressStack.pop();
+                setAddress(address, VCI.size()+2);
+                address = addressStack.pop();
+                VCI.add(ADDRESS, 0, -1, address);
+                add(END);
+                isWhileBlock = false;
+
             }
+        } else if (type == WHILE) {
+            statementStack.push(WHILE.ordinal());
+            addressStack.push(VCI.size());
+            isWhileBlock = true;
+        } else if (type == TRUE || type == FALSE || type == NULL) {
+            append(buffer, i);
         }
+        return i + 1;
+    }
 
-        while (!operatorStack.isEmpty()) {
-            VCI.add(operatorStack.pop());
-        }
+    // El VCI como lista de tokens; se crea la primera vez que se pide.
+    public List<Token> getVCI() {
+        if (tokens == null) tokens = VCI.toTokens();
+        return tokens;
+    }
 
-        VCI.addAll(printTokens);
-        VCI.addAll(inputTokens);
+    // Posición en el VCI de cada programa de la tabla de funciones, o -1.
+    public Map<String, Integer> addresses(FunctionTable functionTable) {
+        Map<String, Integer> addresses = new LinkedHashMap<>();
+        for (String id : functionTable.getTable().keySet()) {
+            int name = names.intern(id);
+            addresses.put(id, name < firstRows.length ? firstRows[name] : -1);
+        }
+        return addresses;
     }
 
-    public List<Token> getVCI() {
+    public TokenBuffer getBuffer() {
         return VCI;
     }
+
+    // Pila de enteros sin cajas ni sincronización.
+    private static final class IntStack {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void push(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int pop() {
+            if (size == 0) throw new EmptyStackException();
+            return values[--size];
+        }
+
+        int peek() {
+            if (size == 0) throw new EmptyStackException();
+            return values[size - 1];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
 }
\ No newline at end of file
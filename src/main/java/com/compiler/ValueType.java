@@ -0,0 +1,61 @@
+package com.compiler;
+
+// Etiquetas de tipo de los valores en tiempo de ejecución.
+public final class ValueType {
+    public static final byte NULL = 0;
+    public static final byte NUMBER = 1;
+    public static final byte BOOLEAN = 2;
+    public static final byte STRING = 3;
+    public static final byte REFERENCE = 4;
+    // Número entero guardado como long. Para el programa es un número más: se
+    // imprime igual que el double con el mismo valor.
+    public static final byte INTEGER = 5;
+
+    // Enteros que un double representa exactamente (2^53).
+    static final long EXACT = 1L << 53;
+
+    private ValueType() {}
+
+    // Nombre del tipo tal como aparece en la tabla de símbolos.
+    public static String name(byte type) {
+        return switch (type) {
+            case NUMBER, INTEGER -> "NUMBER";
+            case BOOLEAN -> "BOOLEAN";
+            case STRING -> "STRING";
+            case REFERENCE -> "REFERENCE";
+            default -> "IDENTIFIER";
+        };
+    }
+
+    public static boolean isNumeric(byte type) {
+        return type == NUMBER || type == INTEGER;
+    }
+
+    // Si value se puede guardar como entero sin cambiar lo que se imprime ni
+    // cómo opera: entero, dentro de ±2^53 y distinto de -0.0.
+    public static boolean isInteger(double value) {
+        return value >= -EXACT && value <= EXACT && value == (long) value
+                && Double.doubleToRawLongBits(value) != Long.MIN_VALUE;
+    }
+
+    // Agrega value como lo imprimiría Double.toString. Si un double lo guarda
+    // exactamente (todo ±2^53 y, fuera, los que tienen suficientes ceros al
+    // final en binario) es exactamente lo mismo; si no, se conservan todos los
+    // dígitos en lugar de redondear al double más cercano.
+    public static void appendInteger(StringBuilder builder, long value) {
+        if ((long) (double) value == value) {
+            builder.append((double) value);
+            return;
+        }
+        String digits = Long.toString(value);
+        int start = 0;
+        if (value < 0) {
+            builder.append('-');
+            start = 1;
+        }
+        int end = digits.length();
+        while (end > start + 2 && digits.charAt(end - 1) == '0') end--;
+        builder.append(digits.charAt(start)).append('.');
+        builder.append(digits, start + 1, end).append('E').append(digits.length() - start - 1);
+    }
+}
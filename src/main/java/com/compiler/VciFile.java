@@ -0,0 +1,265 @@
+package com.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Formato binario del programa compilado (.vci), para compilar una vez y
+// ejecutar después sin el código fuente. Todos los enteros van en big endian.
+//
+//   encabezado   u4 magic "VCI\0", u2 versión, u2 reservado
+//   constantes   u4 n, n números f8; u4 n, n cadenas; u4 n, n nombres de variable
+//   código       u4 longitud del código decodificado, u4 bytes de la sección,
+//                cada instrucción como u1 opcode seguido de sus operandos en varint
+//   líneas       u4 n, n pares (varint pc, varint línea) donde cambia la línea
+//   tablas       u4 n, n símbolos (cadena, cadena tipo, u4 línea);
+//                u4 n, n programas (cadena, cadena tipo, u4 línea, u4 dirección en el VCI)
+//
+// Una cadena es u4 longitud en bytes UTF-8 (-1 para null) seguida de los bytes.
+public final class VciFile {
+    static final int MAGIC = 0x56434900;
+    static final int VERSION = 1;
+
+    private VciFile() {}
+
+    public static void write(CompiledProgram program, Path path) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        Files.write(path, toBytes(program));
+    }
+
+    public static byte[] toBytes(CompiledProgram program) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(program, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void write(CompiledProgram program, DataOutputStream out) throws IOException {
+        Bytecode bytecode = program.bytecode;
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(0);
+
+        out.writeInt(bytecode.numbers.length);
+        for (double number : bytecode.numbers) out.writeDouble(number);
+        writeStrings(out, bytecode.strings);
+        writeStrings(out, bytecode.variables);
+
+        ByteArrayOutputStream code = new ByteArrayOutputStream(bytecode.code.length * 2);
+        for (int pc = 0; pc < bytecode.code.length; pc += Opcode.length(bytecode.code[pc])) {
+            code.write(bytecode.code[pc]);
+            for (int operand = 1; operand < Opcode.length(bytecode.code[pc]); operand++) {
+                writeVarint(code, bytecode.code[pc + operand]);
+            }
+        }
+        out.writeInt(bytecode.code.length);
+        out.writeInt(code.size());
+        code.writeTo(out);
+
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        int changes = 0;
+        int previous = -1;
+        for (int pc = 0; pc < bytecode.code.length; pc += Opcode.length(bytecode.code[pc])) {
+            if (bytecode.lines[pc] != previous) {
+                previous = bytecode.lines[pc];
+                writeVarint(lines, pc);
+                writeVarint(lines, previous);
+                changes++;
+            }
+        }
+        out.writeInt(changes);
+        lines.writeTo(out);
+
+        Map<String, SymbolTable.Symbol> symbols = program.symbolTable.getTable();
+        out.writeInt(symbols.size());
+        for (SymbolTable.Symbol symbol : symbols.values()) {
+            writeString(out, symbol.lexeme);
+            writeString(out, symbol.type);
+            out.writeInt(symbol.value.getLine());
+        }
+        Map<String, SymbolTable.Symbol> functions = program.functionTable.getTable();
+        out.writeInt(functions.size());
+        for (SymbolTable.Symbol function : functions.values()) {
+            writeString(out, function.lexeme);
+            writeString(out, function.type);
+            out.writeInt(function.value.getLine());
+            out.writeInt(program.addresses.getOrDefault(function.lexeme, -1));
+        }
+    }
+
+    // Verifica si el archivo empieza con el encabezado de un .vci.
+    public static boolean isVci(Path path) {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] header = in.readNBytes(4);
+            return header.length == 4 && ByteBuffer.wrap(header).getInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Lee un .vci mapeándolo en memoria.
+    public static CompiledProgram read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Lee un programa desde la posición actual del buffer.
+    public static CompiledProgram read(ByteBuffer in) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) throw new IOException("Archivo VCI inválido.");
+            int version = in.getShort() & 0xFFFF;
+            if (version != VERSION) throw new IOException("Versión de VCI no soportada: " + version);
+            in.getShort();
+
+            double[] numbers = new double[count(in, 8)];
+            for (int i = 0; i < numbers.length; i++) numbers[i] = in.getDouble();
+            String[] strings = readStrings(in);
+            String[] variables = readStrings(in);
+
+            int[] code = new int[count(in, 0)];
+            int end = in.getInt();
+            end += in.position();
+            boolean[] starts = new boolean[code.length + 1];
+            starts[code.length] = true;
+            int size = 0;
+            while (in.position() < end) {
+                int opcode = in.get() & 0xFF;
+                if (opcode >= Opcode.NAMES.length || size + Opcode.length(opcode) > code.length) {
+                    throw new IOException("Código inválido en el VCI.");
+                }
+                starts[size] = true;
+                code[size++] = opcode;
+                for (int operand = 1; operand < Opcode.length(opcode); operand++) {
+                    int value = readVarint(in);
+                    if (!valid(Opcode.operand(opcode, operand), value, numbers.length, strings.length, variables.length)) {
+                        throw new IOException("Código inválido en el VCI.");
+                    }
+                    code[size++] = value;
+                }
+            }
+            if (size != code.length) throw new IOException("Código incompleto en el VCI.");
+            // Los saltos tienen que caer al inicio de una instrucción o al final del código.
+            for (int pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+                int jump = Opcode.jumpOperand(code[pc]);
+                if (jump > 0 && (code[pc + jump] > code.length || !starts[code[pc + jump]])) {
+                    throw new IOException("Código inválido en el VCI.");
+                }
+            }
+
+            int[] lines = new int[code.length];
+            int changes = count(in, 2);
+            int pc = 0;
+            int line = 0;
+            for (int i = 0; i < changes; i++) {
+                int next = readVarint(in);
+                if (next < pc || next > code.length) throw new IOException("Tabla de líneas inválida en el VCI.");
+                Arrays.fill(lines, pc, next, line);
+                pc = next;
+                line = readVarint(in);
+            }
+            Arrays.fill(lines, pc, code.length, line);
+            Bytecode bytecode = new Bytecode(code, lines, numbers, strings, variables);
+
+            SymbolTable symbolTable = new SymbolTable();
+            for (int count = count(in, 12); count > 0; count--) {
+                String name = readString(in);
+                String type = readString(in);
+                symbolTable.put(name, new SymbolTable.Symbol(name, type, new SymbolTable.Value(name, null, in.getInt())));
+            }
+            FunctionTable functionTable = new FunctionTable();
+            Map<String, Integer> addresses = new LinkedHashMap<>();
+            for (int count = count(in, 16); count > 0; count--) {
+                String name = readString(in);
+                String type = readString(in);
+                functionTable.put(name, new SymbolTable.Symbol(name, type, new SymbolTable.Value(name, null, in.getInt())));
+                addresses.put(name, in.getInt());
+            }
+            return new CompiledProgram(bytecode, symbolTable, functionTable, addresses);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Archivo VCI incompleto.", e);
+        }
+    }
+
+    // Si value sirve como operando del tipo kind (Opcode.operand) con esas tablas.
+    private static boolean valid(char kind, int value, int numbers, int strings, int variables) {
+        return switch (kind) {
+            case Opcode.CONSTANT -> value >= 0 && value < numbers;
+            case Opcode.STRING -> value >= 0 && value < strings;
+            case Opcode.VARIABLE -> value >= 0 && value < variables;
+            case Opcode.OPERATOR -> value >= Opcode.ADD && value <= Opcode.NOT_EQUAL && value != Opcode.NOT;
+            case Opcode.COUNT -> value > 0;
+            // Las direcciones se revisan cuando ya se conoce todo el código.
+            default -> value >= 0;
+        };
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Entero inválido en el VCI.");
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) writeString(out, value);
+    }
+
+    private static String[] readStrings(ByteBuffer in) throws IOException {
+        String[] values = new String[count(in, 4)];
+        for (int i = 0; i < values.length; i++) values[i] = readString(in);
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0) return null;
+        if (length > in.remaining()) throw new IOException("Archivo VCI incompleto.");
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Lee un número de elementos y verifica que quepa en lo que queda del archivo.
+    private static int count(ByteBuffer in, int elementSize) throws IOException {
+        int count = in.getInt();
+        if (count < 0 || (long) count * elementSize > in.remaining()) throw new IOException("Archivo VCI incompleto.");
+        return count;
+    }
+}